@@ -0,0 +1,226 @@
+import javax.swing.SwingUtilities;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Creates the workloads of the JMH benchmarks in the benchmarks package.
+ * <p>
+ * JMH rejects benchmarks in the default package, and classes in a named package cannot refer to the
+ * classes of the viewer, which are all in the default package. The benchmarks therefore look up the
+ * factories of this class by reflection and only see their workloads as an {@link IntSupplier}: every
+ * call runs the work once and returns a checksum of the result, so that it cannot be optimized away.
+ * The workloads are also {@link AutoCloseable}, to stop the threads they own.
+ */
+public final class BenchmarkWorkloads {
+
+    private BenchmarkWorkloads() {
+    }
+
+    /**
+     * Iterates every pixel of a 256x256 view on the calling thread, row by row.
+     *
+     * @param kernel        "scalar" for the escape-time kernel, "vector" for the Vector API kernel, "float"
+     *                      for the single-precision Vector API kernel, "double-double" for the
+     *                      double-double kernel.
+     * @param region        "overview" for the whole Mandelbrot set, "seahorse" for a zoom into Seahorse
+     *                      Valley, where most pixels lie on the boundary.
+     * @param maxIterations The iteration limit.
+     * @return The workload.
+     */
+    public static IntSupplier kernel(String kernel, String region, int maxIterations) {
+        int size = 256;
+        FractalView view = "seahorse".equals(region)
+                ? new FractalView(FractalType.MANDELBROT, 1e6, -0.743643887, 0.131825904, 0, 0, maxIterations, size,
+                size)
+                : view(FractalType.MANDELBROT, size, size, maxIterations);
+        EscapeTimeKernel scalar = new EscapeTimeKernel(view, true, true, new InteriorStats());
+        PixelKernel pixels;
+        if ("vector".equals(kernel) || "float".equals(kernel)) {
+            if (!VectorSupport.isAvailable()) {
+                throw new IllegalStateException("The Vector API is missing; fork with --add-modules jdk.incubator.vector");
+            }
+            pixels = "float".equals(kernel) ? new FloatVectorKernel(scalar) : new VectorKernel(scalar);
+        } else if ("double-double".equals(kernel)) {
+            pixels = new DoubleDoubleKernel(view, true, true, new InteriorStats());
+        } else {
+            pixels = scalar;
+        }
+        int[] iterations = new int[size];
+        return new Workload(() -> {
+            long sum = 0;
+            for (int y = 0; y < size; y++) {
+                sum += pixels.iterateRow(y, 0, size, iterations, 0);
+            }
+            return (int) sum;
+        }, () -> {
+        });
+    }
+
+    /**
+     * Renders and colors a whole frame on a render engine with a worker per core.
+     *
+     * @param fractal       "mandelbrot" or "julia".
+     * @param width         The width of the frame.
+     * @param height        The height of the frame.
+     * @param maxIterations The iteration limit.
+     * @return The workload.
+     */
+    public static IntSupplier frame(String fractal, int width, int height, int maxIterations) {
+        FractalView view = view(FractalType.valueOf(fractal.toUpperCase(Locale.ROOT)), width, height, maxIterations);
+        RenderEngine engine = new RenderEngine(Runtime.getRuntime().availableProcessors());
+        Palette palette = new Palette(ColorScheme.RED.getColor(), maxIterations);
+        return new Workload(() -> checksum(engine.renderPixels(view, RenderOptions.DEFAULT, palette)), engine::shutdown);
+    }
+
+    /**
+     * Renders a 1920x1080 frame of the whole Mandelbrot set with a scheduling strategy. With a low
+     * iteration limit the pixels are cheap, so the cost of scheduling dominates.
+     *
+     * @param scheduler     "rowFutures" for the original strategy of one Future per row on a fixed
+     *                      thread pool, "tileScheduler" for the work-stealing tile scheduler.
+     * @param maxIterations The iteration limit.
+     * @return The workload.
+     */
+    public static IntSupplier schedule(String scheduler, int maxIterations) {
+        int width = 1920;
+        int height = 1080;
+        int threads = Runtime.getRuntime().availableProcessors();
+        FractalView view = view(FractalType.MANDELBROT, width, height, maxIterations);
+        PixelKernel kernel = RenderEngine.createKernel(view, RenderOptions.DEFAULT, new InteriorStats());
+        Palette palette = new Palette(ColorScheme.RED.getColor(), maxIterations);
+        int[] iterations = new int[width * height];
+        int[] pixels = new int[width * height];
+
+        if ("rowFutures".equals(scheduler)) {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            return new Workload(() -> {
+                List<Future<Void>> futures = new ArrayList<>(height);
+                for (int y = 0; y < height; y++) {
+                    final int row = y;
+                    futures.add(executor.submit(() -> {
+                        kernel.iterateRow(row, 0, width, iterations, row * width);
+                        palette.color(iterations, pixels, width, 0, row, width, row + 1);
+                        return null;
+                    }));
+                }
+                try {
+                    for (Future<Void> future : futures) {
+                        future.get();
+                    }
+                } catch (InterruptedException | ExecutionException e) {
+                    throw new IllegalStateException(e);
+                }
+                return checksum(pixels);
+            }, executor::shutdownNow);
+        }
+
+        TileScheduler tiles = new TileScheduler(threads);
+        return new Workload(() -> {
+            TileStats stats = new TileStats(width, height, tiles.getParallelism());
+            FrameRenderer renderer = new FrameRenderer(kernel, palette, iterations, pixels, width, false, stats);
+            tiles.render(width, height, renderer.getBandHeight(), renderer, () -> false, stats);
+            return checksum(pixels);
+        }, tiles::shutdown);
+    }
+
+    /**
+     * Pans a headless viewer panel by a few pixels and waits until the new frame is on screen. The panel
+     * copies what it has in common with the frame before and only renders the exposed strip, so most
+     * of the time of a frame goes to copying, coloring and scheduling. The view moves back and forth so
+     * that it stays over the set. Run with {@code -prof gc} to see how much a frame allocates.
+     *
+     * @param width         The width of the panel.
+     * @param height        The height of the panel.
+     * @param step          The number of pixels to pan per frame.
+     * @param maxIterations The iteration limit.
+     * @return The workload.
+     */
+    public static IntSupplier pan(int width, int height, int step, int maxIterations) {
+        System.setProperty("java.awt.headless", "true");
+        MandelbrotPanel panel = onEventThread(() -> {
+            MandelbrotPanel p = new MandelbrotPanel();
+            p.setProgressiveEnabled(false);
+            p.setSize(width, height);
+            p.setMaxIterations(maxIterations);
+            return p;
+        });
+        awaitFrame(panel);
+        int[] frames = new int[1];
+        return new Workload(() -> {
+            int dx = (frames[0]++ / 64) % 2 == 0 ? step : -step;
+            onEventThread(() -> {
+                panel.panPixels(dx, 0);
+                return null;
+            });
+            awaitFrame(panel);
+            return frames[0];
+        }, () -> onEventThread(() -> {
+            panel.shutdown();
+            return null;
+        }));
+    }
+
+    private static <T> T onEventThread(Supplier<T> action) {
+        List<T> result = new ArrayList<>(1);
+        try {
+            SwingUtilities.invokeAndWait(() -> result.add(action.get()));
+        } catch (InterruptedException | InvocationTargetException e) {
+            throw new IllegalStateException(e);
+        }
+        return result.get(0);
+    }
+
+    private static void awaitFrame(MandelbrotPanel panel) {
+        while (onEventThread(panel::isRendering)) {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static FractalView view(FractalType type, int width, int height, int maxIterations) {
+        // The initial view of the viewer, scaled to the width
+        double zoom = 250.0 * width / 800;
+        double centerReal = type == FractalType.JULIA ? 0 : -0.5;
+        return new FractalView(type, zoom, centerReal, 0, -0.4, 0.6, maxIterations, width, height);
+    }
+
+    private static int checksum(int[] values) {
+        int sum = 0;
+        for (int value : values) {
+            sum = 31 * sum + value;
+        }
+        return sum;
+    }
+
+    private static final class Workload implements IntSupplier, AutoCloseable {
+
+        private final IntSupplier work;
+        private final Runnable close;
+
+        Workload(IntSupplier work, Runnable close) {
+            this.work = work;
+            this.close = close;
+        }
+
+        @Override
+        public int getAsInt() {
+            return work.getAsInt();
+        }
+
+        @Override
+        public void close() {
+            close.run();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * Measures full-frame renders through the render engine on every core, at several sizes and iteration
+ * limits, for the Mandelbrot set and for a Julia set at the viewer's initial view.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class FrameBenchmark {
+
+    @Param({"mandelbrot", "julia"})
+    public String fractal;
+
+    @Param({"640x480", "1920x1080"})
+    public String size;
+
+    @Param({"256", "4096"})
+    public int maxIterations;
+
+    private IntSupplier workload;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String[] dimensions = size.split("x");
+        workload = Workloads.create("frame", fractal, Integer.parseInt(dimensions[0]),
+                Integer.parseInt(dimensions[1]), maxIterations);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Workloads.close(workload);
+    }
+
+    @Benchmark
+    public int renderFrame() {
+        return workload.getAsInt();
+    }
+}
@@ -0,0 +1,58 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * Measures the escape-time kernels on a single thread: the time to iterate the 65536 pixels of a
+ * 256x256 view, with the scalar kernel, the double and float Vector API kernels and the double-double
+ * kernel.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class KernelBenchmark {
+
+    @Param({"scalar", "vector", "float", "double-double"})
+    public String kernel;
+
+    @Param({"overview", "seahorse"})
+    public String region;
+
+    @Param({"256", "4096"})
+    public int maxIterations;
+
+    private IntSupplier workload;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        workload = Workloads.create("kernel", kernel, region, maxIterations);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Workloads.close(workload);
+    }
+
+    @Benchmark
+    public int iterateView() {
+        return workload.getAsInt();
+    }
+}
@@ -0,0 +1,50 @@
+package benchmarks;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.function.IntSupplier;
+
+/**
+ * Looks up the workloads of the default-package class BenchmarkWorkloads, which the benchmarks cannot
+ * refer to directly.
+ */
+final class Workloads {
+
+    private static final String FACTORY_CLASS = "BenchmarkWorkloads";
+
+    private Workloads() {
+    }
+
+    /**
+     * Creates a workload.
+     *
+     * @param factory The name of the factory method.
+     * @param args    The arguments of the factory.
+     * @return The workload.
+     */
+    static IntSupplier create(String factory, Object... args) {
+        try {
+            for (Method method : Class.forName(FACTORY_CLASS).getMethods()) {
+                if (method.getName().equals(factory) && method.getParameterCount() == args.length) {
+                    return (IntSupplier) method.invoke(null, args);
+                }
+            }
+            throw new IllegalArgumentException("No workload " + factory + " with " + args.length + " arguments");
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("Creating " + factory + " failed", e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Creating " + factory + " failed", e);
+        }
+    }
+
+    /**
+     * Stops the threads of a workload.
+     *
+     * @param workload The workload, or null if it was never created.
+     */
+    static void close(IntSupplier workload) throws Exception {
+        if (workload instanceof AutoCloseable) {
+            ((AutoCloseable) workload).close();
+        }
+    }
+}
@@ -0,0 +1,27 @@
+import java.awt.Color;
+
+/**
+ * The color schemes that can be used to color the fractal.
+ */
+public enum ColorScheme {
+    RED(Color.RED),
+    BLUE(Color.BLUE),
+    GREEN(Color.GREEN),
+    PURPLE(new Color(128, 0, 128)),
+    ORANGE(new Color(255, 165, 0));
+
+    private final Color color;
+
+    ColorScheme(Color color) {
+        this.color = color;
+    }
+
+    public Color getColor() {
+        return color;
+    }
+
+    @Override
+    public String toString() {
+        return name().toLowerCase();
+    }
+}
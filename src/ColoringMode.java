@@ -0,0 +1,35 @@
+/**
+ * How a palette spreads the colors of a color scheme over the iteration counts.
+ * <p>
+ * All modes but the smooth one color whole iteration counts, so the bands between neighbouring counts
+ * remain visible. The smooth mode also needs the fractional part of every count, which the kernels only
+ * compute for frames colored that way, see {@link EscapeFractions}.
+ */
+public enum ColoringMode {
+    /**
+     * From black at no iterations to the color of the scheme at the iteration limit. Views with a high
+     * limit are dark, since most counts are small compared with the limit.
+     */
+    LINEAR,
+    /**
+     * A gradient on the logarithm of the count, which spreads out the small counts. It changes how
+     * the bands are colored, not how many there are.
+     */
+    LOGARITHMIC,
+    /**
+     * The logarithmic gradient on the continuous escape count, which blends every count into the next
+     * one so that no bands are left. Frames colored this way are not rectangle-filled or taken from the
+     * tile cache, and cannot be rendered on workers, since all of these only deal in whole counts.
+     */
+    SMOOTH,
+    /**
+     * Histogram equalization: every color is used by about as many pixels as every other, whatever the
+     * iteration limit. The palette is built from the counts of a frame.
+     */
+    HISTOGRAM;
+
+    @Override
+    public String toString() {
+        return name().toLowerCase();
+    }
+}
@@ -0,0 +1,89 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics of a frame rendered with perturbation: the cost of its reference orbit, how many
+ * iterations the series approximation skipped and how often pixels had to be rebased onto the start
+ * of the reference because they glitched.
+ */
+public class DeepZoomStats {
+
+    private final int referenceLength;
+    private final int precision;
+    private final long referenceNanos;
+    private final int seriesSkip;
+    private final long seriesNanos;
+    private final LongAdder skippedPixels = new LongAdder();
+    private final LongAdder rebases = new LongAdder();
+    private final LongAdder glitchedPixels = new LongAdder();
+
+    public DeepZoomStats(ReferenceOrbit orbit, SeriesApproximation series) {
+        this.referenceLength = orbit.getLength();
+        this.precision = orbit.getPrecision();
+        this.referenceNanos = orbit.getNanos();
+        this.seriesSkip = series == null ? 0 : series.getSkip();
+        this.seriesNanos = series == null ? 0 : series.getNanos();
+    }
+
+    /**
+     * Records that a pixel started from the series approximation instead of iteration zero.
+     */
+    public void recordSkippedPixel() {
+        skippedPixels.increment();
+    }
+
+    /**
+     * Records that a pixel was rebased at least once.
+     *
+     * @param count The number of times the pixel was rebased.
+     */
+    public void recordRebases(int count) {
+        rebases.add(count);
+        glitchedPixels.increment();
+    }
+
+    public int getReferenceLength() {
+        return referenceLength;
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    public long getReferenceNanos() {
+        return referenceNanos;
+    }
+
+    public int getSeriesSkip() {
+        return seriesSkip;
+    }
+
+    public long getSeriesNanos() {
+        return seriesNanos;
+    }
+
+    /**
+     * Gets the total number of iterations that pixels did not have to perform because of the series
+     * approximation.
+     *
+     * @return The number of skipped iterations.
+     */
+    public long getSkippedIterations() {
+        return skippedPixels.sum() * seriesSkip;
+    }
+
+    public long getRebases() {
+        return rebases.sum();
+    }
+
+    public long getGlitchedPixels() {
+        return glitchedPixels.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("reference orbit %d iterations at %d digits in %.2f ms, "
+                        + "series skipped %d iterations per pixel (%d in total, %.2f ms), %d glitched pixels, %d rebases",
+                referenceLength, precision, referenceNanos / 1e6, seriesSkip, getSkippedIterations(), seriesNanos / 1e6,
+                getGlitchedPixels(), getRebases());
+    }
+}
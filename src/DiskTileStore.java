@@ -0,0 +1,325 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps tiles of the tile cache in a local directory, so that regions rendered in earlier sessions
+ * load without being computed.
+ * <p>
+ * Every tile is one file: a header that repeats the key of the tile, followed by its iteration counts
+ * in as few bytes per count as the iteration limit allows, and a CRC-32 of the counts. Files are read
+ * through a memory mapping, which decodes the counts straight from the page cache without an
+ * intermediate read buffer. Files are written to a temporary name and then moved into place, so a tile
+ * is either complete or absent. A file with another format version, a different key, a bad checksum or
+ * any other defect is ignored and overwritten the next time the tile is rendered.
+ * <p>
+ * The store has a size cap. When it is exceeded, the least recently used files are deleted; the
+ * modification time of a file is updated when it is read, so the order carries over between sessions.
+ */
+public class DiskTileStore {
+
+    // Identifies tile files, followed by the format version
+    private static final int MAGIC = 0x4D54494C; // "MTIL"
+    private static final int VERSION = 2;
+    private static final String SUFFIX = ".tile";
+    // magic, version, tile size, fractal type, Julia c (2 longs), level, tile x/y (2 longs), max, precision,
+    // bytes per count
+    private static final int HEADER_BYTES = 4 + 4 + 4 + 4 + 8 + 8 + 4 + 8 + 8 + 4 + 4 + 4;
+    private static final int CHECKSUM_BYTES = 8;
+
+    private final Path directory;
+    private final long capBytes;
+    // The size of every file in the store, in least recently used order
+    private final LinkedHashMap<String, Long> files = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    // Writes happen in the background so that they never delay a frame
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "tile-store-writer");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Opens a store, creating its directory if needed and indexing the tiles already in it.
+     *
+     * @param directory The directory of the store.
+     * @param capBytes  The total size the tile files may have.
+     * @throws IOException If the directory cannot be created or listed.
+     */
+    public DiskTileStore(Path directory, long capBytes) throws IOException {
+        this.directory = directory;
+        this.capBytes = capBytes;
+        Files.createDirectories(directory);
+
+        // Index the existing files, oldest first, so that they are the first to be evicted.
+        List<Path> existing = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : stream) {
+                existing.add(file);
+            }
+        }
+        existing.sort(Comparator.comparing(DiskTileStore::lastModified));
+        for (Path file : existing) {
+            long size = Files.size(file);
+            files.put(file.getFileName().toString(), size);
+            totalBytes += size;
+        }
+        evict();
+    }
+
+    /**
+     * Reads a tile.
+     *
+     * @param key The tile.
+     * @return The iteration counts of the tile, or null if it is not stored or its file is not usable.
+     */
+    public int[] read(TileCache.Key key) {
+        String name = fileName(key);
+        synchronized (this) {
+            if (files.get(name) == null) {
+                return null;
+            }
+        }
+
+        Path file = directory.resolve(name);
+        int[] tile;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            tile = decode(buffer.order(ByteOrder.LITTLE_ENDIAN), key);
+            if (tile != null) {
+                Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            }
+        } catch (NoSuchFileException e) {
+            // Evicted in the meantime.
+            return null;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+
+        if (tile == null) {
+            rejected.increment();
+        } else {
+            reads.increment();
+        }
+        return tile;
+    }
+
+    /**
+     * Stores a tile in the background.
+     *
+     * @param key  The tile.
+     * @param tile The iteration counts of the tile, which must not be modified afterwards.
+     */
+    public void write(TileCache.Key key, int[] tile) {
+        writer.execute(() -> {
+            try {
+                writeNow(key, tile);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * Finishes the pending writes and stops the writer thread.
+     */
+    public void close() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public long getReads() {
+        return reads.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("disk store: %d tiles (%.1f of %.1f MB), %d reads, %d rejected files",
+                files.size(), totalBytes / 1048576.0, capBytes / 1048576.0, reads.sum(), rejected.sum());
+    }
+
+    private void writeNow(TileCache.Key key, int[] tile) throws IOException {
+        int bytesPerCount = bytesPerCount(key.getMaxIterations());
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + tile.length * bytesPerCount + CHECKSUM_BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(TileCache.TILE_SIZE)
+                .putInt(key.getFractalType().ordinal())
+                .putLong(Double.doubleToLongBits(key.getJuliaCReal()))
+                .putLong(Double.doubleToLongBits(key.getJuliaCImag()))
+                .putInt(key.getZoomLevel())
+                .putLong(key.getTileX()).putLong(key.getTileY())
+                .putInt(key.getMaxIterations())
+                .putInt(key.getPrecision().ordinal())
+                .putInt(bytesPerCount);
+        int dataStart = buffer.position();
+        for (int count : tile) {
+            if (bytesPerCount == 1) {
+                buffer.put((byte) count);
+            } else if (bytesPerCount == 2) {
+                buffer.putShort((short) count);
+            } else {
+                buffer.putInt(count);
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), dataStart, buffer.position() - dataStart);
+        buffer.putLong(crc.getValue());
+        buffer.flip();
+
+        String name = fileName(key);
+        Path temp = Files.createTempFile(directory, "tile", ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            Files.move(temp, directory.resolve(name), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        synchronized (this) {
+            Long previous = files.put(name, (long) buffer.limit());
+            totalBytes += buffer.limit() - (previous == null ? 0 : previous);
+            evict();
+        }
+    }
+
+    /**
+     * Decodes and validates a tile file.
+     *
+     * @return The iteration counts, or null if the file does not hold a valid tile for the key.
+     */
+    private static int[] decode(ByteBuffer buffer, TileCache.Key key) {
+        int size = TileCache.TILE_SIZE;
+        if (buffer.remaining() < HEADER_BYTES
+                || buffer.getInt() != MAGIC
+                || buffer.getInt() != VERSION
+                || buffer.getInt() != size
+                || buffer.getInt() != key.getFractalType().ordinal()
+                || buffer.getLong() != Double.doubleToLongBits(key.getJuliaCReal())
+                || buffer.getLong() != Double.doubleToLongBits(key.getJuliaCImag())
+                || buffer.getInt() != key.getZoomLevel()
+                || buffer.getLong() != key.getTileX()
+                || buffer.getLong() != key.getTileY()
+                || buffer.getInt() != key.getMaxIterations()
+                || buffer.getInt() != key.getPrecision().ordinal()) {
+            return null;
+        }
+        int bytesPerCount = buffer.getInt();
+        if (bytesPerCount != bytesPerCount(key.getMaxIterations())
+                || buffer.remaining() != size * size * bytesPerCount + CHECKSUM_BYTES) {
+            return null;
+        }
+
+        int dataStart = buffer.position();
+        int[] tile = new int[size * size];
+        for (int i = 0; i < tile.length; i++) {
+            int count;
+            if (bytesPerCount == 1) {
+                count = buffer.get() & 0xFF;
+            } else if (bytesPerCount == 2) {
+                count = buffer.getShort() & 0xFFFF;
+            } else {
+                count = buffer.getInt();
+            }
+            if (count < 0 || count > key.getMaxIterations()) {
+                return null;
+            }
+            tile[i] = count;
+        }
+
+        CRC32 crc = new CRC32();
+        ByteBuffer data = buffer.duplicate();
+        data.position(dataStart).limit(buffer.position());
+        crc.update(data);
+        return crc.getValue() == buffer.getLong() ? tile : null;
+    }
+
+    /**
+     * Deletes the least recently used files until the store is within its cap.
+     */
+    private synchronized void evict() {
+        Iterator<Map.Entry<String, Long>> lru = files.entrySet().iterator();
+        while (totalBytes > capBytes && lru.hasNext()) {
+            Map.Entry<String, Long> oldest = lru.next();
+            try {
+                Files.deleteIfExists(directory.resolve(oldest.getKey()));
+            } catch (IOException e) {
+                // A file that cannot be deleted right now is no longer counted; it is overwritten later.
+                e.printStackTrace();
+            }
+            totalBytes -= oldest.getValue();
+            lru.remove();
+        }
+    }
+
+    /**
+     * Gets the smallest number of bytes that can hold every count up to the iteration limit.
+     */
+    private static int bytesPerCount(int maxIterations) {
+        if (maxIterations <= 0xFF) {
+            return 1;
+        }
+        return maxIterations <= 0xFFFF ? 2 : 4;
+    }
+
+    /**
+     * Gets the file name of a tile, which spells out every field of its key.
+     */
+    private static String fileName(TileCache.Key key) {
+        String prefix = key.getFractalType().toString();
+        if (key.getFractalType() == FractalType.JULIA) {
+            prefix += "_" + Long.toHexString(Double.doubleToLongBits(key.getJuliaCReal()))
+                    + "_" + Long.toHexString(Double.doubleToLongBits(key.getJuliaCImag()));
+        }
+        return prefix + "_" + key.getPrecision() + "_" + key.getMaxIterations() + "_" + key.getZoomLevel()
+                + "_" + key.getTileX() + "_" + key.getTileY() + SUFFIX;
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+}
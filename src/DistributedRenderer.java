@@ -0,0 +1,371 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Renders a view on several worker processes, possibly on other machines, and assembles the iteration
+ * counts of the whole frame. It is the coordinator of a distributed render; the workers are
+ * {@link RenderNode}s.
+ * <p>
+ * The frame is split into strips of rows, which every worker takes from a shared queue one at a time,
+ * so fast workers simply render more strips. A worker whose connection fails or that stops answering
+ * for longer than the timeout is dropped and its strip goes back to the queue. Once the queue is empty,
+ * idle workers also render strips that have been running on another worker for much longer than a strip
+ * usually takes, and the first result wins, so a single slow machine cannot hold up the end of a render.
+ */
+public class DistributedRenderer {
+
+    /**
+     * The default number of rows in a strip.
+     */
+    public static final int DEFAULT_STRIP_HEIGHT = 32;
+
+    // How long to wait for a worker to accept a connection
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+    // A strip is rendered again elsewhere once it runs this many times longer than the average strip,
+    // but never before the minimum.
+    private static final double STRAGGLER_FACTOR = 3;
+    private static final long STRAGGLER_MIN_NANOS = 500_000_000L;
+
+    private final List<InetSocketAddress> workers;
+    private final int stripHeight;
+    private final int timeoutMillis;
+    private final List<WorkerStats> stats = new ArrayList<>();
+    private long nanos;
+
+    /**
+     * Creates a coordinator.
+     *
+     * @param workers       The addresses the workers listen on.
+     * @param stripHeight   The number of rows the workers render at once.
+     * @param timeoutMillis How long a worker may take to answer before it is considered dead.
+     */
+    public DistributedRenderer(List<InetSocketAddress> workers, int stripHeight, int timeoutMillis) {
+        if (workers.isEmpty()) {
+            throw new IllegalArgumentException("A distributed render needs at least one worker");
+        }
+        this.workers = new ArrayList<>(workers);
+        this.stripHeight = stripHeight;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Computes the iteration counts of a view on the workers.
+     *
+     * @param view    The view to render.
+     * @param options The render options.
+     * @return The iteration counts, row by row.
+     * @throws IOException If every worker failed before the frame was complete.
+     */
+    public int[] iterate(FractalView view, RenderOptions options) throws IOException {
+        long start = System.nanoTime();
+        Job job = new Job(view, options);
+        List<Thread> threads = new ArrayList<>();
+        stats.clear();
+        for (InetSocketAddress address : workers) {
+            WorkerStats worker = new WorkerStats(address);
+            stats.add(worker);
+            Thread thread = new Thread(() -> job.run(worker), "render-coordinator-" + address);
+            thread.setDaemon(true);
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        try {
+            job.await(threads.size());
+        } finally {
+            job.finish();
+            nanos = System.nanoTime() - start;
+        }
+        return job.iterations;
+    }
+
+    /**
+     * Gets what every worker contributed to the last render.
+     *
+     * @return The statistics of the workers.
+     */
+    public List<WorkerStats> getWorkerStats() {
+        return new ArrayList<>(stats);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder(String.format("%d workers in %.2f s", stats.size(), nanos / 1e9));
+        for (WorkerStats worker : stats) {
+            report.append(System.lineSeparator()).append("  ").append(worker);
+        }
+        return report.toString();
+    }
+
+    /**
+     * The state of one render, shared by the threads that talk to the workers.
+     */
+    private final class Job {
+
+        private final FractalView view;
+        private final RenderOptions options;
+        private final int width;
+        private final int strips;
+        private final int[] iterations;
+        private final Deque<Integer> pending = new ArrayDeque<>();
+        private final boolean[] done;
+        // When the strips were first handed out, and how many workers are rendering them
+        private final long[] startedAt;
+        private final int[] attempts;
+        private final List<Socket> sockets = new ArrayList<>();
+        private int remaining;
+        private int failedWorkers;
+        private long completedNanos;
+        private int completedStrips;
+        private boolean finished;
+
+        Job(FractalView view, RenderOptions options) {
+            this.view = view;
+            this.options = options;
+            this.width = view.getWidth();
+            this.strips = (view.getHeight() + stripHeight - 1) / stripHeight;
+            this.iterations = new int[width * view.getHeight()];
+            this.done = new boolean[strips];
+            this.startedAt = new long[strips];
+            this.attempts = new int[strips];
+            this.remaining = strips;
+            for (int i = 0; i < strips; i++) {
+                pending.add(i);
+            }
+        }
+
+        /**
+         * Talks to one worker until the frame is complete or the worker fails.
+         */
+        void run(WorkerStats worker) {
+            int strip = -1;
+            try (Socket socket = new Socket()) {
+                synchronized (this) {
+                    if (finished) {
+                        return;
+                    }
+                    sockets.add(socket);
+                }
+                socket.connect(worker.address, CONNECT_TIMEOUT_MILLIS);
+                socket.setSoTimeout(timeoutMillis);
+                socket.setTcpNoDelay(true);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                RenderNode.writeJob(out, view, options);
+
+                while ((strip = next()) >= 0) {
+                    int y0 = strip * stripHeight;
+                    int rows = Math.min(stripHeight, view.getHeight() - y0);
+                    long start = System.nanoTime();
+                    out.writeInt(y0);
+                    out.writeInt(rows);
+                    out.flush();
+
+                    int[] counts = new int[width * rows];
+                    if (in.readInt() != y0 || in.readInt() != rows) {
+                        throw new IOException("The worker answered with another strip");
+                    }
+                    RenderNode.readInts(in, counts, 0, counts.length);
+                    long elapsed = System.nanoTime() - start;
+                    complete(worker, strip, counts, elapsed);
+                    strip = -1;
+                }
+                out.writeInt(-1);
+                out.flush();
+            } catch (IOException e) {
+                fail(worker, strip, e);
+            }
+        }
+
+        /**
+         * Takes the next strip for a worker: a strip from the queue, or when the queue is empty a strip
+         * that takes too long elsewhere. Waits while all remaining strips are running normally.
+         *
+         * @return The strip, or -1 when the frame is complete.
+         */
+        synchronized int next() {
+            while (remaining > 0 && !finished) {
+                long now = System.nanoTime();
+                if (!pending.isEmpty()) {
+                    int strip = pending.removeFirst();
+                    if (attempts[strip]++ == 0) {
+                        startedAt[strip] = now;
+                    }
+                    return strip;
+                }
+                long average = completedStrips == 0 ? 0 : completedNanos / completedStrips;
+                long threshold = Math.max(STRAGGLER_MIN_NANOS, (long) (STRAGGLER_FACTOR * average));
+                for (int strip = 0; strip < strips; strip++) {
+                    // A strip is only duplicated once, so two slow workers cannot chase each other.
+                    if (!done[strip] && attempts[strip] == 1 && now - startedAt[strip] > threshold) {
+                        attempts[strip]++;
+                        return strip;
+                    }
+                }
+                try {
+                    wait(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return -1;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Stores the counts of a strip, unless another worker delivered them first, and credits the worker.
+         * The worker is credited before the render can end, so its statistics cover every strip.
+         */
+        synchronized void complete(WorkerStats worker, int strip, int[] counts, long elapsed) {
+            boolean used = !done[strip];
+            worker.record(counts.length, elapsed, used);
+            if (!used) {
+                return;
+            }
+            System.arraycopy(counts, 0, iterations, strip * stripHeight * width, counts.length);
+            done[strip] = true;
+            remaining--;
+            completedNanos += elapsed;
+            completedStrips++;
+            notifyAll();
+        }
+
+        synchronized void fail(WorkerStats worker, int strip, IOException e) {
+            if (finished) {
+                // The connection was closed because the frame is complete.
+                return;
+            }
+            worker.failure = e.toString();
+            failedWorkers++;
+            if (strip >= 0 && !done[strip]) {
+                attempts[strip]--;
+                pending.addFirst(strip);
+            }
+            notifyAll();
+        }
+
+        /**
+         * Waits until the frame is complete.
+         *
+         * @param workers The number of workers.
+         * @throws IOException If all workers failed first.
+         */
+        synchronized void await(int workers) throws IOException {
+            while (remaining > 0) {
+                if (failedWorkers == workers) {
+                    throw new IOException("All " + workers + " workers failed with " + remaining + " of "
+                            + strips + " strips left");
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Render interrupted", e);
+                }
+            }
+        }
+
+        /**
+         * Ends the render: idle workers are told to stop, and workers still rendering a duplicate strip
+         * are disconnected.
+         */
+        void finish() {
+            List<Socket> open;
+            synchronized (this) {
+                finished = true;
+                notifyAll();
+                open = new ArrayList<>(sockets);
+            }
+            for (Socket socket : open) {
+                try {
+                    // Shutting down the input wakes up a thread that waits for a strip it no longer needs.
+                    if (!socket.isClosed()) {
+                        socket.shutdownInput();
+                    }
+                } catch (IOException e) {
+                    // The socket is already gone.
+                }
+            }
+        }
+    }
+
+    /**
+     * What one worker contributed to a render.
+     */
+    public static final class WorkerStats {
+
+        private final InetSocketAddress address;
+        private int strips;
+        private int discarded;
+        private long pixels;
+        private long busyNanos;
+        private volatile String failure;
+
+        WorkerStats(InetSocketAddress address) {
+            this.address = address;
+        }
+
+        synchronized void record(long stripPixels, long elapsed, boolean used) {
+            busyNanos += elapsed;
+            if (used) {
+                strips++;
+                pixels += stripPixels;
+            } else {
+                discarded++;
+            }
+        }
+
+        public InetSocketAddress getAddress() {
+            return address;
+        }
+
+        public synchronized int getStrips() {
+            return strips;
+        }
+
+        public synchronized long getPixels() {
+            return pixels;
+        }
+
+        /**
+         * Gets the rate at which the worker delivered pixels while it was busy.
+         *
+         * @return The throughput in pixels per second.
+         */
+        public synchronized double getThroughput() {
+            return busyNanos == 0 ? 0 : pixels * 1e9 / busyNanos;
+        }
+
+        /**
+         * Gets why the worker was dropped.
+         *
+         * @return The error, or null if the worker did not fail.
+         */
+        public String getFailure() {
+            return failure;
+        }
+
+        @Override
+        public synchronized String toString() {
+            String summary = String.format("%s: %d strips, %d pixels, %.2f Mpixels/s", address, strips, pixels,
+                    getThroughput() / 1e6);
+            if (discarded > 0) {
+                summary += ", " + discarded + " duplicate strips discarded";
+            }
+            if (failure != null) {
+                summary += ", dropped after " + failure;
+            }
+            return summary;
+        }
+    }
+}
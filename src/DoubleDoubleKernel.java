@@ -0,0 +1,226 @@
+import java.math.BigDecimal;
+
+/**
+ * The escape-time kernel in double-double arithmetic. Every coordinate is the unevaluated sum of a high
+ * and a low double, which carries about 106 bits: enough to resolve the pixels of zooms up to about
+ * 1e27 without a reference orbit. The rounding error of every product is recovered exactly with
+ * {@link Math#fma}, which is a single instruction on current processors.
+ * <p>
+ * An iteration costs about ten times as much as in double precision, so the engine only uses this kernel
+ * for deep zooms when perturbation is turned off. The interior shortcuts are those of
+ * {@link EscapeTimeKernel}; the bulb tests only look at the high parts of a point, which can only
+ * misjudge points within a double ulp of the edge of the cardioid or the bulb. The escape points
+ * recorded for smooth coloring are the high parts, which is far more precision than the fraction needs.
+ */
+public final class DoubleDoubleKernel implements PixelKernel, OffsetKernel {
+
+    private final FractalView view;
+    private final boolean julia;
+    private final boolean bulbCheck;
+    private final boolean periodicityCheck;
+    private final double epsilon;
+    private final InteriorStats stats;
+    // Records the escape points of the pixels for smooth coloring, or null
+    private final EscapeFractions fractions;
+    // The center of the view as the sum of a high and a low part
+    private final double centerRealHigh;
+    private final double centerRealLow;
+    private final double centerImagHigh;
+    private final double centerImagLow;
+
+    /**
+     * Creates a kernel for a view.
+     *
+     * @param view             The view to render.
+     * @param bulbCheck        Whether to test for the main cardioid and period-2 bulb (Mandelbrot only).
+     * @param periodicityCheck Whether to stop iterating orbits that have become periodic.
+     * @param stats            The statistics to record short-circuited pixels in.
+     */
+    public DoubleDoubleKernel(FractalView view, boolean bulbCheck, boolean periodicityCheck, InteriorStats stats) {
+        this(view, bulbCheck, periodicityCheck, stats, null);
+    }
+
+    /**
+     * Creates a kernel for a view that records the fractional escape counts of the pixels that escape.
+     *
+     * @param view             The view to render.
+     * @param bulbCheck        Whether to test for the main cardioid and period-2 bulb (Mandelbrot only).
+     * @param periodicityCheck Whether to stop iterating orbits that have become periodic.
+     * @param stats            The statistics to record short-circuited pixels in.
+     * @param fractions        The fractions to record the escapes in, or null to record none.
+     */
+    public DoubleDoubleKernel(FractalView view, boolean bulbCheck, boolean periodicityCheck, InteriorStats stats,
+                              EscapeFractions fractions) {
+        this.view = view;
+        this.julia = view.getFractalType() == FractalType.JULIA;
+        this.bulbCheck = bulbCheck && !julia;
+        this.periodicityCheck = periodicityCheck;
+        this.epsilon = EscapeTimeKernel.periodicityEpsilon(view.getZoom());
+        this.stats = stats;
+        this.fractions = fractions;
+        this.centerRealHigh = view.getCenterReal().doubleValue();
+        this.centerRealLow = view.getCenterReal().subtract(new BigDecimal(centerRealHigh)).doubleValue();
+        this.centerImagHigh = view.getCenterImag().doubleValue();
+        this.centerImagLow = view.getCenterImag().subtract(new BigDecimal(centerImagHigh)).doubleValue();
+    }
+
+    /**
+     * Gets the statistics of the pixels this kernel short-circuited.
+     *
+     * @return The interior statistics.
+     */
+    public InteriorStats getStats() {
+        return stats;
+    }
+
+    @Override
+    public PrecisionTier getPrecision() {
+        return PrecisionTier.DOUBLE_DOUBLE;
+    }
+
+    @Override
+    public int iterate(int x, int y) {
+        final double zoom = view.getZoom();
+        return iterateOffset((x - view.getWidth() / 2.0) / zoom, (y - view.getHeight() / 2.0) / zoom, x, y);
+    }
+
+    @Override
+    public int iterateOffset(double dx, double dy) {
+        return iterateOffset(dx, dy, -1, -1);
+    }
+
+    /**
+     * Runs the escape-time iteration for the point at an offset from the center of the view.
+     *
+     * @param x The pixel column of the point, or -1 if it is not a pixel.
+     * @param y The pixel row of the point, or -1 if it is not a pixel.
+     * @return The number of iterations before the orbit escaped, or maxIterations if it did not.
+     */
+    private int iterateOffset(double dx, double dy, int x, int y) {
+        // The point is the exact center plus the offset, rounded once to a double-double.
+        double realSum = centerRealHigh + dx;
+        double realError = sumError(centerRealHigh, dx, realSum) + centerRealLow;
+        double realHigh = realSum + realError;
+        double realLow = realError - (realHigh - realSum);
+        double imagSum = centerImagHigh + dy;
+        double imagError = sumError(centerImagHigh, dy, imagSum) + centerImagLow;
+        double imagHigh = imagSum + imagError;
+        double imagLow = imagError - (imagHigh - imagSum);
+        return iteratePoint(realHigh, realLow, imagHigh, imagLow, x, y);
+    }
+
+    /**
+     * Runs the escape-time iteration for a point given as two double-doubles.
+     *
+     * @return The number of iterations before the orbit escaped, or maxIterations if it did not.
+     */
+    private int iteratePoint(double realHigh, double realLow, double imagHigh, double imagLow, int x, int y) {
+        final int maxIterations = view.getMaxIterations();
+        double zxh, zxl, zyh, zyl, cxh, cxl, cyh, cyl;
+        if (julia) {
+            zxh = realHigh;
+            zxl = realLow;
+            zyh = imagHigh;
+            zyl = imagLow;
+            cxh = view.getJuliaCReal();
+            cxl = 0;
+            cyh = view.getJuliaCImag();
+            cyl = 0;
+        } else {
+            zxh = 0;
+            zxl = 0;
+            zyh = 0;
+            zyl = 0;
+            cxh = realHigh;
+            cxl = realLow;
+            cyh = imagHigh;
+            cyl = imagLow;
+
+            if (bulbCheck) {
+                // The closed-form tests of EscapeTimeKernel on the high parts
+                double xq = cxh - 0.25;
+                double q = xq * xq + cyh * cyh;
+                if (q * (q + xq) <= 0.25 * cyh * cyh) {
+                    stats.recordCardioid();
+                    return maxIterations;
+                }
+                double xb = cxh + 1.0;
+                if (xb * xb + cyh * cyh <= 0.0625) {
+                    stats.recordBulb();
+                    return maxIterations;
+                }
+            }
+        }
+
+        double savedXh = zxh;
+        double savedXl = zxl;
+        double savedYh = zyh;
+        double savedYl = zyl;
+        int nextSave = 1;
+        int iter = 0;
+
+        while (iter < maxIterations) {
+            // zx^2, zy^2 and zx zy, each as a product of the high parts with its exact rounding error
+            // plus the cross terms of the low parts
+            double x2h = zxh * zxh;
+            double x2l = Math.fma(zxh, zxh, -x2h) + 2.0 * zxh * zxl;
+            double y2h = zyh * zyh;
+            double y2l = Math.fma(zyh, zyh, -y2h) + 2.0 * zyh * zyl;
+            if (x2h + y2h >= 4) {
+                break;
+            }
+            double xyh = zxh * zyh;
+            double xyl = Math.fma(zxh, zyh, -xyh) + (zxh * zyl + zxl * zyh);
+
+            // zx' = zx^2 - zy^2 + cx
+            double dh = x2h - y2h;
+            double dl = sumError(x2h, -y2h, dh) + (x2l - y2l);
+            double rh = dh + cxh;
+            double rl = sumError(dh, cxh, rh) + (dl + cxl);
+            zxh = rh + rl;
+            zxl = rl - (zxh - rh);
+
+            // zy' = 2 zx zy + cy
+            double ih = 2.0 * xyh + cyh;
+            double il = sumError(2.0 * xyh, cyh, ih) + (2.0 * xyl + cyl);
+            zyh = ih + il;
+            zyl = il - (zyh - ih);
+            iter++;
+
+            if (periodicityCheck) {
+                double repeatX = (zxh - savedXh) + (zxl - savedXl);
+                double repeatY = (zyh - savedYh) + (zyl - savedYl);
+                if (Math.abs(repeatX) < epsilon && Math.abs(repeatY) < epsilon) {
+                    stats.recordPeriodic();
+                    return maxIterations;
+                }
+                // Brent's schedule saves the orbit after 1, 3, 7, 15, ... iterations.
+                if (iter == nextSave) {
+                    savedXh = zxh;
+                    savedXl = zxl;
+                    savedYh = zyh;
+                    savedYl = zyl;
+                    nextSave += nextSave + 1;
+                }
+            }
+        }
+        if (iter < maxIterations && fractions != null && x >= 0) {
+            fractions.record(x, y, zxh, zyh, cxh, cyh);
+        }
+        return iter;
+    }
+
+    /**
+     * Gets the rounding error of a sum of two doubles (Knuth's TwoSum), so that a + b is exactly
+     * sum + error.
+     *
+     * @param a   The first summand.
+     * @param b   The second summand.
+     * @param sum The rounded sum a + b.
+     * @return The error of the rounded sum.
+     */
+    private static double sumError(double a, double b, double sum) {
+        double bVirtual = sum - a;
+        return (a - (sum - bVirtual)) + (b - bVirtual);
+    }
+}
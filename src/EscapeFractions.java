@@ -0,0 +1,121 @@
+/**
+ * The fractional parts of the escape counts of a render, for smooth coloring. The kernels hand over the
+ * orbit point at which a pixel escaped, and the continuous count nu = n + 1 - log2(log|z|) is worked
+ * out from it here. The counts themselves stay integers, so the tile cache, the orbit checkpoint and the
+ * render workers, which store, compare and transfer counts, are not affected.
+ * <p>
+ * The fraction nu - n of a pixel is stored in a float buffer with the layout of the iteration counts it
+ * belongs to, which only the palette reads. It is not confined to 0 to 1: the bands of the escape radius
+ * 2 of the kernels do not line up with the continuous count, which mostly runs from about n - 0.4 to
+ * n + 2 over a band, and cutting it off at whole counts would bring back the steps between the bands.
+ * Orbits that linger just outside radius 2, like those around the tip of the Mandelbrot set at -2, even
+ * escape several iterations after their count. A frame attaches one buffer for all of its rows; a
+ * streamed export attaches the buffer of each strip while the strip renders. Pixels of rows without a
+ * buffer are not recorded.
+ */
+public final class EscapeFractions {
+
+    // The orbit is continued up to this radius, 2^8, where it is ruled by the squaring and c shifts the
+    // continuous count by less than 1e-4
+    private static final double SMOOTH_RADIUS_SQUARED = 65536;
+    // Enough iterations to get any orbit that escaped from radius 2 to 2^8, but for the few that linger
+    // near the tip of the Mandelbrot set at -2
+    private static final int MAX_EXTRA_ITERATIONS = 16;
+    private static final double LOG_2 = Math.log(2);
+
+    private final int width;
+    // The buffer of every row of the render, and the index of the first pixel of the row in it
+    private final float[][] rowBuffers;
+    private final int[] rowStarts;
+
+    /**
+     * Creates the fractions of a render without buffers, for a render that attaches them row by row.
+     *
+     * @param width  The width of the render.
+     * @param height The height of the render.
+     */
+    public EscapeFractions(int width, int height) {
+        this.width = width;
+        this.rowBuffers = new float[height][];
+        this.rowStarts = new int[height];
+    }
+
+    /**
+     * Creates the fractions of a frame that is rendered in one buffer.
+     *
+     * @param fractions The buffer, row by row like the iteration counts of the frame.
+     * @param width     The width of the frame.
+     * @param height    The height of the frame.
+     */
+    public EscapeFractions(float[] fractions, int width, int height) {
+        this(width, height);
+        attach(fractions, 0, 0, height);
+    }
+
+    /**
+     * Records the fractions of a range of rows in a buffer from now on. The buffer may hold more rows
+     * than the range, such as the rows a strip shares with its neighbours, which stay unrecorded.
+     *
+     * @param fractions The buffer.
+     * @param top       The row of the render the buffer starts with.
+     * @param firstRow  The first row of the range.
+     * @param rows      The number of rows of the range.
+     */
+    public void attach(float[] fractions, int top, int firstRow, int rows) {
+        for (int y = firstRow; y < firstRow + rows; y++) {
+            rowBuffers[y] = fractions;
+            rowStarts[y] = (y - top) * width;
+        }
+    }
+
+    /**
+     * Stops recording the fractions of a range of rows.
+     *
+     * @param firstRow The first row of the range.
+     * @param rows     The number of rows of the range.
+     */
+    public void detach(int firstRow, int rows) {
+        for (int y = firstRow; y < firstRow + rows; y++) {
+            rowBuffers[y] = null;
+        }
+    }
+
+    /**
+     * Records the fraction of a pixel whose orbit escaped.
+     *
+     * @param x  The pixel column.
+     * @param y  The pixel row.
+     * @param zx The real part of the first orbit point outside the escape radius.
+     * @param zy The imaginary part of the first orbit point outside the escape radius.
+     * @param cX The real part of the parameter c of the orbit.
+     * @param cY The imaginary part of the parameter c of the orbit.
+     */
+    void record(int x, int y, double zx, double zy, double cX, double cY) {
+        float[] fractions = rowBuffers[y];
+        if (fractions != null) {
+            fractions[rowStarts[y] + x] = fraction(zx, zy, cX, cY);
+        }
+    }
+
+    /**
+     * Computes the fractional part of the continuous escape count of an orbit. At the escape radius 2
+     * of the kernels, c still pulls the orbit away from z^2, so the orbit is continued until it leaves a
+     * large radius and the continuous count is taken there, minus the extra iterations.
+     *
+     * @return The fraction nu - n, which grows as the orbit crosses the escape radius more narrowly.
+     */
+    static float fraction(double zx, double zy, double cX, double cY) {
+        double modulusSquared = zx * zx + zy * zy;
+        int extra = 0;
+        while (modulusSquared < SMOOTH_RADIUS_SQUARED && extra < MAX_EXTRA_ITERATIONS) {
+            double tmp = zx * zx - zy * zy + cX;
+            zy = 2.0 * zx * zy + cY;
+            zx = tmp;
+            modulusSquared = zx * zx + zy * zy;
+            extra++;
+        }
+        // log2 |z| = log(|z|^2) / (2 log 2), and nu - n = extra + 1 - log2(log2 |z|)
+        double log2Modulus = Math.log(modulusSquared) / (2 * LOG_2);
+        return (float) (extra + 1 - Math.log(log2Modulus) / LOG_2);
+    }
+}
@@ -0,0 +1,254 @@
+/**
+ * The escape-time kernel for the Mandelbrot and Julia sets with shortcuts for interior points.
+ * <p>
+ * Points inside the set never escape, so without shortcuts they cost the full iteration limit. Two
+ * checks avoid most of that work:
+ * <ul>
+ * <li>The main cardioid and the period-2 bulb of the Mandelbrot set can be recognized in closed form
+ * before iterating at all.</li>
+ * <li>Any other interior point is attracted to a cycle. Brent's cycle detection keeps one saved orbit
+ * point and compares every new point against it, saving a new point each time the number of steps
+ * since the last one reaches the next power of two. Once the orbit repeats itself the point cannot
+ * escape anymore. This works for both Mandelbrot and Julia sets.</li>
+ * </ul>
+ * With an {@link OrbitCheckpoint}, the kernel records the last orbit point of every pixel that reaches
+ * the iteration limit, so that a frame with a higher limit can continue the orbit from there, and the
+ * pixels found to be periodic, which stay interior at any limit. With {@link EscapeFractions}, it
+ * records where the orbit of every pixel that escapes crossed the escape radius, for smooth coloring.
+ */
+public final class EscapeTimeKernel implements ResumableKernel, OffsetKernel {
+
+    // Orbit points closer than this fraction of a pixel are considered a repeat
+    private static final double PERIODICITY_PIXEL_FRACTION = 1e-3;
+    // Upper bound for the tolerance at low zoom levels
+    private static final double MAX_PERIODICITY_EPSILON = 1e-12;
+
+    private final FractalView view;
+    private final boolean julia;
+    private final boolean bulbCheck;
+    private final boolean periodicityCheck;
+    private final double epsilon;
+    private final InteriorStats stats;
+    // Records the pixels that reach the iteration limit, or null
+    private final OrbitCheckpoint checkpoint;
+    // Records the escape points of the pixels for smooth coloring, or null
+    private final EscapeFractions fractions;
+
+    /**
+     * Creates a kernel for a view.
+     *
+     * @param view             The view to render.
+     * @param bulbCheck        Whether to test for the main cardioid and period-2 bulb (Mandelbrot only).
+     * @param periodicityCheck Whether to stop iterating orbits that have become periodic.
+     * @param stats            The statistics to record short-circuited pixels in.
+     */
+    public EscapeTimeKernel(FractalView view, boolean bulbCheck, boolean periodicityCheck, InteriorStats stats) {
+        this(view, bulbCheck, periodicityCheck, stats, null);
+    }
+
+    /**
+     * Creates a kernel for a view that records the orbits of the pixels that reach the iteration limit.
+     *
+     * @param view             The view to render.
+     * @param bulbCheck        Whether to test for the main cardioid and period-2 bulb (Mandelbrot only).
+     * @param periodicityCheck Whether to stop iterating orbits that have become periodic.
+     * @param stats            The statistics to record short-circuited pixels in.
+     * @param checkpoint       The checkpoint to record the orbits in, or null to record none.
+     */
+    public EscapeTimeKernel(FractalView view, boolean bulbCheck, boolean periodicityCheck, InteriorStats stats,
+                            OrbitCheckpoint checkpoint) {
+        this(view, bulbCheck, periodicityCheck, stats, checkpoint, null);
+    }
+
+    /**
+     * Creates a kernel for a view that records the orbits of the pixels that reach the iteration limit,
+     * and the fractional escape counts of the pixels that escape.
+     *
+     * @param view             The view to render.
+     * @param bulbCheck        Whether to test for the main cardioid and period-2 bulb (Mandelbrot only).
+     * @param periodicityCheck Whether to stop iterating orbits that have become periodic.
+     * @param stats            The statistics to record short-circuited pixels in.
+     * @param checkpoint       The checkpoint to record the orbits in, or null to record none.
+     * @param fractions        The fractions to record the escapes in, or null to record none.
+     */
+    public EscapeTimeKernel(FractalView view, boolean bulbCheck, boolean periodicityCheck, InteriorStats stats,
+                            OrbitCheckpoint checkpoint, EscapeFractions fractions) {
+        this.view = view;
+        this.julia = view.getFractalType() == FractalType.JULIA;
+        this.bulbCheck = bulbCheck && !julia;
+        this.periodicityCheck = periodicityCheck;
+        this.epsilon = periodicityEpsilon(view.getZoom());
+        this.stats = stats;
+        this.checkpoint = checkpoint;
+        this.fractions = fractions;
+    }
+
+    /**
+     * Gets the distance below which two orbit points are considered a repeat.
+     *
+     * @param zoom The zoom of the view, in pixels per unit of the complex plane.
+     * @return The tolerance of the periodicity check.
+     */
+    static double periodicityEpsilon(double zoom) {
+        return Math.min(MAX_PERIODICITY_EPSILON, PERIODICITY_PIXEL_FRACTION / zoom);
+    }
+
+    /**
+     * Gets the statistics of the pixels this kernel short-circuited.
+     *
+     * @return The interior statistics.
+     */
+    public InteriorStats getStats() {
+        return stats;
+    }
+
+    FractalView getView() {
+        return view;
+    }
+
+    boolean hasBulbCheck() {
+        return bulbCheck;
+    }
+
+    boolean hasPeriodicityCheck() {
+        return periodicityCheck;
+    }
+
+    double getEpsilon() {
+        return epsilon;
+    }
+
+    OrbitCheckpoint getCheckpoint() {
+        return checkpoint;
+    }
+
+    EscapeFractions getFractions() {
+        return fractions;
+    }
+
+    @Override
+    public int iterate(int x, int y) {
+        return iteratePoint(view.toReal(x), view.toImag(y), x, y);
+    }
+
+    @Override
+    public int iterateOffset(double dx, double dy) {
+        return iteratePoint(view.getOffsetX() + dx, view.getOffsetY() + dy, -1, -1);
+    }
+
+    @Override
+    public int resume(int x, int y, double zx, double zy, int iter) {
+        if (julia) {
+            return iterateOrbit(zx, zy, view.getJuliaCReal(), view.getJuliaCImag(), iter, x, y);
+        }
+        return iterateOrbit(zx, zy, view.toReal(x), view.toImag(y), iter, x, y);
+    }
+
+    /**
+     * Runs the escape-time iteration for a point of the complex plane.
+     *
+     * @param real The real part of the point.
+     * @param imag The imaginary part of the point.
+     * @param x    The pixel column of the point, or -1 if it is not a pixel.
+     * @param y    The pixel row of the point, or -1 if it is not a pixel.
+     * @return The number of iterations before the orbit escaped, or maxIterations if it did not.
+     */
+    private int iteratePoint(double real, double imag, int x, int y) {
+        final int maxIterations = view.getMaxIterations();
+        double zx, zy, cX, cY;
+        if (julia) {
+            zx = real;
+            zy = imag;
+            cX = view.getJuliaCReal();
+            cY = view.getJuliaCImag();
+        } else {
+            zx = 0;
+            zy = 0;
+            cX = real;
+            cY = imag;
+
+            if (bulbCheck) {
+                // Main cardioid: q (q + (x - 1/4)) <= y^2 / 4 with q = (x - 1/4)^2 + y^2
+                double xq = cX - 0.25;
+                double q = xq * xq + cY * cY;
+                if (q * (q + xq) <= 0.25 * cY * cY) {
+                    stats.recordCardioid();
+                    return maxIterations;
+                }
+                // Period-2 bulb: a disk of radius 1/4 around -1
+                double xb = cX + 1.0;
+                if (xb * xb + cY * cY <= 0.0625) {
+                    stats.recordBulb();
+                    return maxIterations;
+                }
+            }
+        }
+
+        return iterateOrbit(zx, zy, cX, cY, 0, x, y);
+    }
+
+    /**
+     * Iterates an orbit from a point up to the iteration limit, and records the last point in the
+     * checkpoint if the orbit of a pixel reaches the limit, or in the fractions if it escapes.
+     *
+     * @return The number of iterations before the orbit escaped, or maxIterations if it did not.
+     */
+    private int iterateOrbit(double zx, double zy, double cX, double cY, int iter, int x, int y) {
+        final int maxIterations = view.getMaxIterations();
+        if (!periodicityCheck) {
+            while (zx * zx + zy * zy < 4 && iter < maxIterations) {
+                double tmp = zx * zx - zy * zy + cX;
+                zy = 2.0 * zx * zy + cY;
+                zx = tmp;
+                iter++;
+            }
+            record(zx, zy, cX, cY, iter, x, y);
+            return iter;
+        }
+
+        double savedX = zx;
+        double savedY = zy;
+        int steps = 0;
+        int limit = 1;
+
+        while (zx * zx + zy * zy < 4 && iter < maxIterations) {
+            double tmp = zx * zx - zy * zy + cX;
+            zy = 2.0 * zx * zy + cY;
+            zx = tmp;
+            iter++;
+
+            if (Math.abs(zx - savedX) < epsilon && Math.abs(zy - savedY) < epsilon) {
+                stats.recordPeriodic();
+                if (checkpoint != null && x >= 0) {
+                    checkpoint.recordInterior(x, y);
+                }
+                return maxIterations;
+            }
+            if (++steps == limit) {
+                savedX = zx;
+                savedY = zy;
+                steps = 0;
+                limit <<= 1;
+            }
+        }
+        record(zx, zy, cX, cY, iter, x, y);
+        return iter;
+    }
+
+    /**
+     * Records the last orbit point of a pixel that reached the iteration limit, or the escape point of
+     * one that escaped.
+     */
+    private void record(double zx, double zy, double cX, double cY, int iter, int x, int y) {
+        if (x < 0) {
+            return;
+        }
+        if (iter == view.getMaxIterations()) {
+            if (checkpoint != null) {
+                checkpoint.record(x, y, zx, zy);
+            }
+        } else if (fractions != null) {
+            fractions.record(x, y, zx, zy, cX, cY);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+import java.util.function.BooleanSupplier;
+
+/**
+ * The iteration counts of the plane around one point on a log-polar grid, from which the frames of a
+ * zoom towards that point can be resampled.
+ * <p>
+ * Column i of the map is the angle i * delta and row j is the radius rMax * exp(-j * delta), with
+ * delta = 2 pi / columns. The cells of the grid are square in log-polar terms, so a frame at any zoom
+ * sees the map with the same resolution at the same distance from the center in pixels: a ring of
+ * pixels at radius columns / (2 pi) is sampled exactly once per pixel, rings inside it are sampled
+ * more finely and rings outside it too coarsely. Zooming in by a factor only shifts the rows a frame
+ * uses by ln(factor) / delta, so consecutive frames share almost all of their samples.
+ * <p>
+ * Rows are rendered in chunks on demand, and chunks that the frames no longer need can be released,
+ * so the memory of the map is bounded by the rows of a single frame rather than by the whole zoom.
+ */
+public class ExponentialMap {
+
+    // The number of rows rendered at once
+    private static final int CHUNK_ROWS = 64;
+
+    private final OffsetKernel kernel;
+    private final int columns;
+    private final int rows;
+    private final double delta;
+    private final double logMaxRadius;
+    // The direction of every column
+    private final double[] cos;
+    private final double[] sin;
+    // The rendered chunks by their index, or null where a chunk is not rendered
+    private final int[][] chunks;
+    private long samples;
+
+    /**
+     * Creates a map. No rows are rendered until they are requested.
+     *
+     * @param kernel    The kernel that iterates points by their offset from the center of the map.
+     * @param columns   The number of angles around the center.
+     * @param maxRadius The radius of row 0, in the units of the complex plane.
+     * @param minRadius The smallest radius the map has to reach.
+     */
+    public ExponentialMap(OffsetKernel kernel, int columns, double maxRadius, double minRadius) {
+        this.kernel = kernel;
+        this.columns = columns;
+        this.delta = 2 * Math.PI / columns;
+        this.logMaxRadius = Math.log(maxRadius);
+        // One row more than needed, so that the innermost radius can be interpolated
+        this.rows = (int) Math.ceil(Math.log(maxRadius / minRadius) / delta) + 2;
+        this.chunks = new int[(rows + CHUNK_ROWS - 1) / CHUNK_ROWS][];
+        this.cos = new double[columns];
+        this.sin = new double[columns];
+        for (int i = 0; i < columns; i++) {
+            cos[i] = Math.cos(i * delta);
+            sin[i] = Math.sin(i * delta);
+        }
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Gets the distance from the center, in pixels of a frame, up to which the map has at least one
+     * sample per pixel.
+     *
+     * @return The radius of full resolution.
+     */
+    public double getResolvedRadius() {
+        return 1 / delta;
+    }
+
+    /**
+     * Gets the number of points the map has iterated.
+     *
+     * @return The samples rendered so far.
+     */
+    public long getSamples() {
+        return samples;
+    }
+
+    /**
+     * Converts a radius to its fractional row.
+     *
+     * @param radius The distance from the center, in the units of the complex plane.
+     * @return The row, which may lie outside the map.
+     */
+    public double row(double radius) {
+        return (logMaxRadius - Math.log(radius)) / delta;
+    }
+
+    /**
+     * Renders the chunks that hold the given rows and are not rendered yet, and releases all other
+     * chunks.
+     *
+     * @param scheduler The scheduler to render the chunks on.
+     * @param firstRow  The first row needed.
+     * @param lastRow   The last row needed.
+     * @param cancelled Checked between bands; when it returns true the remaining rows are skipped.
+     */
+    public void retain(TileScheduler scheduler, int firstRow, int lastRow, BooleanSupplier cancelled) {
+        int firstChunk = Math.max(0, firstRow) / CHUNK_ROWS;
+        int lastChunk = Math.min(rows - 1, lastRow) / CHUNK_ROWS;
+        for (int chunk = 0; chunk < chunks.length; chunk++) {
+            if (chunk < firstChunk || chunk > lastChunk) {
+                chunks[chunk] = null;
+            }
+        }
+
+        for (int chunk = firstChunk; chunk <= lastChunk && !cancelled.getAsBoolean(); chunk++) {
+            if (chunks[chunk] != null) {
+                continue;
+            }
+            final int row0 = chunk * CHUNK_ROWS;
+            final int chunkRows = Math.min(CHUNK_ROWS, rows - row0);
+            final int[] counts = new int[columns * chunkRows];
+            TileStats stats = new TileStats(columns, chunkRows, scheduler.getParallelism());
+            scheduler.render(columns, chunkRows, 1, (x0, y0, x1, y1) -> {
+                long cost = 0;
+                for (int y = y0; y < y1; y++) {
+                    double radius = Math.exp(logMaxRadius - (row0 + y) * delta);
+                    for (int x = x0; x < x1; x++) {
+                        int iter = kernel.iterateOffset(radius * cos[x], radius * sin[x]);
+                        counts[x + y * columns] = iter;
+                        cost += iter;
+                    }
+                }
+                return cost;
+            }, cancelled, stats);
+            chunks[chunk] = counts;
+            samples += (long) columns * chunkRows;
+        }
+    }
+
+    /**
+     * Gets the color of a point by interpolating the colors of the four samples around it. The rows
+     * around the point must have been retained.
+     *
+     * @param palette The palette that colors the samples.
+     * @param row     The fractional row of the point, between 0 and the last row.
+     * @param dx      The real part of the offset of the point from the center.
+     * @param dy      The imaginary part of the offset of the point from the center.
+     * @return The RGB value of the point.
+     */
+    public int sample(Palette palette, double row, double dx, double dy) {
+        double column = angle(dx, dy) / delta;
+        int j = Math.min((int) row, rows - 2);
+        int i = (int) column;
+        // The weights of the right column and the lower row, in 1/256
+        int fx = (int) ((column - i) * 256);
+        int fy = (int) ((row - j) * 256);
+        int next = i + 1 >= columns ? 0 : i + 1;
+        i = Math.min(i, columns - 1);
+
+        int topLeft = palette.rgb(count(i, j));
+        int topRight = palette.rgb(count(next, j));
+        int bottomLeft = palette.rgb(count(i, j + 1));
+        int bottomRight = palette.rgb(count(next, j + 1));
+        int rgb = 0;
+        for (int shift = 16; shift >= 0; shift -= 8) {
+            int top = ((topLeft >> shift) & 0xFF) * (256 - fx) + ((topRight >> shift) & 0xFF) * fx;
+            int bottom = ((bottomLeft >> shift) & 0xFF) * (256 - fx) + ((bottomRight >> shift) & 0xFF) * fx;
+            rgb |= ((top * (256 - fy) + bottom * fy + (1 << 15)) >> 16) << shift;
+        }
+        return rgb;
+    }
+
+    private int count(int column, int row) {
+        return chunks[row / CHUNK_ROWS][column + (row % CHUNK_ROWS) * columns];
+    }
+
+    /**
+     * Computes the angle of a point from 0 to 2 pi. Math.atan2 costs more than everything else needed to
+     * resample a pixel, so this uses a polynomial for the arctangent on [0, 1] with an error below
+     * 1e-5 radians, far below the angle between two columns.
+     */
+    static double angle(double dx, double dy) {
+        double ax = Math.abs(dx);
+        double ay = Math.abs(dy);
+        double min = Math.min(ax, ay);
+        double max = Math.max(ax, ay);
+        if (max == 0) {
+            return 0;
+        }
+        double t = min / max;
+        double t2 = t * t;
+        // Abramowitz and Stegun 4.4.47
+        double a = t * (0.9998660 + t2 * (-0.3302995 + t2 * (0.1801410 + t2 * (-0.0851330 + t2 * 0.0208351))));
+        if (ay > ax) {
+            a = Math.PI / 2 - a;
+        }
+        if (dx < 0) {
+            a = Math.PI - a;
+        }
+        return dy < 0 ? 2 * Math.PI - a : a;
+    }
+}
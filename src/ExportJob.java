@@ -0,0 +1,126 @@
+import java.io.File;
+
+/**
+ * An image export waiting in or running on an {@link ExportQueue}. Its state and progress can be read
+ * from any thread, for example by a timer that updates the user interface.
+ */
+public class ExportJob {
+
+    /**
+     * The stages of a job. A job ends in one of the last three.
+     */
+    public enum State {
+        QUEUED, RUNNING, DONE, CANCELLED, FAILED
+    }
+
+    private final File file;
+    private final int width;
+    private final int height;
+    private volatile State state = State.QUEUED;
+    private volatile boolean cancelled;
+    // The rows of the image written to the file so far
+    private volatile int rowsWritten;
+    private volatile Exception error;
+    // A summary of the finished export
+    private volatile String report;
+
+    /**
+     * Creates a job.
+     *
+     * @param file   The file the image is written to.
+     * @param width  The width of the image.
+     * @param height The height of the image.
+     */
+    ExportJob(File file, int width, int height) {
+        this.file = file;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Asks the job to stop. A queued job never starts, and a running job stops after the strips it is
+     * rendering and leaves the file as it was.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Checks whether the job has ended, successfully or not.
+     *
+     * @return True if the job is done, cancelled or failed.
+     */
+    public boolean isFinished() {
+        State current = state;
+        return current == State.DONE || current == State.CANCELLED || current == State.FAILED;
+    }
+
+    /**
+     * Gets the fraction of the image that has been written.
+     *
+     * @return The progress, from 0 to 1.
+     */
+    public double getProgress() {
+        return (double) rowsWritten / height;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Gets the reason the job failed.
+     *
+     * @return The error, or null if the job has not failed.
+     */
+    public Exception getError() {
+        return error;
+    }
+
+    /**
+     * Gets a summary of the export, such as how many pixels were supersampled.
+     *
+     * @return The report, or null if the job is not done.
+     */
+    public String getReport() {
+        return report;
+    }
+
+    void setReport(String report) {
+        this.report = report;
+    }
+
+    void setState(State state) {
+        this.state = state;
+    }
+
+    void setRowsWritten(int rowsWritten) {
+        this.rowsWritten = rowsWritten;
+    }
+
+    void fail(Exception error) {
+        this.error = error;
+        this.state = State.FAILED;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s (%dx%d)", file.getName(), width, height);
+    }
+}
@@ -0,0 +1,136 @@
+import java.awt.Color;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs image exports in the background, one after the other, so that saving a large image neither
+ * freezes the user interface nor slows down the interactive view.
+ * <p>
+ * Exports render on a tile scheduler of their own with a capped number of low-priority workers. The
+ * interactive view keeps its own scheduler, so a pan or zoom never waits behind the strips of a poster,
+ * and the cores the export leaves free stay available to it.
+ */
+public class ExportQueue {
+
+    private final RenderEngine engine;
+    // Runs the jobs in the order they were submitted; the strips of a job run on the scheduler
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "export-runner");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final List<ExportJob> jobs = new ArrayList<>();
+
+    /**
+     * Creates a queue.
+     *
+     * @param parallelism The number of cores exports may use.
+     */
+    public ExportQueue(int parallelism) {
+        this.engine = new RenderEngine(new TileScheduler(parallelism, "export-worker", Thread.MIN_PRIORITY));
+    }
+
+    /**
+     * Queues an export.
+     *
+     * @param file          The file to write the PNG to. It is only replaced once the export is complete.
+     * @param view          The view of the image, whose size is the size of the image.
+     * @param options       The render options. The kernel is only prepared when the job starts, so that
+     *                      preparing it does not delay the caller either.
+     * @param color         The color of the color scheme.
+     * @param mode          The coloring mode. The palette is also built when the job starts, since a
+     *                      histogram palette renders a preview of the view.
+     * @param supersampling The supersampling settings, or null to take one sample per pixel.
+     * @return The job, to follow its progress or cancel it.
+     */
+    public ExportJob submit(File file, FractalView view, RenderOptions options, Color color, ColoringMode mode,
+                            Supersampling supersampling) {
+        ExportJob job = new ExportJob(file, view.getWidth(), view.getHeight());
+        synchronized (jobs) {
+            jobs.add(job);
+        }
+        runner.execute(() -> run(job, view, options, color, mode, supersampling));
+        return job;
+    }
+
+    /**
+     * Gets the jobs that have not finished yet, in the order they will run.
+     *
+     * @return The queued and running jobs.
+     */
+    public List<ExportJob> getPendingJobs() {
+        synchronized (jobs) {
+            return new ArrayList<>(jobs);
+        }
+    }
+
+    public int getParallelism() {
+        return engine.getParallelism();
+    }
+
+    /**
+     * Cancels every job and stops the workers.
+     */
+    public void shutdown() {
+        for (ExportJob job : getPendingJobs()) {
+            job.cancel();
+        }
+        runner.shutdown();
+        engine.shutdown();
+    }
+
+    private void run(ExportJob job, FractalView view, RenderOptions options, Color color, ColoringMode mode,
+                     Supersampling supersampling) {
+        Path temp = null;
+        try {
+            if (job.isCancelled()) {
+                job.setState(ExportJob.State.CANCELLED);
+                return;
+            }
+            job.setState(ExportJob.State.RUNNING);
+            Palette palette = engine.exportPalette(view, options, color, mode);
+            // The image is written next to its file and only moved into place when it is complete.
+            Path target = job.getFile().toPath().toAbsolutePath();
+            temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".part");
+            StripExporter exporter;
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                exporter = engine.export(view, options, palette, supersampling, out, job::isCancelled,
+                        job::setRowsWritten);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            job.setReport(exporter.toString());
+            job.setState(ExportJob.State.DONE);
+        } catch (CancellationException e) {
+            job.setState(ExportJob.State.CANCELLED);
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            job.fail(e);
+        } finally {
+            deleteIfExists(temp);
+            synchronized (jobs) {
+                jobs.remove(job);
+            }
+        }
+    }
+
+    private static void deleteIfExists(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
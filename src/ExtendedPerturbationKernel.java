@@ -0,0 +1,174 @@
+/**
+ * Iterates pixels as perturbations of a reference orbit like {@link PerturbationKernel}, at zooms where
+ * the differences from the reference start out too small for doubles. A double only has all of its 53
+ * bits down to 2^-1022 and cannot go below 2^-1074 at all, so beyond a zoom of about 1e300 neighbouring
+ * pixels first lose precision and then collapse onto the reference.
+ * <p>
+ * The difference of a pixel is therefore kept as a pair of doubles with a shared binary exponent until
+ * it has grown to 2^-900, which it does within a few hundred iterations as the orbit moves away from the
+ * reference. From there on the difference and every term of its iteration are normal doubles again, and
+ * the pixel continues in the double loop of the wrapped perturbation kernel, which also handles escapes
+ * and rebases. The offset of the pixel itself may then still be too small for a double, but it no longer
+ * reaches the last place of the difference.
+ * <p>
+ * Views within the range of a double use the series approximation of the wrapped kernel. Beyond it, the
+ * coefficients of the series would leave the range of a double too, so every pixel starts at the first
+ * iteration.
+ */
+public final class ExtendedPerturbationKernel implements PixelKernel, OffsetKernel {
+
+    // Differences with a larger binary exponent are iterated in plain doubles
+    private static final int HANDOFF_EXPONENT = -900;
+    // Mantissas are kept between these bounds by scaling them by 2^RESCALE_EXPONENT, so that their
+    // squares stay finite
+    private static final double MIN_MANTISSA = 0x1p-500;
+    private static final double MAX_MANTISSA = 0x1p500;
+    private static final int RESCALE_EXPONENT = 512;
+    // A pixel may rebase where the reference comes this close to zero, which the double loop decides
+    private static final double TINY_REFERENCE = 0x1p-800;
+
+    private final PerturbationKernel perturbation;
+    private final FractalView view;
+    private final ReferenceOrbit orbit;
+    private final SeriesApproximation series;
+    private final boolean julia;
+    // The distance between pixels is inverseMantissa * 2^-zoomExponent
+    private final double inverseMantissa;
+    private final int zoomExponent;
+
+    public ExtendedPerturbationKernel(PerturbationKernel perturbation) {
+        this.perturbation = perturbation;
+        this.view = perturbation.getView();
+        this.orbit = perturbation.getOrbit();
+        this.series = perturbation.getSeries();
+        this.julia = view.getFractalType() == FractalType.JULIA;
+        this.inverseMantissa = 1.0 / view.getZoomMantissa();
+        this.zoomExponent = view.getZoomExponent();
+    }
+
+    /**
+     * Computes the reference orbit for a view and creates a kernel for it.
+     *
+     * @param view                The view to render.
+     * @param seriesApproximation Whether to skip the first iterations with a series approximation, which
+     *                            is only possible within the range of a double.
+     * @return The kernel, with fresh statistics.
+     */
+    public static ExtendedPerturbationKernel create(FractalView view, boolean seriesApproximation) {
+        return create(view, seriesApproximation, null);
+    }
+
+    /**
+     * Computes the reference orbit for a view and creates a kernel for it that records the fractional
+     * escape counts of the pixels that escape.
+     *
+     * @param view                The view to render.
+     * @param seriesApproximation Whether to skip the first iterations with a series approximation, which
+     *                            is only possible within the range of a double.
+     * @param fractions           The fractions to record the escapes in, or null to record none.
+     * @return The kernel, with fresh statistics.
+     */
+    public static ExtendedPerturbationKernel create(FractalView view, boolean seriesApproximation,
+                                                    EscapeFractions fractions) {
+        boolean series = seriesApproximation && Double.isFinite(view.getZoom());
+        return new ExtendedPerturbationKernel(PerturbationKernel.create(view, series, fractions));
+    }
+
+    /**
+     * Gets the statistics of the pixels iterated by this kernel.
+     *
+     * @return The deep zoom statistics.
+     */
+    public DeepZoomStats getStats() {
+        return perturbation.getStats();
+    }
+
+    @Override
+    public PrecisionTier getPrecision() {
+        return PrecisionTier.EXTENDED;
+    }
+
+    @Override
+    public int iterate(int x, int y) {
+        double px = x - view.getWidth() / 2.0;
+        double py = y - view.getHeight() / 2.0;
+        if (series != null && series.getSkip() > 0) {
+            // Within the range of a double the offsets are normal doubles, and so is the linear term of
+            // the series, which dominates the difference.
+            double zoom = view.getZoom();
+            double dx = px / zoom;
+            double dy = py / zoom;
+            perturbation.getStats().recordSkippedPixel();
+            return iterate(Math.scalb(series.real(dx, dy), zoomExponent),
+                    Math.scalb(series.imag(dx, dy), zoomExponent), px * inverseMantissa, py * inverseMantissa,
+                    series.getSkip(), x, y);
+        }
+        return iterate(julia ? px * inverseMantissa : 0, julia ? py * inverseMantissa : 0,
+                px * inverseMantissa, py * inverseMantissa, 0, x, y);
+    }
+
+    /**
+     * Iterates a point at an offset from the center of the view from the start. Offsets are doubles,
+     * so this only reaches points of views within the range of a double.
+     */
+    @Override
+    public int iterateOffset(double dx, double dy) {
+        double ox = Math.scalb(dx, zoomExponent);
+        double oy = Math.scalb(dy, zoomExponent);
+        return iterate(julia ? ox : 0, julia ? oy : 0, ox, oy, 0, -1, -1);
+    }
+
+    /**
+     * Iterates a pixel whose difference and offset are given in units of 2^-zoomExponent.
+     *
+     * @param wr   The real part of the difference from the reference orbit.
+     * @param wi   The imaginary part of the difference from the reference orbit.
+     * @param ox   The real part of the offset of the pixel from the center of the view.
+     * @param oy   The imaginary part of the offset of the pixel from the center of the view.
+     * @param iter The iteration the difference belongs to, which is also its index in the reference.
+     * @param x    The pixel column, or -1 if the point is not a pixel.
+     * @param y    The pixel row, or -1 if the point is not a pixel.
+     * @return The number of iterations before the orbit escaped, or maxIterations if it did not.
+     */
+    private int iterate(double wr, double wi, double ox, double oy, int iter, int x, int y) {
+        final int maxIterations = view.getMaxIterations();
+        final int last = orbit.getLength() - 1;
+        // For a Julia set the offset is the starting difference and c is shared with the reference.
+        double cr = julia ? 0 : ox;
+        double ci = julia ? 0 : oy;
+        int ref = iter;
+        // The difference is w * 2^exponent; its square and the offset are converted to those units.
+        int exponent = -zoomExponent;
+        double squareScale = Math.scalb(1.0, exponent);
+        double offsetScale = 1.0;
+
+        while (iter < maxIterations && ref < last) {
+            double refReal = orbit.getReal(ref);
+            double refImag = orbit.getImag(ref);
+            double magnitude = Math.max(Math.abs(wr), Math.abs(wi));
+            if (Math.getExponent(magnitude) + exponent > HANDOFF_EXPONENT
+                    || ref > 0 && Math.max(Math.abs(refReal), Math.abs(refImag)) < TINY_REFERENCE) {
+                break;
+            }
+            if (magnitude > MAX_MANTISSA || magnitude < MIN_MANTISSA && magnitude > 0) {
+                int rescale = magnitude > MAX_MANTISSA ? -RESCALE_EXPONENT : RESCALE_EXPONENT;
+                wr = Math.scalb(wr, rescale);
+                wi = Math.scalb(wi, rescale);
+                exponent -= rescale;
+                squareScale = Math.scalb(1.0, exponent);
+                offsetScale = Math.scalb(1.0, -zoomExponent - exponent);
+            }
+
+            // dz' = 2 Z dz + dz^2 + dc, in units of 2^exponent
+            double tmp = 2.0 * (refReal * wr - refImag * wi) + (wr * wr - wi * wi) * squareScale + cr * offsetScale;
+            wi = 2.0 * (refReal * wi + refImag * wr) + 2.0 * wr * wi * squareScale + ci * offsetScale;
+            wr = tmp;
+            ref++;
+            iter++;
+        }
+
+        // The escapes and rebases of the pixel are decided by the double loop.
+        return perturbation.iterate(Math.scalb(wr, exponent), Math.scalb(wi, exponent),
+                Math.scalb(cr, -zoomExponent), Math.scalb(ci, -zoomExponent), iter, ref, x, y);
+    }
+}
@@ -0,0 +1,373 @@
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The escape-time kernel in single precision, vectorized with the Java Vector API. A float vector has
+ * twice the lanes of a double vector, so rows are iterated about twice as fast as by
+ * {@link VectorKernel}. At low zoom levels neighbouring pixels are thousands of float ulps apart, and
+ * the image is the same as in double precision but for a few chaotic pixels on the boundary.
+ * <p>
+ * Lanes are refilled like in the double vector kernel. Single pixels are iterated by a scalar loop that
+ * performs the same float operations in the same order, so a pixel gets the same count whichever path
+ * computes it. The bulb tests are done on the double coordinates of the pixel, like in the double
+ * kernels. Pixels that reach the iteration limit are recorded in the checkpoint of the scalar kernel
+ * the vector kernel was created from, and continued in single precision. The escape points of the
+ * other pixels go to the fractions of that kernel.
+ * <p>
+ * This class must only be loaded when {@link VectorSupport#isAvailable()} is true.
+ */
+public final class FloatVectorKernel implements ResumableKernel, OffsetKernel {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+    // The lane state of the row each render thread is working on, kept so that rows do not allocate it
+    private static final ThreadLocal<Lanes> LANES = ThreadLocal.withInitial(Lanes::new);
+
+    private final FractalView view;
+    private final boolean julia;
+    private final boolean bulbCheck;
+    private final boolean periodicityCheck;
+    private final float epsilon;
+    private final float juliaCReal;
+    private final float juliaCImag;
+    private final InteriorStats stats;
+    private final OrbitCheckpoint checkpoint;
+    private final EscapeFractions fractions;
+
+    public FloatVectorKernel(EscapeTimeKernel scalar) {
+        this.view = scalar.getView();
+        this.julia = view.getFractalType() == FractalType.JULIA;
+        this.bulbCheck = scalar.hasBulbCheck();
+        this.periodicityCheck = scalar.hasPeriodicityCheck();
+        this.epsilon = (float) scalar.getEpsilon();
+        this.juliaCReal = (float) view.getJuliaCReal();
+        this.juliaCImag = (float) view.getJuliaCImag();
+        this.stats = scalar.getStats();
+        this.checkpoint = scalar.getCheckpoint();
+        this.fractions = scalar.getFractions();
+    }
+
+    /**
+     * Gets the number of pixels iterated at once.
+     *
+     * @return The number of vector lanes.
+     */
+    public static int lanes() {
+        return SPECIES.length();
+    }
+
+    /**
+     * Gets the statistics of the pixels this kernel short-circuited.
+     *
+     * @return The interior statistics.
+     */
+    public InteriorStats getStats() {
+        return stats;
+    }
+
+    @Override
+    public PrecisionTier getPrecision() {
+        return PrecisionTier.FLOAT;
+    }
+
+    @Override
+    public int iterate(int x, int y) {
+        return iteratePoint(view.toReal(x), view.toImag(y), x, y);
+    }
+
+    @Override
+    public int iterateOffset(double dx, double dy) {
+        return iteratePoint(view.getOffsetX() + dx, view.getOffsetY() + dy, -1, -1);
+    }
+
+    @Override
+    public int resume(int x, int y, double zx, double zy, int iter) {
+        if (julia) {
+            return iterateOrbit((float) zx, (float) zy, juliaCReal, juliaCImag, iter, x, y);
+        }
+        return iterateOrbit((float) zx, (float) zy, (float) view.toReal(x), (float) view.toImag(y), iter, x, y);
+    }
+
+    /**
+     * Runs the escape-time iteration for a point in single precision, with the operations of one lane of
+     * the vector loop.
+     *
+     * @param real The real part of the point.
+     * @param imag The imaginary part of the point.
+     * @param x    The pixel column of the point, or -1 if it is not a pixel.
+     * @param y    The pixel row of the point, or -1 if it is not a pixel.
+     * @return The number of iterations before the orbit escaped, or maxIterations if it did not.
+     */
+    private int iteratePoint(double real, double imag, int x, int y) {
+        final int maxIterations = view.getMaxIterations();
+        float zx, zy, cX, cY;
+        if (julia) {
+            zx = (float) real;
+            zy = (float) imag;
+            cX = juliaCReal;
+            cY = juliaCImag;
+        } else {
+            if (bulbCheck && isInBulb(real, imag)) {
+                return maxIterations;
+            }
+            zx = 0;
+            zy = 0;
+            cX = (float) real;
+            cY = (float) imag;
+        }
+        return iterateOrbit(zx, zy, cX, cY, 0, x, y);
+    }
+
+    /**
+     * Iterates an orbit in single precision from a point up to the iteration limit, and records the last
+     * point in the checkpoint if the orbit of a pixel reaches the limit, or in the fractions if it escapes.
+     *
+     * @return The number of iterations before the orbit escaped, or maxIterations if it did not.
+     */
+    private int iterateOrbit(float zx, float zy, float cX, float cY, int iter, int x, int y) {
+        final int maxIterations = view.getMaxIterations();
+        float savedX = zx;
+        float savedY = zy;
+        // Brent's schedule counts from the first iteration of the orbit or of its continuation.
+        int nextSave = iter + 1;
+        int saveInterval = 1;
+        while (zx * zx + zy * zy < 4 && iter < maxIterations) {
+            float tmp = zx * zx - zy * zy + cX;
+            zy = 2.0f * zx * zy + cY;
+            zx = tmp;
+            iter++;
+
+            if (periodicityCheck) {
+                if (Math.max(Math.abs(zx - savedX), Math.abs(zy - savedY)) < epsilon) {
+                    stats.recordPeriodic();
+                    if (checkpoint != null && x >= 0) {
+                        checkpoint.recordInterior(x, y);
+                    }
+                    return maxIterations;
+                }
+                if (iter == nextSave) {
+                    savedX = zx;
+                    savedY = zy;
+                    saveInterval *= 2;
+                    nextSave += saveInterval;
+                }
+            }
+        }
+        if (iter == maxIterations && checkpoint != null && x >= 0) {
+            checkpoint.record(x, y, zx, zy);
+        } else if (iter < maxIterations && fractions != null && x >= 0) {
+            fractions.record(x, y, zx, zy, cX, cY);
+        }
+        return iter;
+    }
+
+    @Override
+    public long iterateRow(int y, int x0, int x1, int step, int[] iterations, int offset) {
+        final int lanes = SPECIES.length();
+        if ((x1 - x0 + step - 1) / step < lanes) {
+            return ResumableKernel.super.iterateRow(y, x0, x1, step, iterations, offset);
+        }
+
+        final float maxIterations = view.getMaxIterations();
+        final double imag = view.toImag(y);
+        final FloatVector one = FloatVector.broadcast(SPECIES, 1.0f);
+
+        // The state of every lane, spilled to arrays whenever lanes are refilled
+        Lanes state = LANES.get();
+        float[] zx = state.zx;
+        float[] zy = state.zy;
+        float[] cx = state.cx;
+        float[] cy = state.cy;
+        float[] count = state.count;
+        float[] savedX = state.savedX;
+        float[] savedY = state.savedY;
+        float[] nextSave = state.nextSave;
+        float[] live = state.live;
+
+        state.next = x0;
+        long cost = 0;
+        for (int i = 0; i < lanes; i++) {
+            cost += load(state, i, x1, step, imag, iterations, offset - x0);
+        }
+
+        while (state.liveLanes > 0) {
+            // The vectors only live inside this block, like in the double vector kernel.
+            VectorMask<Float> liveMask = FloatVector.fromArray(SPECIES, live, 0).compare(VectorOperators.NE, 0);
+            int liveLanes = state.liveLanes;
+            FloatVector vzx = FloatVector.fromArray(SPECIES, zx, 0);
+            FloatVector vzy = FloatVector.fromArray(SPECIES, zy, 0);
+            FloatVector vcx = FloatVector.fromArray(SPECIES, cx, 0);
+            FloatVector vcy = FloatVector.fromArray(SPECIES, cy, 0);
+            FloatVector vcount = FloatVector.fromArray(SPECIES, count, 0);
+            FloatVector vsavedX = FloatVector.fromArray(SPECIES, savedX, 0);
+            FloatVector vsavedY = FloatVector.fromArray(SPECIES, savedY, 0);
+            FloatVector vnextSave = FloatVector.fromArray(SPECIES, nextSave, 0);
+
+            while (true) {
+                FloatVector zx2 = vzx.mul(vzx);
+                FloatVector zy2 = vzy.mul(vzy);
+                VectorMask<Float> running = liveMask
+                        .and(zx2.add(zy2).compare(VectorOperators.LT, 4.0f))
+                        .and(vcount.compare(VectorOperators.LT, maxIterations));
+
+                if (running.trueCount() < liveLanes) {
+                    // Some lanes are done: spill the lanes, whose state tells which ones are done.
+                    vzx.intoArray(zx, 0);
+                    vzy.intoArray(zy, 0);
+                    vcount.intoArray(count, 0);
+                    vsavedX.intoArray(savedX, 0);
+                    vsavedY.intoArray(savedY, 0);
+                    vnextSave.intoArray(nextSave, 0);
+                    break;
+                }
+
+                // The same operations as the scalar loop: tmp = zx^2 - zy^2 + cX, zy = 2 zx zy + cY
+                FloatVector tmp = zx2.sub(zy2).add(vcx);
+                vzy = vzy.blend(vzx.mul(2.0f).mul(vzy).add(vcy), running);
+                vzx = vzx.blend(tmp, running);
+                vcount = vcount.add(one, running);
+
+                if (periodicityCheck) {
+                    VectorMask<Float> repeat = vzx.sub(vsavedX).abs().max(vzy.sub(vsavedY).abs())
+                            .compare(VectorOperators.LT, epsilon)
+                            .and(running);
+                    int periodic = repeat.trueCount();
+                    if (periodic > 0) {
+                        // A periodic lane counts as interior and is refilled on the next pass.
+                        stats.recordPeriodic(periodic);
+                    }
+                    vcount = vcount.blend(maxIterations, repeat);
+                    // A NaN orbit point tells the checkpoint that the lane stopped as periodic.
+                    vzx = vzx.blend(Float.NaN, repeat);
+                    // Brent's schedule saves the orbit after 1, 3, 7, 15, ... iterations of each lane.
+                    VectorMask<Float> save = vcount.compare(VectorOperators.EQ, vnextSave);
+                    vsavedX = vsavedX.blend(vzx, save);
+                    vsavedY = vsavedY.blend(vzy, save);
+                    vnextSave = vnextSave.add(vnextSave.add(one), save);
+                }
+            }
+
+            cost += refill(state, y, x1, step, imag, iterations, offset - x0);
+        }
+        return cost;
+    }
+
+    /**
+     * Stores the counts of the lanes that are done and refills them with the next pixels of the row, in
+     * scalar code like in the double vector kernel.
+     *
+     * @return The iterations of the stored pixels and of the pixels the bulb tests resolved.
+     */
+    private long refill(Lanes state, int y, int x1, int step, double imag, int[] iterations, int base) {
+        final int maxIterations = view.getMaxIterations();
+        float[] zx = state.zx;
+        float[] zy = state.zy;
+        float[] count = state.count;
+        long cost = 0;
+        for (int i = 0; i < count.length; i++) {
+            if (state.live[i] == 0 || zx[i] * zx[i] + zy[i] * zy[i] < 4 && count[i] < maxIterations) {
+                continue;
+            }
+            int iter = (int) count[i];
+            int x = state.pixel[i];
+            iterations[base + x] = iter;
+            cost += iter;
+            if (checkpoint != null && iter == maxIterations) {
+                if (Float.isNaN(zx[i])) {
+                    checkpoint.recordInterior(x, y);
+                } else {
+                    checkpoint.record(x, y, zx[i], zy[i]);
+                }
+            } else if (fractions != null && iter < maxIterations) {
+                fractions.record(x, y, zx[i], zy[i], state.cx[i], state.cy[i]);
+            }
+            state.live[i] = 0;
+            state.liveLanes--;
+            cost += load(state, i, x1, step, imag, iterations, base);
+        }
+        return cost;
+    }
+
+    /**
+     * Loads the next pixel of a row that is not resolved by the bulb tests into an empty lane, and
+     * stores the counts of the pixels the bulb tests resolved on the way.
+     *
+     * @return The iterations of the pixels the bulb tests resolved.
+     */
+    private long load(Lanes state, int lane, int x1, int step, double imag, int[] iterations, int base) {
+        final int maxIterations = view.getMaxIterations();
+        long cost = 0;
+        while (state.next < x1) {
+            int x = state.next;
+            state.next += step;
+            double real = view.toReal(x);
+            if (julia) {
+                state.zx[lane] = (float) real;
+                state.zy[lane] = (float) imag;
+                state.cx[lane] = juliaCReal;
+                state.cy[lane] = juliaCImag;
+            } else {
+                if (bulbCheck && isInBulb(real, imag)) {
+                    iterations[base + x] = maxIterations;
+                    cost += maxIterations;
+                    continue;
+                }
+                state.zx[lane] = 0;
+                state.zy[lane] = 0;
+                state.cx[lane] = (float) real;
+                state.cy[lane] = (float) imag;
+            }
+            state.count[lane] = 0;
+            state.savedX[lane] = state.zx[lane];
+            state.savedY[lane] = state.zy[lane];
+            state.nextSave[lane] = 1;
+            state.pixel[lane] = x;
+            state.live[lane] = 1;
+            state.liveLanes++;
+            return cost;
+        }
+        return cost;
+    }
+
+    /**
+     * Tests for the main cardioid and the period-2 bulb in double precision, exactly like the double
+     * kernels.
+     */
+    private boolean isInBulb(double cX, double cY) {
+        double xq = cX - 0.25;
+        double q = xq * xq + cY * cY;
+        if (q * (q + xq) <= 0.25 * cY * cY) {
+            stats.recordCardioid();
+            return true;
+        }
+        double xb = cX + 1.0;
+        if (xb * xb + cY * cY <= 0.0625) {
+            stats.recordBulb();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * The arrays the lanes are spilled to. Every lane is loaded before it is read, so the arrays need no
+     * clearing between rows.
+     */
+    private static final class Lanes {
+
+        final float[] zx = new float[SPECIES.length()];
+        final float[] zy = new float[SPECIES.length()];
+        final float[] cx = new float[SPECIES.length()];
+        final float[] cy = new float[SPECIES.length()];
+        final float[] count = new float[SPECIES.length()];
+        final float[] savedX = new float[SPECIES.length()];
+        final float[] savedY = new float[SPECIES.length()];
+        final float[] nextSave = new float[SPECIES.length()];
+        final int[] pixel = new int[SPECIES.length()];
+        // 1 for a lane that holds a pixel, 0 for an empty one; a float, so that it loads as a vector
+        final float[] live = new float[SPECIES.length()];
+        int liveLanes;
+        // The column of the next pixel of the row
+        int next;
+    }
+}
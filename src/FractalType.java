@@ -0,0 +1,12 @@
+/**
+ * The fractals the viewer can render.
+ */
+public enum FractalType {
+    MANDELBROT,
+    JULIA;
+
+    @Override
+    public String toString() {
+        return name().toLowerCase();
+    }
+}
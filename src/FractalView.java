@@ -0,0 +1,186 @@
+import java.math.BigDecimal;
+
+/**
+ * An immutable snapshot of the settings that define one rendered frame: the fractal type, the
+ * position and scale of the view, the Julia parameter and the iteration limit. Renders work on a
+ * snapshot so that they are not affected by changes the user makes while the frame is computing.
+ * <p>
+ * The center of the view is kept both as a double and as an exact decimal. The double is enough for
+ * ordinary zoom levels; deep zooms use the exact center for their high-precision reference orbit. The
+ * zoom is likewise kept as a double and as a mantissa with a binary exponent, which also covers zooms
+ * beyond the range of a double.
+ */
+public final class FractalView {
+
+    private final FractalType fractalType;
+    private final double zoom;
+    // The zoom as zoomMantissa * 2^zoomExponent, with the mantissa in [1, 2)
+    private final double zoomMantissa;
+    private final int zoomExponent;
+    private final double offsetX;
+    private final double offsetY;
+    private final BigDecimal centerReal;
+    private final BigDecimal centerImag;
+    private final double juliaCReal;
+    private final double juliaCImag;
+    private final int maxIterations;
+    private final int width;
+    private final int height;
+
+    public FractalView(FractalType fractalType, double zoom, double offsetX, double offsetY,
+                       double juliaCReal, double juliaCImag, int maxIterations, int width, int height) {
+        this(fractalType, zoom, new BigDecimal(offsetX), new BigDecimal(offsetY), juliaCReal, juliaCImag,
+                maxIterations, width, height);
+    }
+
+    public FractalView(FractalType fractalType, double zoom, BigDecimal centerReal,
+                       BigDecimal centerImag, double juliaCReal, double juliaCImag, int maxIterations,
+                       int width, int height) {
+        this(fractalType, zoom, 0, centerReal, centerImag, juliaCReal, juliaCImag, maxIterations, width, height);
+    }
+
+    /**
+     * Creates a view whose zoom may be beyond the range of a double.
+     *
+     * @param fractalType   The fractal.
+     * @param zoom          The zoom in pixels per unit of the complex plane, divided by 2^zoomExponent.
+     * @param zoomExponent  The power of two the zoom is multiplied by.
+     * @param centerReal    The real part of the center.
+     * @param centerImag    The imaginary part of the center.
+     * @param juliaCReal    The real part of the parameter of the Julia set.
+     * @param juliaCImag    The imaginary part of the parameter of the Julia set.
+     * @param maxIterations The iteration limit.
+     * @param width         The width in pixels.
+     * @param height        The height in pixels.
+     */
+    public FractalView(FractalType fractalType, double zoom, int zoomExponent, BigDecimal centerReal,
+                       BigDecimal centerImag, double juliaCReal, double juliaCImag, int maxIterations,
+                       int width, int height) {
+        int exponent = Math.getExponent(zoom);
+        this.fractalType = fractalType;
+        this.zoomMantissa = Math.scalb(zoom, -exponent);
+        this.zoomExponent = exponent + zoomExponent;
+        this.zoom = Math.scalb(zoomMantissa, this.zoomExponent);
+        this.offsetX = centerReal.doubleValue();
+        this.offsetY = centerImag.doubleValue();
+        this.centerReal = centerReal;
+        this.centerImag = centerImag;
+        this.juliaCReal = juliaCReal;
+        this.juliaCImag = juliaCImag;
+        this.maxIterations = maxIterations;
+        this.width = width;
+        this.height = height;
+    }
+
+    public FractalType getFractalType() {
+        return fractalType;
+    }
+
+    /**
+     * Gets the zoom as a double. Beyond the range of a double, where only perturbation with extended
+     * exponents can render the view, it is infinite.
+     *
+     * @return The zoom, in pixels per unit of the complex plane.
+     */
+    public double getZoom() {
+        return zoom;
+    }
+
+    /**
+     * Gets the mantissa of the zoom.
+     *
+     * @return The zoom divided by 2^{@link #getZoomExponent()}, from 1 to 2.
+     */
+    public double getZoomMantissa() {
+        return zoomMantissa;
+    }
+
+    /**
+     * Gets the binary exponent of the zoom, which is finite at any zoom.
+     *
+     * @return The exponent; the zoom is {@link #getZoomMantissa()} * 2^exponent.
+     */
+    public int getZoomExponent() {
+        return zoomExponent;
+    }
+
+    /**
+     * Checks whether another view has exactly the same zoom, also beyond the range of a double.
+     *
+     * @param other The other view.
+     * @return True if the zooms are equal.
+     */
+    public boolean hasSameZoom(FractalView other) {
+        return zoomMantissa == other.zoomMantissa && zoomExponent == other.zoomExponent;
+    }
+
+    /**
+     * Creates a view of the same point with another zoom and size, such as a preview or the sample
+     * lattice of a supersampled image.
+     *
+     * @param zoomFactor The factor to multiply the zoom by.
+     * @param width      The width of the new view.
+     * @param height     The height of the new view.
+     * @return The new view.
+     */
+    public FractalView resize(double zoomFactor, int width, int height) {
+        return new FractalView(fractalType, zoomMantissa * zoomFactor, zoomExponent, centerReal, centerImag,
+                juliaCReal, juliaCImag, maxIterations, width, height);
+    }
+
+    public double getOffsetX() {
+        return offsetX;
+    }
+
+    public double getOffsetY() {
+        return offsetY;
+    }
+
+    public BigDecimal getCenterReal() {
+        return centerReal;
+    }
+
+    public BigDecimal getCenterImag() {
+        return centerImag;
+    }
+
+    public double getJuliaCReal() {
+        return juliaCReal;
+    }
+
+    public double getJuliaCImag() {
+        return juliaCImag;
+    }
+
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Converts a pixel column to the real part of its point in the complex plane.
+     *
+     * @param x The pixel column.
+     * @return The real coordinate.
+     */
+    public double toReal(double x) {
+        return (x - width / 2.0) / zoom + offsetX;
+    }
+
+    /**
+     * Converts a pixel row to the imaginary part of its point in the complex plane.
+     *
+     * @param y The pixel row.
+     * @return The imaginary coordinate.
+     */
+    public double toImag(double y) {
+        return (y - height / 2.0) / zoom + offsetY;
+    }
+}
@@ -0,0 +1,155 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Recycles the image and iteration counts of frames, so that panning and zooming do not allocate two
+ * full-frame arrays for every frame. At 4K these are 66 MB per frame, which otherwise quickly fills the
+ * young generation and makes the collector run while the user drags the view.
+ * <p>
+ * A buffer is reference counted: the worker rendering into it, the frame on screen and a newer frame
+ * that copies pixels out of it each hold a reference, and the buffer returns to the pool when the last
+ * one is released. While the view moves, the frame on screen and the frame being rendered therefore
+ * swap two buffers. Only buffers of the size of the latest frame are kept, so a resize drops the old
+ * ones.
+ */
+public class FrameBufferPool {
+
+    private final int maxFree;
+    private final Deque<FrameBuffer> free = new ArrayDeque<>();
+    // The size of the latest frame
+    private int width;
+    private int height;
+    private long allocations;
+
+    /**
+     * Creates a pool.
+     *
+     * @param maxFree The number of unused buffers to keep.
+     */
+    public FrameBufferPool(int maxFree) {
+        this.maxFree = maxFree;
+    }
+
+    /**
+     * Takes a buffer from the pool, or allocates one if none of the size is free. The contents of a
+     * recycled buffer are those of an earlier frame.
+     *
+     * @param width  The width of the frame.
+     * @param height The height of the frame.
+     * @return The buffer, holding one reference for the caller.
+     */
+    public synchronized FrameBuffer acquire(int width, int height) {
+        if (width != this.width || height != this.height) {
+            this.width = width;
+            this.height = height;
+            free.clear();
+        }
+        FrameBuffer buffer = free.pollFirst();
+        if (buffer == null) {
+            allocations++;
+            buffer = new FrameBuffer(this, width, height);
+        }
+        buffer.references.set(1);
+        return buffer;
+    }
+
+    private synchronized void recycle(FrameBuffer buffer) {
+        if (buffer.getWidth() == width && buffer.getHeight() == height && free.size() < maxFree) {
+            free.addFirst(buffer);
+        }
+    }
+
+    /**
+     * Gets the number of buffers the pool has allocated, which stays constant while the view moves at
+     * a fixed size.
+     *
+     * @return The number of allocations.
+     */
+    public synchronized long getAllocations() {
+        return allocations;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("frame buffers: %d allocated, %d free", allocations, free.size());
+    }
+
+    /**
+     * The image and iteration counts of one frame, and the fractional parts of the counts once a smoothly
+     * colored frame has used the buffer.
+     */
+    public static final class FrameBuffer {
+
+        private final FrameBufferPool pool;
+        private final BufferedImage image;
+        private final int[] pixels;
+        private final int[] iterations;
+        // Allocated by the first smoothly colored frame, so that other frames do not pay for it
+        private float[] fractions;
+        private final AtomicInteger references = new AtomicInteger();
+
+        private FrameBuffer(FrameBufferPool pool, int width, int height) {
+            this.pool = pool;
+            this.image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            this.pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            this.iterations = new int[width * height];
+        }
+
+        /**
+         * Adds a reference to the buffer.
+         */
+        public void retain() {
+            if (references.getAndIncrement() <= 0) {
+                throw new IllegalStateException("The frame buffer was already released");
+            }
+        }
+
+        /**
+         * Drops a reference to the buffer, and returns it to its pool if it was the last one. The buffer
+         * must not be used through this reference afterwards.
+         */
+        public void release() {
+            int left = references.decrementAndGet();
+            if (left == 0) {
+                pool.recycle(this);
+            } else if (left < 0) {
+                throw new IllegalStateException("The frame buffer was released too often");
+            }
+        }
+
+        public BufferedImage getImage() {
+            return image;
+        }
+
+        public int[] getPixels() {
+            return pixels;
+        }
+
+        public int[] getIterations() {
+            return iterations;
+        }
+
+        /**
+         * Gets the buffer for the fractional parts of the iteration counts, allocating it on first use.
+         *
+         * @return The fractions, row by row like the counts.
+         */
+        public float[] getFractions() {
+            if (fractions == null) {
+                fractions = new float[iterations.length];
+            }
+            return fractions;
+        }
+
+        public int getWidth() {
+            return image.getWidth();
+        }
+
+        public int getHeight() {
+            return image.getHeight();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Renders the tiles of one frame: iterates the pixels of a tile into the iteration counts of the
+ * frame and colors them into its pixels. For smooth coloring, the kernel also records the fractional
+ * parts of the counts into a buffer of the frame, which the palette blends the colors with.
+ */
+public class FrameRenderer implements TileScheduler.TileRenderer {
+
+    private final PixelKernel kernel;
+    private final Palette palette;
+    private final int[] iterations;
+    // The fractional parts of the counts, or null
+    private final float[] fractions;
+    private final int[] pixels;
+    private final int stride;
+    private final boolean rectangleFill;
+    private final TileStats stats;
+
+    /**
+     * Creates a renderer for a frame.
+     *
+     * @param kernel        The kernel that iterates the pixels.
+     * @param palette       The palette that colors the iteration counts.
+     * @param iterations    The iteration counts of the frame.
+     * @param pixels        The pixels of the frame.
+     * @param stride        The width of a row in the arrays.
+     * @param rectangleFill Whether to fill uniform rectangles with Mariani-Silver instead of iterating every pixel.
+     * @param stats         The statistics of the frame.
+     */
+    public FrameRenderer(PixelKernel kernel, Palette palette, int[] iterations, int[] pixels, int stride,
+                         boolean rectangleFill, TileStats stats) {
+        this(kernel, palette, iterations, null, pixels, stride, rectangleFill, stats);
+    }
+
+    /**
+     * Creates a renderer for a smoothly colored frame. Rectangle fill only fills in counts, so it is
+     * turned off when there are fractions to record.
+     *
+     * @param kernel        The kernel that iterates the pixels, which records the fractions.
+     * @param palette       The palette that colors the iteration counts.
+     * @param iterations    The iteration counts of the frame.
+     * @param fractions     The fractional parts of the counts, or null to color whole counts.
+     * @param pixels        The pixels of the frame.
+     * @param stride        The width of a row in the arrays.
+     * @param rectangleFill Whether to fill uniform rectangles with Mariani-Silver instead of iterating every pixel.
+     * @param stats         The statistics of the frame.
+     */
+    public FrameRenderer(PixelKernel kernel, Palette palette, int[] iterations, float[] fractions, int[] pixels,
+                         int stride, boolean rectangleFill, TileStats stats) {
+        this.kernel = kernel;
+        this.palette = palette;
+        this.iterations = iterations;
+        this.fractions = fractions;
+        this.pixels = pixels;
+        this.stride = stride;
+        this.rectangleFill = rectangleFill && fractions == null;
+        this.stats = stats;
+    }
+
+    /**
+     * Gets the number of rows the scheduler should hand to this renderer at once. Rectangle fill needs
+     * whole tiles to find uniform borders in, plain iteration works best row by row.
+     *
+     * @return The band height.
+     */
+    public int getBandHeight() {
+        return rectangleFill ? TileScheduler.WHOLE_TILE : 1;
+    }
+
+    @Override
+    public long render(int x0, int y0, int x1, int y1) {
+        long cost;
+        if (rectangleFill) {
+            cost = MarianiSilver.fill(kernel, iterations, stride, x0, y0, x1, y1, stats);
+        } else {
+            cost = 0;
+            for (int y = y0; y < y1; y++) {
+                cost += kernel.iterateRow(y, x0, x1, iterations, x0 + y * stride);
+            }
+        }
+
+        palette.color(iterations, fractions, pixels, stride, x0, y0, x1, y1);
+        return cost;
+    }
+}
@@ -0,0 +1,54 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the pixels of a frame that were recognized as interior points without iterating them to
+ * the iteration limit.
+ */
+public class InteriorStats {
+
+    private final LongAdder cardioid = new LongAdder();
+    private final LongAdder bulb = new LongAdder();
+    private final LongAdder periodic = new LongAdder();
+
+    public void recordCardioid() {
+        cardioid.increment();
+    }
+
+    public void recordCardioid(long count) {
+        cardioid.add(count);
+    }
+
+    public void recordBulb() {
+        bulb.increment();
+    }
+
+    public void recordBulb(long count) {
+        bulb.add(count);
+    }
+
+    public void recordPeriodic() {
+        periodic.increment();
+    }
+
+    public void recordPeriodic(long count) {
+        periodic.add(count);
+    }
+
+    public long getCardioidPixels() {
+        return cardioid.sum();
+    }
+
+    public long getBulbPixels() {
+        return bulb.sum();
+    }
+
+    public long getPeriodicPixels() {
+        return periodic.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("interior shortcuts: %d cardioid, %d period-2 bulb, %d periodic orbits",
+                getCardioidPixels(), getBulbPixels(), getPeriodicPixels());
+    }
+}
@@ -0,0 +1,67 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * Counts how many pixels of a frame have each iteration count, in parallel on a tile scheduler.
+ * <p>
+ * A histogram of a high iteration limit has hundreds of thousands of bins, so the tiles do not count
+ * into one shared histogram, which would make the threads fight over the same cache lines. Every tile
+ * takes a private stripe of counters that no other thread is using, so each thread effectively counts
+ * into its own stripe, and the stripes are added up afterwards, again in parallel, each task summing a
+ * range of bins over all stripes.
+ */
+public final class IterationHistogram {
+
+    private IterationHistogram() {
+    }
+
+    /**
+     * Builds the histogram of the iteration counts of a frame.
+     *
+     * @param scheduler     The scheduler to count on.
+     * @param iterations    The iteration counts of the frame.
+     * @param width         The width of the frame.
+     * @param height        The height of the frame.
+     * @param maxIterations The iteration limit of the frame.
+     * @return The number of pixels with each count from 0 to maxIterations.
+     */
+    public static int[] build(TileScheduler scheduler, int[] iterations, int width, int height, int maxIterations) {
+        int bins = maxIterations + 1;
+        // Stripes that no tile is counting into; a tile that finds none creates one.
+        ConcurrentLinkedDeque<int[]> free = new ConcurrentLinkedDeque<>();
+        List<int[]> stripes = new ArrayList<>();
+        scheduler.render(width, height, TileScheduler.WHOLE_TILE, (x0, y0, x1, y1) -> {
+            int[] stripe = free.pollFirst();
+            if (stripe == null) {
+                stripe = new int[bins];
+                synchronized (stripes) {
+                    stripes.add(stripe);
+                }
+            }
+            for (int y = y0; y < y1; y++) {
+                int row = y * width;
+                for (int x = x0; x < x1; x++) {
+                    stripe[iterations[x + row]]++;
+                }
+            }
+            free.addFirst(stripe);
+            return 0;
+        }, () -> false, new TileStats(width, height, scheduler.getParallelism()));
+
+        if (stripes.size() == 1) {
+            return stripes.get(0);
+        }
+        int[] histogram = new int[bins];
+        // The bins are a row of pixels to the scheduler, which cuts it into ranges of a tile's area.
+        scheduler.render(bins, 1, TileScheduler.WHOLE_TILE, (from, y0, to, y1) -> {
+            for (int[] stripe : stripes) {
+                for (int bin = from; bin < to; bin++) {
+                    histogram[bin] += stripe[bin];
+                }
+            }
+            return 0;
+        }, () -> false, new TileStats(bins, 1, scheduler.getParallelism()));
+        return histogram;
+    }
+}
@@ -0,0 +1,240 @@
+import java.awt.Color;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Renders a single view to a PNG file from the command line, without a window. It runs on machines
+ * without a display, for batch renders and scripts, and renders exactly what the viewer's export
+ * renders for the same view.
+ * <p>
+ * Example:
+ * <pre>
+ * java -Djava.awt.headless=true MandelbrotCli --center -0.743643887,0.131825904 --zoom 1e7
+ *     --size 1920x1080 --iterations 2000 --threads 8 --output spiral.png
+ * </pre>
+ */
+public class MandelbrotCli {
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: MandelbrotCli [options] --output <file.png>",
+            "  --type mandelbrot|julia    The fractal (default mandelbrot)",
+            "  --center <real>,<imag>     The center of the view, with any number of digits (default -0.5,0)",
+            "  --zoom <pixels per unit>   The zoom, 250 being the initial view of the viewer, up to any exponent (default 250)",
+            "  --julia <real>,<imag>      The constant of a Julia set (default -0.7,0.27015)",
+            "  --size <width>x<height>    The size of the image (default 1920x1080)",
+            "  --iterations <n>           The iteration limit (default 1000)",
+            "  --color <scheme>           red, blue, green, purple or orange (default red)",
+            "  --coloring <mode>          linear, logarithmic, smooth or histogram (default linear)",
+            "  --threads <n>              The number of worker threads (default: one per core)",
+            "  --supersample <pattern>    Anti-alias the edges: grid_2x2, rotated_grid, grid_3x3 or grid_4x4",
+            "  --threshold <n>            The iteration difference that anti-aliases a pixel (default 2)",
+            "  --rectangle-fill           Fill uniform rectangles instead of iterating them",
+            "  --no-deep-zoom             Iterate in double-double instead of perturbation beyond the precision of a double",
+            "  --no-shortcuts             Iterate interior points up to the limit",
+            "  --workers <host:port,...>  Render on RenderNode workers instead of locally",
+            "  --worker-timeout <s>       How long a worker may take for a strip before it is dropped (default 60)");
+
+    // Zooms with a larger decimal exponent are passed to the view with a separate binary exponent
+    private static final int MAX_DECIMAL_ZOOM_EXPONENT = 300;
+    private static final double LOG2_10 = Math.log(10) / Math.log(2);
+
+    /**
+     * Parses the arguments, renders the view and prints what was rendered.
+     *
+     * @param args The options, see the usage message.
+     */
+    public static void main(String[] args) {
+        // The engine never opens a window; this also keeps AWT from looking for a display.
+        System.setProperty("java.awt.headless", "true");
+
+        FractalType type = FractalType.MANDELBROT;
+        BigDecimal centerReal = new BigDecimal("-0.5");
+        BigDecimal centerImag = BigDecimal.ZERO;
+        double zoom = 250;
+        int zoomExponent = 0;
+        double juliaReal = -0.7;
+        double juliaImag = 0.27015;
+        int width = 1920;
+        int height = 1080;
+        int maxIterations = 1000;
+        ColorScheme colorScheme = ColorScheme.RED;
+        ColoringMode coloringMode = ColoringMode.LINEAR;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Supersampling.Pattern pattern = null;
+        int threshold = 2;
+        boolean deepZoom = true;
+        boolean interiorShortcuts = true;
+        boolean rectangleFill = false;
+        Path output = null;
+        List<InetSocketAddress> workers = new ArrayList<>();
+        int workerTimeout = 60;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String option = args[i];
+                switch (option) {
+                    case "--rectangle-fill":
+                        rectangleFill = true;
+                        continue;
+                    case "--no-deep-zoom":
+                        deepZoom = false;
+                        continue;
+                    case "--no-shortcuts":
+                        interiorShortcuts = false;
+                        continue;
+                    case "--help":
+                        System.out.println(USAGE);
+                        return;
+                    default:
+                        break;
+                }
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value of " + option);
+                }
+                String value = args[++i];
+                switch (option) {
+                    case "--type":
+                        type = FractalType.valueOf(value.toUpperCase(Locale.ROOT));
+                        break;
+                    case "--center":
+                        String[] center = pair(value, ",");
+                        centerReal = new BigDecimal(center[0], MathContext.UNLIMITED);
+                        centerImag = new BigDecimal(center[1], MathContext.UNLIMITED);
+                        break;
+                    case "--zoom":
+                        BigDecimal exactZoom = new BigDecimal(value);
+                        int decimalExponent = exactZoom.precision() - exactZoom.scale() - 1;
+                        if (decimalExponent > MAX_DECIMAL_ZOOM_EXPONENT) {
+                            // Beyond the range of a double the zoom is split into a mantissa and a power
+                            // of two: 10^shift = 2^(shift log2 10).
+                            int shift = decimalExponent - MAX_DECIMAL_ZOOM_EXPONENT;
+                            double binaryShift = shift * LOG2_10;
+                            zoomExponent = (int) Math.floor(binaryShift);
+                            zoom = exactZoom.movePointLeft(shift).doubleValue()
+                                    * Math.pow(2, binaryShift - zoomExponent);
+                        } else {
+                            zoom = exactZoom.doubleValue();
+                            zoomExponent = 0;
+                        }
+                        break;
+                    case "--julia":
+                        String[] constant = pair(value, ",");
+                        juliaReal = Double.parseDouble(constant[0]);
+                        juliaImag = Double.parseDouble(constant[1]);
+                        break;
+                    case "--size":
+                        String[] size = pair(value, "x");
+                        width = Integer.parseInt(size[0]);
+                        height = Integer.parseInt(size[1]);
+                        break;
+                    case "--iterations":
+                        maxIterations = Integer.parseInt(value);
+                        break;
+                    case "--color":
+                        colorScheme = ColorScheme.valueOf(value.toUpperCase(Locale.ROOT));
+                        break;
+                    case "--coloring":
+                        coloringMode = ColoringMode.valueOf(value.toUpperCase(Locale.ROOT));
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(value);
+                        break;
+                    case "--supersample":
+                        pattern = Supersampling.Pattern.valueOf(value.toUpperCase(Locale.ROOT));
+                        break;
+                    case "--threshold":
+                        threshold = Integer.parseInt(value);
+                        break;
+                    case "--output":
+                        output = Paths.get(value);
+                        break;
+                    case "--workers":
+                        for (String worker : value.split(",")) {
+                            String[] address = pair(worker, ":");
+                            workers.add(new InetSocketAddress(address[0], Integer.parseInt(address[1])));
+                        }
+                        break;
+                    case "--worker-timeout":
+                        workerTimeout = Integer.parseInt(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + option);
+                }
+            }
+            if (output == null) {
+                throw new IllegalArgumentException("No --output file");
+            }
+            if (width <= 0 || height <= 0 || maxIterations <= 0 || threads <= 0 || zoom <= 0) {
+                throw new IllegalArgumentException("The size, iterations, threads and zoom must be positive");
+            }
+            if (!workers.isEmpty() && pattern != null) {
+                throw new IllegalArgumentException("Supersampling is not available with --workers");
+            }
+            if (!workers.isEmpty() && coloringMode == ColoringMode.SMOOTH) {
+                // The workers only send whole counts.
+                throw new IllegalArgumentException("Smooth coloring is not available with --workers");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        FractalView view = new FractalView(type, zoom, zoomExponent, centerReal, centerImag, juliaReal, juliaImag,
+                maxIterations, width, height);
+        RenderOptions options = new RenderOptions(deepZoom, interiorShortcuts, rectangleFill);
+        Color color = colorScheme.getColor();
+        Supersampling supersampling = pattern == null ? null : new Supersampling(pattern, threshold);
+
+        RenderEngine engine = new RenderEngine(threads);
+        long start = System.nanoTime();
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(output))) {
+            StripExporter exporter;
+            if (workers.isEmpty()) {
+                // The image is streamed, so a histogram palette is equalized on a preview of the view.
+                Palette palette = engine.exportPalette(view, options, color, coloringMode);
+                exporter = engine.export(view, options, palette, supersampling, out, () -> false, rows -> {
+                });
+            } else {
+                DistributedRenderer renderer = new DistributedRenderer(workers,
+                        DistributedRenderer.DEFAULT_STRIP_HEIGHT, workerTimeout * 1000);
+                int[] iterations = renderer.iterate(view, options);
+                System.out.println(renderer);
+                // The local threads only color and compress the counts the workers computed.
+                Palette palette = coloringMode == ColoringMode.HISTOGRAM
+                        ? engine.equalize(color, iterations, width, height, maxIterations)
+                        : new Palette(color, maxIterations, coloringMode);
+                final int stride = width;
+                exporter = new StripExporter(engine.getScheduler(), (x, y) -> iterations[x + y * stride], palette,
+                        width, height, false);
+                exporter.export(out);
+            }
+            System.out.printf("%s: %s; %s precision; %.2f s on %d threads%n", output, exporter,
+                    PrecisionTier.select(view, options), (System.nanoTime() - start) / 1e9, engine.getParallelism());
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(1);
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    private static String[] pair(String value, String separator) {
+        String[] parts = value.split(separator, -1);
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Expected two values separated by '" + separator + "': " + value);
+        }
+        return parts;
+    }
+}
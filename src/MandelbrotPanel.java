@@ -3,31 +3,106 @@ import java.awt.*;
 import java.awt.event.*;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class MandelbrotPanel extends JPanel {
 
-    // Executor service for multithreading
-    private final ExecutorService executorService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    // How often the progress bar is updated while a frame is computing
+    private static final long PROGRESS_INTERVAL_MILLIS = 50;
+    // The sample distances of the progressive passes: 1/16 of the pixels, then 1/4, then all of them
+    private static final int[] PROGRESSIVE_STEPS = {4, 2, 1};
+    // The zoom of level 0, and the factor between neighbouring zoom levels
+    private static final double BASE_ZOOM = 250.0;
+    private static final double ZOOM_STEP = 1.1;
+    // Zooms from 2 to this power are split into a factor and a power of two
+    private static final int MAX_ZOOM_EXPONENT = 1000;
+    // The default memory budget of the tile cache
+    private static final long TILE_CACHE_BYTES = 64L << 20;
+    // The memory the orbit checkpoint of a frame may use, with the checkpoints of the frames it was panned from
+    private static final long CHECKPOINT_BYTES = 64L << 20;
+
+    // Renders on a work-stealing tile scheduler with a worker per core
+    private final RenderEngine engine = new RenderEngine(Runtime.getRuntime().availableProcessors());
+    // Background image exports, on half of the cores so that the view stays responsive
+    private final ExportQueue exportQueue = new ExportQueue(Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    // Tiles of recently rendered views, shared by all zoom levels
+    private final TileCache tileCache = new TileCache(TILE_CACHE_BYTES);
+    // The images and iteration counts of frames, which the frames on screen and in flight swap; the
+    // spares cover superseded frames whose tiles are still stopping while the view is dragged
+    private final FrameBufferPool framePool = new FrameBufferPool(4);
     // Setting the initial values for the fractal viewer (zoom, offset, iterations)
-    private double zoom = 250.0;
+    private int zoomLevel = 0;
+    // The zoom, which is infinite beyond the range of a double
+    private double zoom = BASE_ZOOM;
+    // The zoom as a factor and a power of two, which also covers zooms beyond the range of a double
+    private double zoomFactor = BASE_ZOOM;
+    private int zoomExponent = 0;
     private double offsetX = -1.0;
     private double offsetY = 0.0;
+    // The exact center of the view, which the double offsets above approximate
+    private BigDecimal exactOffsetX = BigDecimal.valueOf(-1.0);
+    private BigDecimal exactOffsetY = BigDecimal.ZERO;
+    // Whether deep zooms are rendered with perturbation
+    private boolean deepZoomEnabled = true;
+    // Whether uniform rectangles are filled without iterating their inside
+    private boolean rectangleFillEnabled = false;
+    // Whether interior points are recognized without iterating them to the limit
+    private boolean interiorShortcutsEnabled = true;
+    // Whether new frames are shown as coarse previews before they are complete
+    private boolean progressiveEnabled = true;
+    // Whether the metrics of the last frame are drawn over the fractal
+    private boolean metricsOverlayEnabled = false;
     private int maxIterations = 250;
     private ColorScheme colorScheme = ColorScheme.RED;
+    private ColoringMode coloringMode = ColoringMode.LINEAR;
     // Variables to handle panning
     private Point lastMousePosition;
 
     // BufferedImage to store the fractal image
     private BufferedImage fractalImage;
-
-    // Flag to indicate if a computation is in progress
-    private volatile boolean isComputing = false;
+    // The frame buffer of the fractal image, which is held while it is on screen
+    private FrameBufferPool.FrameBuffer shownBuffer;
+    // The palette of the latest frame, reused until the color scheme, the iteration limit or the
+    // coloring mode changes
+    private Palette palette;
+    // The render behind the fractal image, whose iteration counts are reused for recoloring and panning
+    private RenderWorker displayedFrame;
+    // The position of the view on the pixel grid of its zoom level; panning moves it by whole pixels
+    private long pixelOriginX;
+    private long pixelOriginY;
+    // The zoom level the pixel origin was counted at
+    private int pixelGridZoomLevel = zoomLevel;
+    // Incremented whenever the view jumps so that the pixel origins of older frames no longer apply
+    private long pixelGridEpoch;
+
+    // Generation of the most recent view request; older generations are abandoned
+    private final AtomicLong renderGeneration = new AtomicLong();
+    // The worker computing the current generation
+    private RenderWorker currentWorker;
+    // Tile statistics of the last render, to inspect the load balance
+    private volatile TileStats lastTileStats;
+    // Deep zoom statistics of the last render, or null if it did not use perturbation
+    private volatile DeepZoomStats lastDeepZoomStats;
+    // Interior shortcut statistics of the last render, or null if it did not use them
+    private volatile InteriorStats lastInteriorStats;
+    // The precision tier of the last render, or null before the first one
+    private volatile PrecisionTier lastPrecision;
 
     // Progress bar
     private JProgressBar progressBar;
@@ -42,8 +117,7 @@ public class MandelbrotPanel extends JPanel {
         addMouseWheelListener(new MouseAdapter() {
             @Override
             public void mouseWheelMoved(MouseWheelEvent e) {
-                double factor = 1.1;
-                zoom *= (e.getWheelRotation() < 0) ? factor : 1.0 / factor;
+                setZoomLevel(zoomLevel + ((e.getWheelRotation() < 0) ? 1 : -1));
                 computeFractal();
             }
         });
@@ -83,12 +157,10 @@ public class MandelbrotPanel extends JPanel {
                 // If the user is dragging the mouse, pan the image.
                 if (lastMousePosition != null) {
                     // Calculate the amount to pan the image.
-                    double deltaX = (e.getX() - lastMousePosition.x) / zoom;
-                    double deltaY = (e.getY() - lastMousePosition.y) / zoom;
-                    offsetX -= deltaX;
-                    offsetY -= deltaY;
+                    int deltaX = e.getX() - lastMousePosition.x;
+                    int deltaY = e.getY() - lastMousePosition.y;
                     lastMousePosition = e.getPoint();
-                    computeFractal();
+                    panPixels(-deltaX, -deltaY);
                 }
             }
         });
@@ -164,7 +236,80 @@ public class MandelbrotPanel extends JPanel {
      */
     public void setColorScheme(ColorScheme colorScheme) {
         this.colorScheme = colorScheme;
-        computeFractal();
+        // Only the colors change, so the iteration counts of the current image are reused.
+        recolorFractal();
+        repaint();
+    }
+
+    /**
+     * Sets how the colors of the color scheme are spread over the iteration counts.
+     *
+     * @param coloringMode The new coloring mode.
+     */
+    public void setColoringMode(ColoringMode coloringMode) {
+        this.coloringMode = coloringMode;
+        recolorFractal();
+        repaint();
+    }
+
+    /**
+     * Recolors the fractal image from its iteration counts with the current color scheme. The coloring
+     * runs on the tile scheduler and takes milliseconds even for large images, since no orbit is iterated.
+     * <p>
+     * While a frame is rendering, the coloring tiles would wait behind its tiles and block the user
+     * interface. The render is then restarted with the new colors instead: the new generation copies
+     * and colors the counts of the displayed frame on its worker thread and iterates the rest.
+     */
+    private void recolorFractal() {
+        if (isRendering()) {
+            computeFractal();
+            return;
+        }
+        if (fractalImage == null || displayedFrame == null || fractalImage != displayedFrame.image) {
+            return;
+        }
+        if (coloringMode == ColoringMode.SMOOTH && displayedFrame.fractions == null) {
+            // The fractions are only recorded while iterating, so the frame is rendered again.
+            computeFractal();
+            return;
+        }
+        final int[] pixels = ((DataBufferInt) fractalImage.getRaster().getDataBuffer()).getData();
+        final int[] iterations = displayedFrame.iterations;
+        final int width = fractalImage.getWidth();
+        final int height = fractalImage.getHeight();
+        final int maxIterations = displayedFrame.view.getMaxIterations();
+        final Palette palette;
+        if (coloringMode == ColoringMode.HISTOGRAM) {
+            palette = engine.equalize(colorScheme.getColor(), iterations, width, height, maxIterations);
+            this.palette = palette;
+        } else {
+            palette = palette(colorScheme.getColor(), maxIterations);
+        }
+
+        engine.color(palette, iterations, displayedFrame.fractions, pixels, width, height);
+        displayedFrame.framePalette = palette;
+    }
+
+    /**
+     * Gets the palette of a color scheme in the current coloring mode, reusing the one of the latest
+     * frame when it matches, so that panning does not build a color table for every frame.
+     * <p>
+     * In histogram mode this is the equalized palette of the latest frame, or a logarithmic one until a
+     * frame has been equalized. Frames are recolored with their own histogram once they are complete.
+     *
+     * @param color         The color of the color scheme.
+     * @param maxIterations The iteration limit.
+     * @return The palette.
+     */
+    private Palette palette(Color color, int maxIterations) {
+        if (palette != null && palette.matches(color, maxIterations, coloringMode)) {
+            return palette;
+        }
+        ColoringMode mode = coloringMode == ColoringMode.HISTOGRAM ? ColoringMode.LOGARITHMIC : coloringMode;
+        if (palette == null || !palette.matches(color, maxIterations, mode)) {
+            palette = new Palette(color, maxIterations, mode);
+        }
+        return palette;
     }
 
     /**
@@ -177,6 +322,62 @@ public class MandelbrotPanel extends JPanel {
         computeFractal();
     }
 
+    /**
+     * Enables or disables perturbation rendering for deep zooms. Without it, deep zooms are iterated in
+     * double-double arithmetic, which is several times slower and dissolves into blocks beyond a zoom of
+     * about 1e27.
+     *
+     * @param deepZoomEnabled Whether deep zooms use perturbation.
+     */
+    public void setDeepZoomEnabled(boolean deepZoomEnabled) {
+        this.deepZoomEnabled = deepZoomEnabled;
+        computeFractal();
+    }
+
+    /**
+     * Enables or disables Mariani-Silver rectangle fill. Only the borders of rectangles are iterated,
+     * and rectangles with a uniform border are filled, which makes views of the interior of the set
+     * much faster.
+     *
+     * @param rectangleFillEnabled Whether to use rectangle fill.
+     */
+    public void setRectangleFillEnabled(boolean rectangleFillEnabled) {
+        this.rectangleFillEnabled = rectangleFillEnabled;
+        computeFractal();
+    }
+
+    /**
+     * Enables or disables the interior shortcuts: the closed-form test for the main cardioid and the
+     * period-2 bulb, and cycle detection for other orbits that never escape.
+     *
+     * @param interiorShortcutsEnabled Whether to use the interior shortcuts.
+     */
+    public void setInteriorShortcutsEnabled(boolean interiorShortcutsEnabled) {
+        this.interiorShortcutsEnabled = interiorShortcutsEnabled;
+        computeFractal();
+    }
+
+    /**
+     * Enables or disables progressive rendering, which shows every new frame at 1/16 and 1/4 of the
+     * pixels before it is complete. The setting applies from the next frame on.
+     *
+     * @param progressiveEnabled Whether to render progressive passes.
+     */
+    public void setProgressiveEnabled(boolean progressiveEnabled) {
+        this.progressiveEnabled = progressiveEnabled;
+    }
+
+    /**
+     * Shows or hides the metrics of the last frame on top of the fractal: its wall time, iterations,
+     * tile times, queue wait and the busy time of every worker.
+     *
+     * @param metricsOverlayEnabled Whether to draw the overlay.
+     */
+    public void setMetricsOverlayEnabled(boolean metricsOverlayEnabled) {
+        this.metricsOverlayEnabled = metricsOverlayEnabled;
+        repaint();
+    }
+
     /**
      * Sets the progress bar.
      *
@@ -190,28 +391,99 @@ public class MandelbrotPanel extends JPanel {
      * Resets the view to default settings.
      */
     public void resetView() {
-        zoom = 250.0;
+        setZoomLevel(0);
         offsetX = -1.0;
         offsetY = 0.0;
+        exactOffsetX = BigDecimal.valueOf(-1.0);
+        exactOffsetY = BigDecimal.ZERO;
         maxIterations = 250;
+        pixelGridEpoch++;
         computeFractal();
     }
 
     /**
-     * Shuts down the executor service.
+     * Sets the memory budget of the tile cache. A budget of zero disables the cache.
+     *
+     * @param budgetBytes The memory the cached tiles may use.
      */
-    public void shutdown() {
-        executorService.shutdownNow();
+    public void setTileCacheBudget(long budgetBytes) {
+        tileCache.setBudget(budgetBytes);
     }
 
     /**
-     * Computes the fractal image in a background thread.
+     * Attaches a disk store to the tile cache, so that tiles are kept between sessions, or detaches
+     * and closes the current one.
+     *
+     * @param diskStore The disk store, or null to keep tiles in memory only.
      */
-    private void computeFractal() {
-        if (isComputing) {
+    public void setDiskTileStore(DiskTileStore diskStore) {
+        DiskTileStore previous = tileCache.getDiskStore();
+        tileCache.setDiskStore(diskStore);
+        if (previous != null && previous != diskStore) {
+            previous.close();
+        }
+    }
+
+    /**
+     * Gets the tile cache, to inspect its hit and miss counters.
+     *
+     * @return The tile cache.
+     */
+    public TileCache getTileCache() {
+        return tileCache;
+    }
+
+    /**
+     * Sets the zoom to a zoom level. Zooms are always whole levels, so that revisited zooms are exactly
+     * equal and can be served by the tile cache.
+     *
+     * @param zoomLevel The zoom level; the zoom is BASE_ZOOM * ZOOM_STEP^zoomLevel.
+     */
+    private void setZoomLevel(int zoomLevel) {
+        this.zoomLevel = zoomLevel;
+        double log2Zoom = Math.log(BASE_ZOOM) / Math.log(2) + zoomLevel * (Math.log(ZOOM_STEP) / Math.log(2));
+        if (log2Zoom < MAX_ZOOM_EXPONENT) {
+            zoomFactor = BASE_ZOOM * Math.pow(ZOOM_STEP, zoomLevel);
+            zoomExponent = 0;
+        } else {
+            zoomExponent = (int) Math.floor(log2Zoom);
+            zoomFactor = Math.pow(2, log2Zoom - zoomExponent);
+        }
+        this.zoom = Math.scalb(zoomFactor, zoomExponent);
+    }
+
+    /**
+     * Moves the center by less than a pixel so that the pixels of the view lie on the global pixel grid
+     * of the zoom level, where the tile cache keeps its tiles. Deep zooms are not cached and keep their
+     * exact center.
+     *
+     * @param width  The width of the view.
+     * @param height The height of the view.
+     */
+    private void alignToPixelGrid(int width, int height) {
+        if (zoom >= RenderEngine.DEEP_ZOOM_THRESHOLD) {
             return;
         }
+        offsetX = (Math.rint(offsetX * zoom - width / 2.0) + width / 2.0) / zoom;
+        offsetY = (Math.rint(offsetY * zoom - height / 2.0) + height / 2.0) / zoom;
+        exactOffsetX = new BigDecimal(offsetX);
+        exactOffsetY = new BigDecimal(offsetY);
+    }
+
+    /**
+     * Shuts down the tile scheduler and cancels the exports that are still queued or running.
+     */
+    public void shutdown() {
+        engine.shutdown();
+        exportQueue.shutdown();
+        setDiskTileStore(null);
+    }
 
+    /**
+     * Computes the fractal image in a background thread. Any render still in flight is cancelled and
+     * superseded by a new generation that uses the latest view settings.
+     */
+    private void computeFractal() {
         final int width = getWidth();
         final int height = getHeight();
 
@@ -220,98 +492,587 @@ public class MandelbrotPanel extends JPanel {
             return;
         }
 
-        isComputing = true;
+        alignToPixelGrid(width, height);
 
-        // Create a new image
-        fractalImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-        final int[] pixels = ((DataBufferInt) fractalImage.getRaster().getDataBuffer()).getData();
+        // Start a new generation, which makes every older render stale.
+        final long generation = renderGeneration.incrementAndGet();
+        if (currentWorker != null) {
+            currentWorker.cancelRender();
+        }
 
-        // Create a SwingWorker to compute the image
-        SwingWorker<Void, Integer> worker = new SwingWorker<Void, Integer>() {
-            @Override
-            protected Void doInBackground() throws Exception {
-                List<Future<Void>> futures = new ArrayList<>(height);
-                for (int y = 0; y < height; y++) {
-                    final int currentY = y;
-
-                    // Submit a task to the executor service to calculate the pixels for the current row
-                    futures.add(executorService.submit(() -> {
-                        for (int x = 0; x < width; x++) {
-                            double zx, zy, cX, cY;
-                            if (fractalType == FractalType.MANDELBROT) {
-                                zx = 0;
-                                zy = 0;
-                                cX = (x - width / 2.0) / zoom + offsetX;
-                                cY = (currentY - height / 2.0) / zoom + offsetY;
-                            } else { // Julia
-                                zx = (x - width / 2.0) / zoom + offsetX;
-                                zy = (currentY - height / 2.0) / zoom + offsetY;
-                                cX = juliaCReal;
-                                cY = juliaCImag;
-                            }
-
-                            int iter = 0;
-
-                            while (zx * zx + zy * zy < 4 && iter < maxIterations) {
-                                double tmp = zx * zx - zy * zy + cX;
-                                zy = 2.0 * zx * zy + cY;
-                                zx = tmp;
-                                iter++;
-                            }
-
-                            if (iter == maxIterations) {
-                                // Set the pixel to black for points inside the set
-                                pixels[x + currentY * width] = 0;
-                            } else {
-                                // Use the selected color scheme for points outside the set
-                                Color color = colorScheme.getColor();
-                                int colorValue = (int) (255.0 * iter / maxIterations);
-                                int r = color.getRed() * colorValue / 255;
-                                int g = color.getGreen() * colorValue / 255;
-                                int b = color.getBlue() * colorValue / 255;
-                                int rgb = (r << 16) | (g << 8) | b;
-                                pixels[x + currentY * width] = rgb;
-                            }
-                        }
-                        return null;
-                    }));
-
-                    // Update progress
-                    int progress = (int) ((currentY / (double) height) * 100);
-                    publish(progress);
+        currentWorker = new RenderWorker(generation, width, height);
+        currentWorker.execute();
+    }
+
+    /**
+     * Shows the image of a frame buffer, holding the buffer until another one is shown.
+     *
+     * @param buffer The buffer to show.
+     */
+    private void show(FrameBufferPool.FrameBuffer buffer) {
+        if (buffer == shownBuffer) {
+            return;
+        }
+        buffer.retain();
+        if (shownBuffer != null) {
+            shownBuffer.release();
+        }
+        shownBuffer = buffer;
+        fractalImage = buffer.getImage();
+    }
+
+    /**
+     * Checks whether the latest view request is still being rendered.
+     *
+     * @return True until the frame of the latest view is on screen.
+     */
+    boolean isRendering() {
+        return currentWorker != null && displayedFrame != currentWorker;
+    }
+
+    /**
+     * Checks whether a render generation has been superseded by a newer view request.
+     *
+     * @param generation The generation to check.
+     * @return True if the generation is stale.
+     */
+    private boolean isStale(long generation) {
+        return renderGeneration.get() != generation;
+    }
+
+    /**
+     * Computes one generation of the fractal image. The view settings are captured when the worker is
+     * created, so a frame is always consistent even if the user keeps zooming or panning. The tiles
+     * stop as soon as the generation becomes stale and the result is only shown if it is still current.
+     * <p>
+     * The frame buffer of a worker holds two references: one that the rendering releases once its
+     * last tile has stopped, and one that {@link #done()} either hands to the screen or releases.
+     */
+    private class RenderWorker extends SwingWorker<Void, Integer> {
+
+        private final long generation;
+        private final FractalView view;
+        private final Color color = colorScheme.getColor();
+        private final ColoringMode mode = coloringMode;
+        private final RenderOptions options = getFrameOptions();
+        private final boolean progressive = progressiveEnabled;
+        private final Palette palette;
+        // The palette the finished frame is colored with, which differs in histogram mode
+        private volatile Palette framePalette;
+        private final FrameBufferPool.FrameBuffer buffer;
+        private final BufferedImage image;
+        private final int[] iterations;
+        // The fractional parts of the counts in smooth mode, or null
+        private final float[] fractions;
+        private final long originX = pixelOriginX;
+        private final long originY = pixelOriginY;
+        private final long gridEpoch = pixelGridEpoch;
+        private final int level = zoomLevel;
+        // The displayed frame if it shows part of this view or the same view at another iteration limit,
+        // or null once the rendering is over
+        private RenderWorker previous;
+        // The kernel that iterated the frame; a frame whose limit was lowered reports the one before it
+        private volatile PixelKernel kernel;
+        // The orbits of the pixels that reached the limit of the checkpoint, and the counts at that limit,
+        // which is higher than the limit of this frame after the limit was lowered
+        private volatile OrbitCheckpoint checkpoint;
+        private volatile int[] checkpointCounts;
+        private volatile float[] checkpointFractions;
+        // Set once a pass covers the whole image, which can then be shown before the frame is done
+        private volatile boolean previewReady;
+        // Set when the rendering starts, or when the worker is cancelled before it started
+        private final AtomicBoolean started = new AtomicBoolean();
+
+        RenderWorker(long generation, int width, int height) {
+            this.generation = generation;
+            this.view = snapshotView(width, height);
+            this.palette = palette(color, view.getMaxIterations());
+            this.framePalette = palette;
+            this.buffer = framePool.acquire(width, height);
+            buffer.retain();
+            this.image = buffer.getImage();
+            this.iterations = buffer.getIterations();
+            this.fractions = mode == ColoringMode.SMOOTH ? buffer.getFractions() : null;
+            this.previous = overlaps(displayedFrame) ? displayedFrame : null;
+            if (previous != null) {
+                // The previous frame may leave the screen while this one still copies from it.
+                previous.buffer.retain();
+            }
+        }
+
+        /**
+         * Releases the buffers the rendering used, once nothing writes to them any more.
+         */
+        private void releaseRender() {
+            if (previous != null) {
+                previous.buffer.release();
+                // Otherwise every frame would keep the whole chain of frames before it.
+                previous = null;
+            }
+            buffer.release();
+        }
+
+        /**
+         * Checks whether a finished frame shows the same fractal on the same pixel grid as this one, so
+         * that the pixels they have in common can be copied instead of computed. A frame with another
+         * iteration limit only overlaps if it shows exactly the same pixels, and a frame rendered with
+         * other render options never does, since the options change the kernel. A smooth frame only
+         * overlaps frames that recorded the fractions of their counts.
+         */
+        private boolean overlaps(RenderWorker frame) {
+            if (frame == null || frame.gridEpoch != gridEpoch || !frame.options.equals(options)
+                    || fractions != null && frame.fractions == null) {
+                return false;
+            }
+            FractalView other = frame.view;
+            return other.getFractalType() == view.getFractalType()
+                    && other.hasSameZoom(view)
+                    && other.getJuliaCReal() == view.getJuliaCReal()
+                    && other.getJuliaCImag() == view.getJuliaCImag()
+                    && (other.getMaxIterations() == view.getMaxIterations()
+                    || originX == frame.originX && originY == frame.originY)
+                    && other.getWidth() == view.getWidth()
+                    && other.getHeight() == view.getHeight()
+                    && Math.abs(originX - frame.originX) < view.getWidth()
+                    && Math.abs(originY - frame.originY) < view.getHeight();
+        }
+
+        /**
+         * Copies the iteration counts this frame has in common with the previous one and colors them.
+         *
+         * @param palette The palette of this frame.
+         * @param pixels  The pixels of this frame.
+         * @param stats   The statistics to record the reused pixels in.
+         * @return The regions that were not covered by the previous frame and still have to be rendered.
+         */
+        private List<Rectangle> reusePrevious(Palette palette, int[] pixels, TileStats stats) {
+            int width = view.getWidth();
+            int height = view.getHeight();
+            if (previous == null) {
+                return Collections.singletonList(new Rectangle(0, 0, width, height));
+            }
+
+            // Pixel (x, y) of this frame is pixel (x + shiftX, y + shiftY) of the previous one.
+            int shiftX = (int) (originX - previous.originX);
+            int shiftY = (int) (originY - previous.originY);
+            int xa = Math.max(0, -shiftX);
+            int xb = Math.min(width, width - shiftX);
+            int ya = Math.max(0, -shiftY);
+            int yb = Math.min(height, height - shiftY);
+            for (int y = ya; y < yb; y++) {
+                System.arraycopy(previous.iterations, xa + shiftX + (y + shiftY) * width, iterations,
+                        xa + y * width, xb - xa);
+                if (fractions != null) {
+                    System.arraycopy(previous.fractions, xa + shiftX + (y + shiftY) * width, fractions,
+                            xa + y * width, xb - xa);
+                }
+            }
+            palette.color(iterations, fractions, pixels, width, xa, ya, xb, yb);
+            stats.recordReusedPixels((long) (xb - xa) * (yb - ya));
+            OrbitCheckpoint orbits = previous.checkpoint;
+            if (orbits.getMaxIterations() == view.getMaxIterations()
+                    && orbits.getPrecision() == checkpoint.getPrecision()) {
+                checkpoint.inherit(orbits, shiftX, shiftY, xa, ya, xb, yb);
+            }
+
+            // The exposed strips: full rows above and below the copy, and columns beside it.
+            List<Rectangle> exposed = new ArrayList<>();
+            if (ya > 0) {
+                exposed.add(new Rectangle(0, 0, width, ya));
+            }
+            if (yb < height) {
+                exposed.add(new Rectangle(0, yb, width, height - yb));
+            }
+            if (xa > 0) {
+                exposed.add(new Rectangle(0, ya, xa, yb - ya));
+            }
+            if (xb < width) {
+                exposed.add(new Rectangle(xb, ya, width - xb, yb - ya));
+            }
+            return exposed;
+        }
+
+        /**
+         * Checks whether the pixels of this frame can be cached: the view must be on the global pixel
+         * grid of its zoom level, which deep zooms are not.
+         */
+        private boolean isCacheable() {
+            return view.getZoom() < RenderEngine.DEEP_ZOOM_THRESHOLD;
+        }
+
+        /**
+         * Gets the column of the global pixel grid that the first column of this frame lies on.
+         */
+        private long gridX() {
+            return Math.round(view.getOffsetX() * view.getZoom() - view.getWidth() / 2.0);
+        }
+
+        /**
+         * Gets the row of the global pixel grid that the first row of this frame lies on.
+         */
+        private long gridY() {
+            return Math.round(view.getOffsetY() * view.getZoom() - view.getHeight() / 2.0);
+        }
+
+        /**
+         * Copies the cached tiles of this frame into its iteration counts and colors them. The cache only
+         * holds counts, so a smooth frame renders every tile.
+         *
+         * @param precision The precision tier of this frame.
+         * @param palette   The palette of this frame.
+         * @param pixels    The pixels of this frame.
+         * @param stats     The statistics to record the reused pixels in.
+         * @return The regions of tiles that are not cached and still have to be rendered.
+         */
+        private List<Rectangle> reuseCached(PrecisionTier precision, Palette palette, int[] pixels,
+                                            TileStats stats) {
+            int width = view.getWidth();
+            int height = view.getHeight();
+            if (!isCacheable() || fractions != null) {
+                return Collections.singletonList(new Rectangle(0, 0, width, height));
+            }
+
+            final int size = TileCache.TILE_SIZE;
+            long gx = gridX();
+            long gy = gridY();
+            List<Rectangle> missing = new ArrayList<>();
+            for (long ty = Math.floorDiv(gy, size); ty * size < gy + height; ty++) {
+                for (long tx = Math.floorDiv(gx, size); tx * size < gx + width; tx++) {
+                    // The part of the tile inside the frame, in frame pixels
+                    int xa = (int) Math.max(0, tx * size - gx);
+                    int ya = (int) Math.max(0, ty * size - gy);
+                    int xb = (int) Math.min(width, (tx + 1) * size - gx);
+                    int yb = (int) Math.min(height, (ty + 1) * size - gy);
+
+                    int[] tile = tileCache.get(new TileCache.Key(view, level, tx, ty, precision));
+                    if (tile == null) {
+                        missing.add(new Rectangle(xa, ya, xb - xa, yb - ya));
+                        continue;
+                    }
+                    int tileX = (int) (gx + xa - tx * size);
+                    int tileY = (int) (gy + ya - ty * size);
+                    for (int y = ya; y < yb; y++) {
+                        System.arraycopy(tile, tileX + (tileY + y - ya) * size, iterations, xa + y * width, xb - xa);
+                    }
+                    palette.color(iterations, pixels, width, xa, ya, xb, yb);
+                    stats.recordReusedPixels((long) (xb - xa) * (yb - ya));
                 }
+            }
+            return missing;
+        }
 
-                // Wait for all threads to finish
-                try {
-                    for (Future<Void> future : futures) {
-                        future.get();
+        /**
+         * Stores the tiles that lie completely inside this frame in the tile cache.
+         *
+         * @param precision The precision tier the frame was iterated in.
+         */
+        private void cacheTiles(PrecisionTier precision) {
+            if (!isCacheable()) {
+                return;
+            }
+            final int size = TileCache.TILE_SIZE;
+            int width = view.getWidth();
+            long gx = gridX();
+            long gy = gridY();
+            for (long ty = Math.floorDiv(gy + size - 1, size); (ty + 1) * size <= gy + view.getHeight(); ty++) {
+                for (long tx = Math.floorDiv(gx + size - 1, size); (tx + 1) * size <= gx + width; tx++) {
+                    TileCache.Key key = new TileCache.Key(view, level, tx, ty, precision);
+                    if (tileCache.contains(key)) {
+                        continue;
                     }
-                } catch (InterruptedException | ExecutionException e) {
-                    e.printStackTrace();
+                    int[] tile = new int[size * size];
+                    int xa = (int) (tx * size - gx);
+                    int ya = (int) (ty * size - gy);
+                    for (int row = 0; row < size; row++) {
+                        System.arraycopy(iterations, xa + (ya + row) * width, tile, row * size, size);
+                    }
+                    tileCache.put(key, tile);
                 }
+            }
+        }
+
+        /**
+         * Cancels the worker. Tiles that are still running notice the new generation and return early.
+         */
+        void cancelRender() {
+            cancel(true);
+        }
 
+        @Override
+        protected Void doInBackground() throws Exception {
+            if (started.getAndSet(true)) {
+                // Cancelled before it started; done() released the buffers.
                 return null;
             }
+            try {
+                render();
+            } finally {
+                releaseRender();
+            }
+            return null;
+        }
 
-            @Override
-            protected void process(List<Integer> chunks) {
-                if (progressBar != null) {
-                    int latestProgress = chunks.get(chunks.size() - 1);
-                    progressBar.setValue(latestProgress);
+        private void render() {
+            RenderEvents.FrameEvent event = RenderEvents.beginFrame();
+            final int[] pixels = buffer.getPixels();
+            final int width = view.getWidth();
+            final InteriorStats interiorStats = new InteriorStats();
+
+            TileStats stats = new TileStats(width, view.getHeight(), engine.getScheduler().getParallelism());
+            boolean limitChanged = previous != null && previous.view.getMaxIterations() != view.getMaxIterations();
+            if (limitChanged && view.getMaxIterations() <= previous.checkpoint.getMaxIterations()) {
+                kernel = previous.kernel;
+                reclassify(palette, pixels, stats);
+            } else {
+                PrecisionTier precision = PrecisionTier.select(view, options);
+                checkpoint = new OrbitCheckpoint(precision, view.getMaxIterations(), width, view.getHeight(),
+                        CHECKPOINT_BYTES);
+                checkpointCounts = iterations;
+                checkpointFractions = fractions;
+                kernel = precision.createKernel(view, options, interiorStats, checkpoint,
+                        fractions == null ? null : new EscapeFractions(fractions, width, view.getHeight()));
+                if (limitChanged && !previous.checkpoint.isDropped()) {
+                    // Only the orbits that reached the lower limit are iterated further.
+                    ResumeRenderer renderer = new ResumeRenderer(kernel, previous.checkpoint,
+                            previous.checkpointCounts, previous.checkpointFractions, checkpoint, palette, iterations,
+                            fractions, pixels, width);
+                    await(engine.getScheduler().submit(width, view.getHeight(), 1, renderer,
+                            () -> isStale(generation), stats), stats);
+                } else {
+                    // A checkpoint that went over its budget has no orbits, so the frame is rendered from scratch.
+                    List<Rectangle> regions = previous != null && !limitChanged
+                            ? reusePrevious(palette, pixels, stats)
+                            : reuseCached(precision, palette, pixels, stats);
+                    if (stats.getReusedPixels() == 0 && progressive && !options.hasRectangleFill()) {
+                        stats = renderPasses(kernel, palette, pixels);
+                    } else {
+                        FrameRenderer renderer = new FrameRenderer(kernel, palette, iterations, fractions, pixels,
+                                width, options.hasRectangleFill(), stats);
+                        await(engine.getScheduler().submit(regions, renderer.getBandHeight(), renderer,
+                                () -> isStale(generation), stats), stats);
+                    }
                 }
             }
 
-            @Override
-            protected void done() {
-                isComputing = false;
-                if (progressBar != null) {
-                    progressBar.setValue(100);
+            if (mode == ColoringMode.HISTOGRAM && !isStale(generation)) {
+                // The histogram needs every count, so the frame is recolored once they are all known.
+                framePalette = engine.equalize(color, iterations, width, view.getHeight(), view.getMaxIterations());
+                engine.color(framePalette, iterations, pixels, width, view.getHeight());
+            }
+
+            stats.finish();
+            if (!isStale(generation)) {
+                RenderEvents.endFrame(event, view, kernel, stats);
+                PrecisionTier precision = kernel.getPrecision();
+                if (lastPrecision != null && precision != lastPrecision) {
+                    RenderEvents.switchPrecision(lastPrecision, precision, view);
+                }
+                cacheTiles(precision);
+                lastTileStats = stats;
+                lastPrecision = precision;
+                if (kernel instanceof PerturbationKernel) {
+                    lastDeepZoomStats = ((PerturbationKernel) kernel).getStats();
+                } else if (kernel instanceof ExtendedPerturbationKernel) {
+                    lastDeepZoomStats = ((ExtendedPerturbationKernel) kernel).getStats();
+                } else {
+                    lastDeepZoomStats = null;
+                }
+                lastInteriorStats = options.hasInteriorShortcuts() && !precision.usesPerturbation()
+                        ? interiorStats : null;
+            }
+        }
+
+        /**
+         * Takes the counts of this frame from the checkpoint of the previous frame, whose limit is at
+         * least as high, without iterating any pixel: counts at or above the new limit become the new
+         * limit. The frame keeps the checkpoint, so that raising the limit again continues from there.
+         *
+         * @param palette The palette of this frame.
+         * @param pixels  The pixels of this frame.
+         * @param stats   The statistics to record the reused pixels in.
+         */
+        private void reclassify(Palette palette, int[] pixels, TileStats stats) {
+            final int limit = view.getMaxIterations();
+            int[] counts = previous.checkpointCounts;
+            for (int i = 0; i < iterations.length; i++) {
+                iterations[i] = Math.min(counts[i], limit);
+            }
+            float[] countFractions = previous.checkpointFractions;
+            if (fractions != null) {
+                // Only the fractions of the counts below the new limit are used.
+                System.arraycopy(countFractions, 0, fractions, 0, fractions.length);
+            }
+            engine.color(palette, iterations, fractions, pixels, view.getWidth(), view.getHeight());
+            stats.recordReusedPixels(iterations.length);
+            checkpoint = previous.checkpoint;
+            // The counts of a frame return to the pool with its buffer, so the checkpoint gets its own.
+            checkpointCounts = counts == previous.iterations ? counts.clone() : counts;
+            if (fractions != null) {
+                checkpointFractions = countFractions == previous.fractions ? countFractions.clone() : countFractions;
+            }
+        }
+
+        /**
+         * Renders the frame in progressive passes of decreasing step. Each pass reuses the samples of
+         * the one before, and once the first pass is done the frame is shown while it is refined.
+         *
+         * @return The statistics of all passes.
+         */
+        private TileStats renderPasses(PixelKernel kernel, Palette palette, int[] pixels) {
+            List<ProgressivePass> passes = new ArrayList<>();
+            long samples = 0;
+            for (int i = 0; i < PROGRESSIVE_STEPS.length; i++) {
+                ProgressivePass pass = new ProgressivePass(kernel, palette, iterations, fractions, pixels,
+                        view.getWidth(), view.getHeight(), PROGRESSIVE_STEPS[i], i > 0);
+                passes.add(pass);
+                samples += (long) pass.getColumns() * pass.getRows();
+            }
+
+            TileStats stats = new TileStats(samples, engine.getScheduler().getParallelism());
+            for (ProgressivePass pass : passes) {
+                await(engine.getScheduler().submit(pass.getColumns(), pass.getRows(), 1, pass,
+                        () -> isStale(generation), stats), stats);
+                if (isStale(generation)) {
+                    break;
                 }
+                previewReady = true;
+                publish((int) (stats.getProgress() * 100));
+            }
+            return stats;
+        }
+
+        /**
+         * Waits for rendering tasks, publishing the progress of completed pixels until they are done or
+         * the generation is superseded.
+         */
+        private void await(ForkJoinTask<Void> task, TileStats stats) {
+            try {
+                while (!isStale(generation)) {
+                    try {
+                        task.get(PROGRESS_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                        break;
+                    } catch (TimeoutException e) {
+                        publish((int) (stats.getProgress() * 100));
+                    }
+                }
+            } catch (CancellationException | InterruptedException e) {
+                // Superseded by a newer generation.
+            } catch (ExecutionException e) {
+                e.printStackTrace();
+            }
+            // Tiles notice a stale generation within a band, and must stop before the buffer is reused.
+            task.quietlyJoin();
+        }
+
+        @Override
+        protected void process(List<Integer> chunks) {
+            if (isStale(generation)) {
+                return;
+            }
+            if (progressBar != null) {
+                int latestProgress = chunks.get(chunks.size() - 1);
+                progressBar.setValue(latestProgress);
+            }
+            if (previewReady) {
+                // Show the preview, including the parts of the next pass that are already refined.
+                show(buffer);
                 repaint();
             }
-        };
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled() || isStale(generation)) {
+                if (!started.getAndSet(true)) {
+                    // doInBackground never ran, so the rendering references are released here.
+                    releaseRender();
+                }
+                buffer.release();
+                return;
+            }
+
+            show(buffer);
+            // The screen takes over the reference of done().
+            if (displayedFrame != null) {
+                displayedFrame.buffer.release();
+            }
+            displayedFrame = this;
+            if (!color.equals(colorScheme.getColor()) || mode != coloringMode) {
+                // The colors changed while the frame was computing.
+                recolorFractal();
+            } else {
+                MandelbrotPanel.this.palette = framePalette;
+            }
+            if (progressBar != null) {
+                progressBar.setValue(100);
+                if (lastTileStats != null) {
+                    String summary = lastPrecision + " precision; " + lastTileStats;
+                    if (lastDeepZoomStats != null) {
+                        summary += "; " + lastDeepZoomStats;
+                    }
+                    if (lastInteriorStats != null) {
+                        summary += "; " + lastInteriorStats;
+                    }
+                    summary += "; " + checkpoint + "; " + tileCache + "; " + framePool;
+                    progressBar.setToolTipText(summary);
+                }
+            }
+            repaint();
+        }
+    }
 
-        worker.execute();
+    /**
+     * Captures the current view settings for a render of the given size.
+     *
+     * @param width  The width of the render.
+     * @param height The height of the render.
+     * @return The view snapshot.
+     */
+    private FractalView snapshotView(int width, int height) {
+        return new FractalView(fractalType, zoomFactor, zoomExponent, exactOffsetX, exactOffsetY, juliaCReal,
+                juliaCImag, maxIterations, width, height);
+    }
+
+    /**
+     * Pans the view by whole pixels and renders it. Only the strips of the new view that were not
+     * visible before are computed; the rest of the frame is copied from the displayed image.
+     *
+     * @param dx The number of pixels to move the view right.
+     * @param dy The number of pixels to move the view down.
+     */
+    void panPixels(int dx, int dy) {
+        if (zoomLevel != pixelGridZoomLevel) {
+            // Pixels of another zoom level are a different grid.
+            pixelGridZoomLevel = zoomLevel;
+            pixelGridEpoch++;
+        }
+        moveCenter(dx, dy);
+        pixelOriginX += dx;
+        pixelOriginY += dy;
+        computeFractal();
+    }
+
+    /**
+     * Moves the center of the view by a number of pixels. The exact center is updated with enough digits
+     * for the current zoom, so that panning stays accurate when the distance is far below the precision
+     * of the center, or below the range of a double.
+     *
+     * @param dx The number of pixels to move along the real axis.
+     * @param dy The number of pixels to move along the imaginary axis.
+     */
+    private void moveCenter(int dx, int dy) {
+        MathContext mc = new MathContext(ReferenceOrbit.precisionFor(zoomFactor, zoomExponent));
+        BigDecimal deltaX = new BigDecimal(dx / zoomFactor);
+        BigDecimal deltaY = new BigDecimal(dy / zoomFactor);
+        if (zoomExponent > 0) {
+            BigDecimal scale = new BigDecimal(BigInteger.ONE.shiftLeft(zoomExponent));
+            deltaX = deltaX.divide(scale, mc);
+            deltaY = deltaY.divide(scale, mc);
+        }
+        exactOffsetX = exactOffsetX.add(deltaX, mc);
+        exactOffsetY = exactOffsetY.add(deltaY, mc);
+        offsetX = exactOffsetX.doubleValue();
+        offsetY = exactOffsetY.doubleValue();
     }
 
     @Override
@@ -321,6 +1082,70 @@ public class MandelbrotPanel extends JPanel {
         if (fractalImage != null) {
             graphics.drawImage(fractalImage, 0, 0, null);
         }
+        TileStats stats = lastTileStats;
+        if (metricsOverlayEnabled && stats != null) {
+            paintMetrics((Graphics2D) graphics, stats);
+        }
+    }
+
+    /**
+     * Draws the metrics of a frame in a translucent box in the top left corner, with a bar for the busy
+     * time of every worker relative to the wall time of the frame.
+     *
+     * @param graphics The graphics to draw with.
+     * @param stats    The statistics of the frame.
+     */
+    private void paintMetrics(Graphics2D graphics, TileStats stats) {
+        long wall = Math.max(1, stats.getWallNanos());
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("frame     %8.1f ms", wall / 1e6));
+        lines.add(String.format("precision %8s", lastPrecision));
+        lines.add(String.format("iterations %7.1f M  %8.1f M/s", stats.getTotalIterations() / 1e6,
+                stats.getIterationsPerSecond() / 1e6));
+        lines.add(String.format("tiles     %8d    %d splits", stats.getTiles().size(), stats.getSplitCount()));
+        lines.add(String.format("tile time %8.2f ms median, %.2f p90, %.2f max",
+                stats.getTileNanosPercentile(50) / 1e6, stats.getTileNanosPercentile(90) / 1e6,
+                stats.getTileNanosPercentile(100) / 1e6));
+        lines.add(String.format("queue wait %7.2f ms mean, %.2f max", stats.getMeanQueueWaitNanos() / 1e6,
+                stats.getMaxQueueWaitNanos() / 1e6));
+        lines.add(String.format("imbalance %8.2f", stats.getImbalance()));
+        List<Map.Entry<String, Long>> workers = new ArrayList<>(stats.getWorkerBusyNanos().entrySet());
+        workers.sort(Map.Entry.comparingByKey());
+
+        graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        graphics.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        FontMetrics metrics = graphics.getFontMetrics();
+        int lineHeight = metrics.getHeight();
+        int barWidth = 120;
+        int width = barWidth;
+        for (String line : lines) {
+            width = Math.max(width, metrics.stringWidth(line));
+        }
+        int height = (lines.size() + workers.size()) * lineHeight;
+
+        graphics.setColor(new Color(0, 0, 0, 170));
+        graphics.fillRect(8, 8, width + 16, height + 12);
+        graphics.setColor(Color.WHITE);
+        int y = 14 + metrics.getAscent();
+        for (String line : lines) {
+            graphics.drawString(line, 16, y);
+            y += lineHeight;
+        }
+        for (Map.Entry<String, Long> worker : workers) {
+            // The part of the wall time the worker spent rendering tiles
+            double busy = Math.min(1.0, worker.getValue() / (double) wall);
+            String name = worker.getKey();
+            graphics.drawString(String.format("worker %-3s %3.0f%%", name.substring(name.lastIndexOf('-') + 1),
+                    busy * 100), 16, y);
+            int barX = 16 + width - barWidth;
+            int barY = y - metrics.getAscent() + 2;
+            graphics.setColor(new Color(80, 200, 120));
+            graphics.fillRect(barX, barY, (int) (barWidth * busy), lineHeight - 4);
+            graphics.setColor(Color.GRAY);
+            graphics.drawRect(barX, barY, barWidth, lineHeight - 4);
+            graphics.setColor(Color.WHITE);
+            y += lineHeight;
+        }
     }
 
     /**
@@ -333,64 +1158,84 @@ public class MandelbrotPanel extends JPanel {
     public BufferedImage renderFractalImage(int width, int height) {
         BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
         final int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        final FractalView view = snapshotView(width, height);
+        Color color = colorScheme.getColor();
+        int[] iterations = new int[width * height];
+        ColoringMode mode = coloringMode == ColoringMode.HISTOGRAM ? ColoringMode.LOGARITHMIC : coloringMode;
+        engine.render(view, getRenderOptions(), new Palette(color, view.getMaxIterations(), mode), iterations, pixels,
+                () -> false);
+        if (coloringMode == ColoringMode.HISTOGRAM) {
+            // The image is in memory, so it is equalized on its own counts.
+            engine.color(engine.equalize(color, iterations, width, height, view.getMaxIterations()), iterations,
+                    pixels, width, height);
+        }
+        return image;
+    }
 
-        List<Future<Void>> futures = new ArrayList<>(height);
-        for (int y = 0; y < height; y++) {
-            final int currentY = y;
-
-            // Submit a task to the executor service to calculate the pixels for the current row
-            futures.add(executorService.submit(() -> {
-                for (int x = 0; x < width; x++) {
-                    double zx, zy, cX, cY;
-                    if (fractalType == FractalType.MANDELBROT) {
-                        zx = 0;
-                        zy = 0;
-                        cX = (x - width / 2.0) / zoom + offsetX;
-                        cY = (currentY - height / 2.0) / zoom + offsetY;
-                    } else { // Julia
-                        zx = (x - width / 2.0) / zoom + offsetX;
-                        zy = (currentY - height / 2.0) / zoom + offsetY;
-                        cX = juliaCReal;
-                        cY = juliaCImag;
-                    }
+    /**
+     * Renders the fractal at the given size and writes it as a PNG, strip by strip. Unlike
+     * {@link #renderFractalImage(int, int)} the image is never in memory as a whole, so its size is
+     * only limited by the PNG format.
+     *
+     * @param width  The width of the image.
+     * @param height The height of the image.
+     * @param out    The stream to write the PNG to. It is not closed.
+     * @throws IOException If the stream cannot be written.
+     */
+    public void exportFractalImage(int width, int height, OutputStream out) throws IOException {
+        final FractalView view = snapshotView(width, height);
+        Palette palette = engine.exportPalette(view, getRenderOptions(), colorScheme.getColor(), coloringMode);
+        engine.export(view, getRenderOptions(), palette, null, out, () -> false, rows -> {
+        });
+    }
 
-                    int iter = 0;
+    /**
+     * Queues an export of the fractal at the given size as a PNG. The current view is captured right away,
+     * while the image is rendered in the background on the export queue, after any exports queued before.
+     *
+     * @param file          The file to write the PNG to.
+     * @param width         The width of the image.
+     * @param height        The height of the image.
+     * @param supersampling The anti-aliasing of the image, or null to take one sample per pixel.
+     * @return The job, to follow its progress or cancel it.
+     */
+    public ExportJob queueExport(File file, int width, int height, Supersampling supersampling) {
+        FractalView view = snapshotView(width, height);
+        return exportQueue.submit(file, view, getRenderOptions(), colorScheme.getColor(), coloringMode,
+                supersampling);
+    }
 
-                    while (zx * zx + zy * zy < 4 && iter < maxIterations) {
-                        double tmp = zx * zx - zy * zy + cX;
-                        zy = 2.0 * zx * zy + cY;
-                        zx = tmp;
-                        iter++;
-                    }
+    /**
+     * Gets the render options of the check boxes, as a snapshot for one render. These are the options
+     * of exports and saved images, which are always iterated in double precision or better.
+     *
+     * @return The current render options.
+     */
+    public RenderOptions getRenderOptions() {
+        return new RenderOptions(deepZoomEnabled, interiorShortcutsEnabled, rectangleFillEnabled);
+    }
 
-                    if (iter == maxIterations) {
-                        // Set the pixel to black for points inside the set
-                        pixels[x + currentY * width] = 0;
-                    } else {
-                        // Use the selected color scheme for points outside the set
-                        Color color = colorScheme.getColor();
-                        int colorValue = (int) (255.0 * iter / maxIterations);
-                        int r = color.getRed() * colorValue / 255;
-                        int g = color.getGreen() * colorValue / 255;
-                        int b = color.getBlue() * colorValue / 255;
-                        int rgb = (r << 16) | (g << 8) | b;
-                        pixels[x + currentY * width] = rgb;
-                    }
-                }
-                return null;
-            }));
-        }
+    /**
+     * Gets the render options of the frames on screen, which may be iterated in single precision at
+     * low zoom.
+     *
+     * @return The current render options of a frame.
+     */
+    private RenderOptions getFrameOptions() {
+        return new RenderOptions(deepZoomEnabled, interiorShortcutsEnabled, rectangleFillEnabled, true);
+    }
 
-        // Wait for all threads to finish
-        try {
-            for (Future<Void> future : futures) {
-                future.get();
-            }
-        } catch (InterruptedException | ExecutionException e) {
-            e.printStackTrace();
-        }
+    public ExportQueue getExportQueue() {
+        return exportQueue;
+    }
 
-        return image;
+    /**
+     * Gets the tile statistics of the most recent render of the panel.
+     *
+     * @return The tile statistics, or null if nothing has been rendered yet.
+     */
+    public TileStats getLastTileStats() {
+        return lastTileStats;
     }
 
     /**
@@ -407,78 +1252,42 @@ public class MandelbrotPanel extends JPanel {
         inputMap.put(KeyStroke.getKeyStroke('+'), "zoomIn");
         inputMap.put(KeyStroke.getKeyStroke('-'), "zoomOut");
 
-        actionMap.put("panLeft", new PanAction(-10 / zoom, 0));
-        actionMap.put("panRight", new PanAction(10 / zoom, 0));
-        actionMap.put("panUp", new PanAction(0, -10 / zoom));
-        actionMap.put("panDown", new PanAction(0, 10 / zoom));
-        actionMap.put("zoomIn", new ZoomAction(1.1));
-        actionMap.put("zoomOut", new ZoomAction(1 / 1.1));
-    }
-
-    // Fractal type
-    public enum FractalType {
-        MANDELBROT,
-        JULIA;
-
-        @Override
-        public String toString() {
-            return name().toLowerCase();
-        }
-    }
-
-    // The color schemes that can be used to color the fractal.
-    public enum ColorScheme {
-        RED(Color.RED),
-        BLUE(Color.BLUE),
-        GREEN(Color.GREEN),
-        PURPLE(new Color(128, 0, 128)),
-        ORANGE(new Color(255, 165, 0));
-
-        private final Color color;
-
-        ColorScheme(Color color) {
-            this.color = color;
-        }
-
-        public Color getColor() {
-            return color;
-        }
-
-        @Override
-        public String toString() {
-            return name().toLowerCase();
-        }
+        actionMap.put("panLeft", new PanAction(-10, 0));
+        actionMap.put("panRight", new PanAction(10, 0));
+        actionMap.put("panUp", new PanAction(0, -10));
+        actionMap.put("panDown", new PanAction(0, 10));
+        actionMap.put("zoomIn", new ZoomAction(1));
+        actionMap.put("zoomOut", new ZoomAction(-1));
     }
 
     private class PanAction extends AbstractAction {
 
-        private final double dx;
-        private final double dy;
+        // The pan distance in pixels, so that it is the same on screen at every zoom
+        private final int dx;
+        private final int dy;
 
-        public PanAction(double dx, double dy) {
+        public PanAction(int dx, int dy) {
             this.dx = dx;
             this.dy = dy;
         }
 
         @Override
         public void actionPerformed(ActionEvent e) {
-            offsetX -= dx;
-            offsetY -= dy;
-            computeFractal();
+            panPixels(-dx, -dy);
         }
     }
 
     private class ZoomAction extends AbstractAction {
 
-        private final double factor;
+        private final int levels;
 
-        public ZoomAction(double factor) {
-            this.factor = factor;
+        public ZoomAction(int levels) {
+            this.levels = levels;
         }
 
         @Override
         public void actionPerformed(ActionEvent e) {
-            zoom *= factor;
+            setZoomLevel(zoomLevel + levels);
             computeFractal();
         }
     }
@@ -21,7 +21,7 @@
  * scheme, multithreading, multi-threading, Swing, JFrame, JPanel, ExecutorService, Executors, Future, Dark Mode, Dark
  * @license MIT License
  * @see MandelbrotPanel
- * @see MandelbrotPanel.ColorScheme
+ * @see ColorScheme
  * @see <a href="https://en.wikipedia.org/wiki/Mandelbrot_set">Mandelbrot Set</a>
  * @see <a href="https://en.wikipedia.org/wiki/Complex_number">Complex Number</a>
  * @see <a href="https://en.wikipedia.org/wiki/Fractal">Fractal</a>
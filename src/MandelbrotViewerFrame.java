@@ -1,12 +1,15 @@
-import javax.imageio.ImageIO;
 import javax.swing.*;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.*;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
-import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 
 public class MandelbrotViewerFrame extends JFrame {
 
@@ -14,9 +17,26 @@ public class MandelbrotViewerFrame extends JFrame {
     private static final int MIN_ITERATIONS = 25;
     private static final int MAX_ITERATIONS = 5000;
     private static final int INITIAL_ITERATIONS = 250;
+    // Where the disk cache keeps its tiles, and how much space it may use
+    private static final Path TILE_STORE_DIRECTORY = Paths.get(System.getProperty("user.home"), ".mandelbrot-viewer", "tiles");
+    private static final long TILE_STORE_CAP_BYTES = 512L << 20;
+
+    // How often the progress of the exports is shown, in milliseconds
+    private static final int EXPORT_REFRESH_MILLIS = 250;
+    // Neighbouring pixels whose iteration counts differ by more than this are anti-aliased
+    private static final int SUPERSAMPLING_THRESHOLD = 2;
 
     // The color schemes that can be used to color the fractal.
-    private static final MandelbrotPanel.ColorScheme[] COLOR_SCHEMES = MandelbrotPanel.ColorScheme.values();
+    private static final ColorScheme[] COLOR_SCHEMES = ColorScheme.values();
+
+    // The exports that were started from this window and have not been reported as finished
+    private final List<ExportJob> exportJobs = new ArrayList<>();
+    // Shows the progress of the running export, while there is one
+    private final JPanel exportPanel = new JPanel(new BorderLayout(5, 0));
+    private final JLabel exportLabel = new JLabel();
+    private final JProgressBar exportProgressBar = new JProgressBar(0, 100);
+    private final JButton cancelExportButton = new JButton("Cancel export");
+    private final Timer exportTimer = new Timer(EXPORT_REFRESH_MILLIS, e -> updateExports());
 
     public MandelbrotViewerFrame() {
         // Set the look and feel
@@ -57,11 +77,11 @@ public class MandelbrotViewerFrame extends JFrame {
         controlPanel.setBackground(background);
 
         // Fractal type combo box
-        JComboBox<MandelbrotPanel.FractalType> fractalTypeComboBox = new JComboBox<>(MandelbrotPanel.FractalType.values());
+        JComboBox<FractalType> fractalTypeComboBox = new JComboBox<>(FractalType.values());
         fractalTypeComboBox.setBackground(accent);
         fractalTypeComboBox.setForeground(accentForeground);
         fractalTypeComboBox.addActionListener(e -> {
-            MandelbrotPanel.FractalType fractalType = (MandelbrotPanel.FractalType) fractalTypeComboBox.getSelectedItem();
+            FractalType fractalType = (FractalType) fractalTypeComboBox.getSelectedItem();
             fractalPanel.setFractalType(fractalType);
         });
         controlPanel.add(new JLabel("Fractal type: "));
@@ -92,25 +112,90 @@ public class MandelbrotViewerFrame extends JFrame {
         controlPanel.add(juliaParamsPanel);
 
         // Color scheme combo box
-        JComboBox<MandelbrotPanel.ColorScheme> colorSchemeComboBox = createColorSchemeComboBox(fractalPanel);
+        JComboBox<ColorScheme> colorSchemeComboBox = createColorSchemeComboBox(fractalPanel);
         controlPanel.add(new JLabel("Color scheme: "));
         colorSchemeComboBox.setBackground(accent);
         colorSchemeComboBox.setForeground(accentForeground);
         controlPanel.add(colorSchemeComboBox);
 
-        // Create the button to save the image.
-        JButton saveButton = new JButton("Save");
-        saveButton.setBackground(accent);
-        saveButton.setForeground(accentForeground);
-
-        saveButton.addActionListener(e -> {
+        // Coloring mode combo box
+        JComboBox<ColoringMode> coloringComboBox = new JComboBox<>(ColoringMode.values());
+        coloringComboBox.setToolTipText("How the colors are spread over the iteration counts; smooth coloring"
+                + " blends away the bands, histogram equalization keeps high iteration limits from turning dark");
+        coloringComboBox.addActionListener(e ->
+                fractalPanel.setColoringMode((ColoringMode) coloringComboBox.getSelectedItem()));
+        controlPanel.add(new JLabel("Coloring: "));
+        coloringComboBox.setBackground(accent);
+        coloringComboBox.setForeground(accentForeground);
+        controlPanel.add(coloringComboBox);
+
+        // Deep zoom check box
+        JCheckBox deepZoomCheckBox = new JCheckBox("Deep zoom", true);
+        deepZoomCheckBox.setBackground(background);
+        deepZoomCheckBox.setForeground(foreground);
+        deepZoomCheckBox.setToolTipText("Use perturbation to render zooms beyond the precision of a double, "
+                + "instead of the slower double-double arithmetic");
+        deepZoomCheckBox.addActionListener(e -> fractalPanel.setDeepZoomEnabled(deepZoomCheckBox.isSelected()));
+        controlPanel.add(deepZoomCheckBox);
+
+        // Rectangle fill check box
+        JCheckBox rectangleFillCheckBox = new JCheckBox("Rectangle fill", false);
+        rectangleFillCheckBox.setBackground(background);
+        rectangleFillCheckBox.setForeground(foreground);
+        rectangleFillCheckBox.setToolTipText("Only iterate the borders of rectangles and fill uniform ones");
+        rectangleFillCheckBox.addActionListener(e -> fractalPanel.setRectangleFillEnabled(rectangleFillCheckBox.isSelected()));
+        controlPanel.add(rectangleFillCheckBox);
+
+        // Interior shortcuts check box
+        JCheckBox interiorCheckBox = new JCheckBox("Interior shortcuts", true);
+        interiorCheckBox.setBackground(background);
+        interiorCheckBox.setForeground(foreground);
+        interiorCheckBox.setToolTipText("Detect points inside the set without iterating them to the limit");
+        interiorCheckBox.addActionListener(e -> fractalPanel.setInteriorShortcutsEnabled(interiorCheckBox.isSelected()));
+        controlPanel.add(interiorCheckBox);
+
+        // Progressive rendering check box
+        JCheckBox progressiveCheckBox = new JCheckBox("Progressive", true);
+        progressiveCheckBox.setBackground(background);
+        progressiveCheckBox.setForeground(foreground);
+        progressiveCheckBox.setToolTipText("Show coarse previews of every frame while it is computing");
+        progressiveCheckBox.addActionListener(e -> fractalPanel.setProgressiveEnabled(progressiveCheckBox.isSelected()));
+        controlPanel.add(progressiveCheckBox);
+
+        // Disk cache check box
+        JCheckBox diskCacheCheckBox = new JCheckBox("Disk cache", false);
+        diskCacheCheckBox.setBackground(background);
+        diskCacheCheckBox.setForeground(foreground);
+        diskCacheCheckBox.setToolTipText("Keep rendered tiles in " + TILE_STORE_DIRECTORY + " between sessions");
+        diskCacheCheckBox.addActionListener(e -> {
+            if (!diskCacheCheckBox.isSelected()) {
+                fractalPanel.setDiskTileStore(null);
+                return;
+            }
             try {
-                saveImage(fractalPanel);
+                fractalPanel.setDiskTileStore(new DiskTileStore(TILE_STORE_DIRECTORY, TILE_STORE_CAP_BYTES));
             } catch (IOException ex) {
                 ex.printStackTrace();
-                JOptionPane.showMessageDialog(this, "Error saving image.", "Error", JOptionPane.ERROR_MESSAGE);
+                diskCacheCheckBox.setSelected(false);
+                JOptionPane.showMessageDialog(this, "Error opening the tile store.", "Error", JOptionPane.ERROR_MESSAGE);
             }
         });
+        controlPanel.add(diskCacheCheckBox);
+
+        // Metrics overlay check box
+        JCheckBox metricsCheckBox = new JCheckBox("Metrics", false);
+        metricsCheckBox.setBackground(background);
+        metricsCheckBox.setForeground(foreground);
+        metricsCheckBox.setToolTipText("Show the timing of the last frame: iterations, tiles, queue wait and worker load");
+        metricsCheckBox.addActionListener(e -> fractalPanel.setMetricsOverlayEnabled(metricsCheckBox.isSelected()));
+        controlPanel.add(metricsCheckBox);
+
+        // Create the button to save the image.
+        JButton saveButton = new JButton("Save");
+        saveButton.setBackground(accent);
+        saveButton.setForeground(accentForeground);
+
+        saveButton.addActionListener(e -> saveImage(fractalPanel));
         controlPanel.add(saveButton);
 
         // Create the reset button.
@@ -143,6 +228,20 @@ public class MandelbrotViewerFrame extends JFrame {
         progressBar.setForeground(accent);
         fractalPanel.setProgressBar(progressBar);
 
+        // Export progress, with a button to cancel the running export
+        cancelExportButton.setBackground(accent);
+        cancelExportButton.setForeground(accentForeground);
+        cancelExportButton.addActionListener(e -> cancelExport());
+        exportLabel.setForeground(foreground);
+        exportProgressBar.setStringPainted(true);
+        exportProgressBar.setBackground(background);
+        exportProgressBar.setForeground(accent);
+        exportPanel.setBackground(background);
+        exportPanel.add(exportLabel, BorderLayout.WEST);
+        exportPanel.add(exportProgressBar, BorderLayout.CENTER);
+        exportPanel.add(cancelExportButton, BorderLayout.EAST);
+        exportPanel.setVisible(false);
+
         // Create the wrapper panel with margins.
         JPanel wrapperPanel = new JPanel(new BorderLayout(5, 5));
         wrapperPanel.setBackground(background);
@@ -156,6 +255,7 @@ public class MandelbrotViewerFrame extends JFrame {
         JPanel bottomPanel = new JPanel(new BorderLayout());
         bottomPanel.setBackground(background);
         bottomPanel.add(sliderPanel, BorderLayout.NORTH);
+        bottomPanel.add(exportPanel, BorderLayout.CENTER);
         bottomPanel.add(progressBar, BorderLayout.SOUTH);
 
         wrapperPanel.add(bottomPanel, BorderLayout.SOUTH);
@@ -181,11 +281,11 @@ public class MandelbrotViewerFrame extends JFrame {
      * @param panel The panel that displays the fractal.
      * @return The combo box.
      */
-    private JComboBox<MandelbrotPanel.ColorScheme> createColorSchemeComboBox(MandelbrotPanel panel) {
-        JComboBox<MandelbrotPanel.ColorScheme> comboBox = new JComboBox<>(COLOR_SCHEMES);
+    private JComboBox<ColorScheme> createColorSchemeComboBox(MandelbrotPanel panel) {
+        JComboBox<ColorScheme> comboBox = new JComboBox<>(COLOR_SCHEMES);
 
         comboBox.addActionListener(e -> {
-            MandelbrotPanel.ColorScheme colorScheme = (MandelbrotPanel.ColorScheme) comboBox.getSelectedItem();
+            ColorScheme colorScheme = (ColorScheme) comboBox.getSelectedItem();
             panel.setColorScheme(colorScheme);
         });
 
@@ -240,12 +340,12 @@ public class MandelbrotViewerFrame extends JFrame {
     }
 
     /**
-     * Saves the fractal image to a file.
+     * Asks for a file and an image size, and queues an export of the fractal image to that file. The
+     * image is rendered in the background while the window stays responsive.
      *
      * @param panel The panel that displays the fractal.
-     * @throws IOException If an error occurs while saving the image.
      */
-    private void saveImage(MandelbrotPanel panel) throws IOException {
+    private void saveImage(MandelbrotPanel panel) {
         // Create a file chooser.
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setFileFilter(new FileNameExtensionFilter("PNG Images", "png"));
@@ -257,13 +357,85 @@ public class MandelbrotViewerFrame extends JFrame {
             int imageWidth = Integer.parseInt(widthStr);
             int imageHeight = Integer.parseInt(heightStr);
 
+            // Prompt for anti-aliasing
+            Object[] choices = new Object[Supersampling.Pattern.values().length + 1];
+            choices[0] = "None";
+            System.arraycopy(Supersampling.Pattern.values(), 0, choices, 1, choices.length - 1);
+            Object choice = JOptionPane.showInputDialog(this, "Anti-aliasing of the edges:", "Save",
+                    JOptionPane.QUESTION_MESSAGE, null, choices, Supersampling.Pattern.ROTATED_GRID);
+            if (choice == null) {
+                return;
+            }
+            Supersampling supersampling = choice instanceof Supersampling.Pattern
+                    ? new Supersampling((Supersampling.Pattern) choice, SUPERSAMPLING_THRESHOLD) : null;
+
             // Save the image.
             File file = fileChooser.getSelectedFile();
 
-            BufferedImage image = panel.renderFractalImage(imageWidth, imageHeight);
+            // Render and write the image strip by strip in the background, after the exports already queued.
+            exportJobs.add(panel.queueExport(file, imageWidth, imageHeight, supersampling));
+            updateExports();
+            exportTimer.start();
+        }
+    }
+
+    /**
+     * Cancels the export that is currently running, or the next one to run.
+     */
+    private void cancelExport() {
+        for (ExportJob job : exportJobs) {
+            if (!job.isFinished() && !job.isCancelled()) {
+                job.cancel();
+                break;
+            }
+        }
+        updateExports();
+    }
+
+    /**
+     * Shows the progress of the exports, reports the ones that failed, and keeps the report of the last
+     * one that succeeded on display.
+     */
+    private void updateExports() {
+        List<ExportJob> failed = new ArrayList<>();
+        ExportJob saved = null;
+        for (Iterator<ExportJob> iterator = exportJobs.iterator(); iterator.hasNext(); ) {
+            ExportJob job = iterator.next();
+            if (job.isFinished()) {
+                iterator.remove();
+                if (job.getState() == ExportJob.State.FAILED) {
+                    failed.add(job);
+                } else if (job.getState() == ExportJob.State.DONE) {
+                    saved = job;
+                }
+            }
+        }
+
+        if (exportJobs.isEmpty()) {
+            exportTimer.stop();
+            cancelExportButton.setEnabled(false);
+            if (saved != null) {
+                exportLabel.setText("Saved " + saved);
+                exportLabel.setToolTipText(saved.getReport());
+                exportProgressBar.setValue(100);
+                exportProgressBar.setString(saved.getReport());
+            } else {
+                exportPanel.setVisible(false);
+            }
+        } else {
+            cancelExportButton.setEnabled(true);
+            exportProgressBar.setString(null);
+            ExportJob current = exportJobs.get(0);
+            int queued = exportJobs.size() - 1;
+            String status = current.getState() == ExportJob.State.QUEUED ? "Waiting to save " : "Saving ";
+            exportLabel.setText(status + current + (queued > 0 ? ", " + queued + " more queued" : ""));
+            exportProgressBar.setValue((int) Math.round(current.getProgress() * 100));
+            exportPanel.setVisible(true);
+        }
 
-            // Write the image to the file.
-            ImageIO.write(image, "png", file);
+        for (ExportJob job : failed) {
+            JOptionPane.showMessageDialog(this, "Error saving " + job.getFile().getName() + ".", "Error",
+                    JOptionPane.ERROR_MESSAGE);
         }
     }
 }
@@ -0,0 +1,164 @@
+/**
+ * Fills rectangles of a frame with the Mariani-Silver algorithm.
+ * <p>
+ * Only the border of a rectangle is iterated. Since the Mandelbrot set and connected Julia sets have
+ * no holes, a rectangle whose border has one uniform iteration count contains nothing else, and its
+ * inside is filled with that count without being computed. Otherwise the rectangle is cut in four
+ * along a middle row and column, which become the shared borders of the quarters. Large areas of the
+ * interior of the set, which cost the full iteration limit for every pixel, are filled almost for free.
+ */
+public final class MarianiSilver {
+
+    // Rectangles with at most this many inner pixels are computed directly instead of subdivided
+    private static final int MIN_INNER_AREA = 16;
+
+    private MarianiSilver() {
+    }
+
+    /**
+     * Fills the iteration counts of a rectangle.
+     *
+     * @param kernel     The kernel that iterates the pixels.
+     * @param iterations The iteration counts of the frame.
+     * @param stride     The width of a row in the iteration array.
+     * @param x0         The first column.
+     * @param y0         The first row.
+     * @param x1         The column after the last one.
+     * @param y1         The row after the last one.
+     * @param stats      The statistics to record the filled pixels in.
+     * @return The number of iterations performed.
+     */
+    public static long fill(PixelKernel kernel, int[] iterations, int stride, int x0, int y0, int x1, int y1,
+                            TileStats stats) {
+        if (x1 <= x0 || y1 <= y0) {
+            return 0;
+        }
+        int xb = x1 - 1;
+        int yb = y1 - 1;
+
+        long cost = computeRow(kernel, iterations, stride, y0, x0, xb);
+        if (yb > y0) {
+            cost += computeRow(kernel, iterations, stride, yb, x0, xb);
+        }
+        cost += computeColumn(kernel, iterations, stride, x0, y0 + 1, yb - 1);
+        if (xb > x0) {
+            cost += computeColumn(kernel, iterations, stride, xb, y0 + 1, yb - 1);
+        }
+
+        return cost + subdivide(kernel, iterations, stride, x0, y0, xb, yb, stats);
+    }
+
+    /**
+     * Fills the inside of a rectangle whose border has already been computed.
+     *
+     * @return The number of iterations performed.
+     */
+    private static long subdivide(PixelKernel kernel, int[] iterations, int stride, int xa, int ya, int xb, int yb,
+                                  TileStats stats) {
+        int innerWidth = xb - xa - 1;
+        int innerHeight = yb - ya - 1;
+        if (innerWidth <= 0 || innerHeight <= 0) {
+            return 0;
+        }
+
+        if (isBorderUniform(iterations, stride, xa, ya, xb, yb)) {
+            int value = iterations[xa + ya * stride];
+            for (int y = ya + 1; y < yb; y++) {
+                int row = y * stride;
+                for (int x = xa + 1; x < xb; x++) {
+                    iterations[x + row] = value;
+                }
+            }
+            stats.recordFilledPixels((long) innerWidth * innerHeight);
+            return 0;
+        }
+
+        if (innerWidth * innerHeight <= MIN_INNER_AREA) {
+            long cost = 0;
+            for (int y = ya + 1; y < yb; y++) {
+                cost += computeRow(kernel, iterations, stride, y, xa + 1, xb - 1);
+            }
+            return cost;
+        }
+
+        // Compute a middle row and column and recurse into the quarters they border.
+        int mx = (xa + xb) >>> 1;
+        int my = (ya + yb) >>> 1;
+        long cost = 0;
+        if (innerHeight >= 2) {
+            cost += computeRow(kernel, iterations, stride, my, xa + 1, xb - 1);
+        } else {
+            my = yb;
+        }
+        if (innerWidth >= 2) {
+            cost += computeColumn(kernel, iterations, stride, mx, ya + 1, yb - 1, my);
+        } else {
+            mx = xb;
+        }
+
+        cost += subdivide(kernel, iterations, stride, xa, ya, mx, my, stats);
+        if (mx < xb) {
+            cost += subdivide(kernel, iterations, stride, mx, ya, xb, my, stats);
+        }
+        if (my < yb) {
+            cost += subdivide(kernel, iterations, stride, xa, my, mx, yb, stats);
+            if (mx < xb) {
+                cost += subdivide(kernel, iterations, stride, mx, my, xb, yb, stats);
+            }
+        }
+        return cost;
+    }
+
+    /**
+     * Checks whether all border pixels of a rectangle have the same iteration count.
+     */
+    private static boolean isBorderUniform(int[] iterations, int stride, int xa, int ya, int xb, int yb) {
+        int value = iterations[xa + ya * stride];
+        int top = ya * stride;
+        int bottom = yb * stride;
+        for (int x = xa; x <= xb; x++) {
+            if (iterations[x + top] != value || iterations[x + bottom] != value) {
+                return false;
+            }
+        }
+        for (int y = ya + 1; y < yb; y++) {
+            int row = y * stride;
+            if (iterations[xa + row] != value || iterations[xb + row] != value) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Computes the pixels of a row between two columns, inclusive.
+     */
+    private static long computeRow(PixelKernel kernel, int[] iterations, int stride, int y, int xa, int xb) {
+        return kernel.iterateRow(y, xa, xb + 1, iterations, xa + y * stride);
+    }
+
+    /**
+     * Computes the pixels of a column between two rows, inclusive.
+     */
+    private static long computeColumn(PixelKernel kernel, int[] iterations, int stride, int x, int ya, int yb) {
+        return computeColumn(kernel, iterations, stride, x, ya, yb, -1);
+    }
+
+    /**
+     * Computes the pixels of a column between two rows, inclusive, except for one row that has already
+     * been computed.
+     */
+    private static long computeColumn(PixelKernel kernel, int[] iterations, int stride, int x, int ya, int yb,
+                                      int skipRow) {
+        long cost = 0;
+        for (int y = ya; y <= yb; y++) {
+            if (y == skipRow) {
+                continue;
+            }
+            int iter = kernel.iterate(x, y);
+            iterations[x + y * stride] = iter;
+            cost += iter;
+        }
+        return cost;
+    }
+}
@@ -0,0 +1,17 @@
+/**
+ * Computes the escape-time iteration count of arbitrary points near the center of a view, rather than
+ * of the pixels of its grid. This is used to sample the plane in other layouts, such as the log-polar
+ * grid of an exponential map.
+ */
+@FunctionalInterface
+public interface OffsetKernel {
+
+    /**
+     * Runs the escape-time iteration for a single point.
+     *
+     * @param dx The real part of the offset of the point from the center of the view.
+     * @param dy The imaginary part of the offset of the point from the center of the view.
+     * @return The number of iterations before the orbit escaped, or maxIterations if it did not.
+     */
+    int iterateOffset(double dx, double dy);
+}
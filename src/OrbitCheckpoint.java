@@ -0,0 +1,356 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The final orbit states of the pixels of a frame that reached the iteration limit, so that their orbits
+ * can be continued when the limit is raised instead of being iterated again from the start. Pixels that
+ * escape before the limit are final at any higher limit and need no state.
+ * <p>
+ * Pixels that reach the limit by iterating are recorded with their last orbit point. Pixels found to be
+ * periodic by the cycle detection are interior at any limit and only get a bit. Pixels resolved by the
+ * bulb tests, filled by rectangle fill or iterated by a kernel that cannot resume are not recorded and
+ * are iterated again from the start.
+ * <p>
+ * Every row keeps its orbits in three primitive arrays that grow as needed, 20 bytes per pixel, and its
+ * interior pixels in a bit set. Rows are created when their first pixel is recorded. The tiles of a row
+ * may record concurrently, so every row is locked while it is written, which costs nothing next to the
+ * iterations of a pixel that reached the limit.
+ * <p>
+ * A frame panned from an earlier one only records the pixels it exposed, and refers to the checkpoint
+ * of the earlier frame, at the pan offset, for the pixels the two have in common.
+ * <p>
+ * The checkpoint has a memory budget, which covers the checkpoints it refers to. When it exceeds the
+ * budget it drops all its orbits, and a higher limit is rendered from scratch.
+ */
+public final class OrbitCheckpoint {
+
+    // The capacity of a row when its first pixel is recorded
+    private static final int INITIAL_ROW_CAPACITY = 16;
+    // The bytes of one orbit: its column and the two parts of its last point
+    private static final int ORBIT_BYTES = Integer.BYTES + 2 * Double.BYTES;
+
+    private final PrecisionTier precision;
+    private final int maxIterations;
+    private final int width;
+    private final long budgetBytes;
+    // The rows, or null once the checkpoint went over its budget
+    private volatile AtomicReferenceArray<Row> rows;
+    // The memory of the rows and of the checkpoints this one refers to
+    private final AtomicLong bytes = new AtomicLong();
+    // The checkpoint of the frame this one was panned from, which holds the orbits of the common pixels
+    private OrbitCheckpoint base;
+    // Pixel (x, y) of this frame is pixel (x + baseX, y + baseY) of the base
+    private int baseX;
+    private int baseY;
+    // The common pixels, in the coordinates of this frame
+    private int commonX0;
+    private int commonY0;
+    private int commonX1;
+    private int commonY1;
+
+    /**
+     * Creates an empty checkpoint for a frame.
+     *
+     * @param precision     The precision tier of the kernel that records the orbits.
+     * @param maxIterations The iteration limit of the frame.
+     * @param width         The number of columns of the frame.
+     * @param height        The number of rows of the frame.
+     * @param budgetBytes   The memory the orbits may use, including those of the checkpoints this one
+     *                      refers to.
+     */
+    public OrbitCheckpoint(PrecisionTier precision, int maxIterations, int width, int height, long budgetBytes) {
+        this.precision = precision;
+        this.maxIterations = maxIterations;
+        this.width = width;
+        this.budgetBytes = budgetBytes;
+        this.rows = new AtomicReferenceArray<>(height);
+    }
+
+    /**
+     * Gets the precision tier of the orbit states, which can only be continued in the same tier.
+     *
+     * @return The precision tier.
+     */
+    public PrecisionTier getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Gets the iteration limit the orbit states belong to.
+     *
+     * @return The number of iterations every recorded orbit has done.
+     */
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    /**
+     * Records the state of a pixel whose orbit reached the iteration limit.
+     *
+     * @param x  The pixel column.
+     * @param y  The pixel row.
+     * @param zx The real part of the last orbit point.
+     * @param zy The imaginary part of the last orbit point.
+     */
+    public void record(int x, int y, double zx, double zy) {
+        Row row = row(y);
+        if (row != null) {
+            charge(row.add(x, zx, zy));
+        }
+    }
+
+    /**
+     * Records a pixel whose orbit was found to be periodic, and therefore never escapes.
+     *
+     * @param x The pixel column.
+     * @param y The pixel row.
+     */
+    public void recordInterior(int x, int y) {
+        Row row = row(y);
+        if (row != null) {
+            charge(row.addInterior(x, width));
+        }
+    }
+
+    /**
+     * Gets a row, creating it when its first pixel is recorded, or null if the checkpoint was dropped.
+     */
+    private Row row(int y) {
+        AtomicReferenceArray<Row> rows = this.rows;
+        if (rows == null) {
+            return null;
+        }
+        Row row = rows.get(y);
+        if (row == null) {
+            row = new Row();
+            if (!rows.compareAndSet(y, null, row)) {
+                row = rows.get(y);
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Adds memory to the checkpoint, and drops its orbits if that takes it over the budget.
+     */
+    private void charge(long added) {
+        if (added > 0 && bytes.addAndGet(added) > budgetBytes) {
+            rows = null;
+            base = null;
+        }
+    }
+
+    /**
+     * Checks whether the checkpoint went over its budget and dropped its orbits.
+     *
+     * @return Whether no orbit can be continued.
+     */
+    public boolean isDropped() {
+        return rows == null;
+    }
+
+    /**
+     * Gets the memory of the orbits, including those of the checkpoints this one refers to.
+     *
+     * @return The number of bytes.
+     */
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * Takes the orbits of the pixels a frame has in common with an earlier frame of the same limit that
+     * it was panned from, by referring to the checkpoint of the earlier frame instead of copying it. Pixel
+     * (x, y) of this frame is pixel (x + shiftX, y + shiftY) of the earlier one. The common pixels must not
+     * be recorded in this checkpoint, and the earlier checkpoint must not change any more. Its memory
+     * counts towards the budget of this checkpoint.
+     *
+     * @param from   The checkpoint of the earlier frame.
+     * @param shiftX The horizontal distance between the frames.
+     * @param shiftY The vertical distance between the frames.
+     * @param xa     The first column of the common pixels in this frame.
+     * @param ya     The first row of the common pixels in this frame.
+     * @param xb     The column after the common pixels.
+     * @param yb     The row after the common pixels.
+     */
+    public void inherit(OrbitCheckpoint from, int shiftX, int shiftY, int xa, int ya, int xb, int yb) {
+        if (from.isDropped()) {
+            return;
+        }
+        base = from;
+        baseX = shiftX;
+        baseY = shiftY;
+        commonX0 = xa;
+        commonY0 = ya;
+        commonX1 = xb;
+        commonY1 = yb;
+        charge(from.getBytes());
+    }
+
+    /**
+     * Continues the recorded orbits of a run of pixels in one row up to the higher limit of the kernel
+     * and of the checkpoint it records in, and sets the interior pixels to that limit, marking them in
+     * the other checkpoint too. Pixels of the run that were not recorded are left untouched, which is all
+     * of them once the checkpoint was dropped.
+     *
+     * @param kernel     The kernel of the new limit, in the precision tier of this checkpoint.
+     * @param target     The checkpoint the kernel records in.
+     * @param y          The pixel row.
+     * @param x0         The first column.
+     * @param x1         The column after the last one.
+     * @param iterations The array to store the iteration counts in.
+     * @param offset     The index in the array of the first column.
+     * @return The number of iterations done, which excludes the ones the checkpoint saved.
+     */
+    public long resumeRow(ResumableKernel kernel, OrbitCheckpoint target, int y, int x0, int x1, int[] iterations,
+                          int offset) {
+        return resumeRow(kernel, target, y, x0, x1, iterations, offset, 0, 0);
+    }
+
+    /**
+     * Continues the orbits of a run of pixels of this checkpoint for a frame in which pixel (x, y) of
+     * this checkpoint is pixel (x - dx, y - dy).
+     */
+    private long resumeRow(ResumableKernel kernel, OrbitCheckpoint target, int y, int x0, int x1,
+                           int[] iterations, int offset, int dx, int dy) {
+        AtomicReferenceArray<Row> rows = this.rows;
+        if (rows == null) {
+            return 0;
+        }
+        OrbitCheckpoint base = this.base;
+        long cost = 0;
+        if (base != null && y >= commonY0 && y < commonY1) {
+            int xa = Math.max(x0, commonX0);
+            int xb = Math.min(x1, commonX1);
+            if (xa < xb) {
+                cost += base.resumeRow(kernel, target, y + baseY, xa + baseX, xb + baseX, iterations,
+                        offset + xa - x0, dx + baseX, dy + baseY);
+            }
+        }
+        Row row = rows.get(y);
+        if (row == null) {
+            return cost;
+        }
+        int size;
+        int[] columns;
+        double[] real;
+        double[] imag;
+        long[] interior;
+        // The orbits are continued outside the lock, so that the tiles of a row do not wait for each other.
+        synchronized (row) {
+            size = row.size;
+            columns = row.columns;
+            real = row.real;
+            imag = row.imag;
+            interior = row.interior;
+        }
+        if (interior != null) {
+            for (int x = x0; x < x1; x++) {
+                if (isSet(interior, x)) {
+                    iterations[offset + x - x0] = target.maxIterations;
+                    target.recordInterior(x - dx, y - dy);
+                }
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            int x = columns[i];
+            if (x >= x0 && x < x1) {
+                int iter = kernel.resume(x - dx, y - dy, real[i], imag[i], maxIterations);
+                iterations[offset + x - x0] = iter;
+                cost += iter - maxIterations;
+            }
+        }
+        return cost;
+    }
+
+    private static boolean isSet(long[] bits, int x) {
+        return (bits[x >>> 6] & 1L << x) != 0;
+    }
+
+    /**
+     * Gets the number of recorded orbits, including those the checkpoints this one refers to hold for
+     * pixels that have since left the view.
+     *
+     * @return The number of pixels with a state.
+     */
+    public long size() {
+        AtomicReferenceArray<Row> rows = this.rows;
+        if (rows == null) {
+            return 0;
+        }
+        long size = base != null ? base.size() : 0;
+        for (int y = 0; y < rows.length(); y++) {
+            Row row = rows.get(y);
+            if (row != null) {
+                synchronized (row) {
+                    size += row.size;
+                }
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        if (isDropped()) {
+            return String.format("orbits at %d iterations dropped over %.1f MB", maxIterations,
+                    budgetBytes / 1048576.0);
+        }
+        return String.format("%d orbits kept at %d iterations (%.1f of %.1f MB)", size(), maxIterations,
+                getBytes() / 1048576.0, budgetBytes / 1048576.0);
+    }
+
+    /**
+     * The recorded pixels of one row: the orbits in the order they were recorded, and a bit for every
+     * interior pixel.
+     */
+    private static final class Row {
+
+        int[] columns;
+        double[] real;
+        double[] imag;
+        int size;
+        long[] interior;
+
+        /**
+         * Marks an interior pixel.
+         *
+         * @return The number of bytes the row grew by.
+         */
+        synchronized long addInterior(int x, int width) {
+            long grown = 0;
+            if (interior == null) {
+                interior = new long[(width + 63) >>> 6];
+                grown = (long) interior.length * Long.BYTES;
+            }
+            interior[x >>> 6] |= 1L << x;
+            return grown;
+        }
+
+        /**
+         * Adds an orbit.
+         *
+         * @return The number of bytes the row grew by.
+         */
+        synchronized long add(int x, double zx, double zy) {
+            long grown = 0;
+            if (columns == null) {
+                columns = new int[INITIAL_ROW_CAPACITY];
+                real = new double[INITIAL_ROW_CAPACITY];
+                imag = new double[INITIAL_ROW_CAPACITY];
+                grown = (long) INITIAL_ROW_CAPACITY * ORBIT_BYTES;
+            } else if (size == columns.length) {
+                columns = Arrays.copyOf(columns, size * 2);
+                real = Arrays.copyOf(real, size * 2);
+                imag = Arrays.copyOf(imag, size * 2);
+                grown = (long) size * ORBIT_BYTES;
+            }
+            columns[size] = x;
+            real[size] = zx;
+            imag[size] = zy;
+            size++;
+            return grown;
+        }
+    }
+}
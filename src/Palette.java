@@ -0,0 +1,240 @@
+import java.awt.Color;
+
+/**
+ * Maps iteration counts to pixel colors. Coloring is kept apart from iterating, so that a frame whose
+ * iteration counts are kept can be recolored with a different color scheme without computing a single
+ * orbit again.
+ * <p>
+ * The color of every possible count is computed once when the palette is created, which makes
+ * coloring a frame a single table lookup per pixel. This holds for all {@link ColoringMode}s: even a
+ * histogram-equalized palette is a table, built once per frame from the histogram of its counts. A
+ * smooth palette blends the colors of two neighbouring counts in the table instead.
+ */
+public final class Palette {
+
+    // The share of the way from the scheme color to white that the highest counts reach
+    private static final double WHITE_LIMIT = 0.75;
+
+    // The RGB value of every iteration count from 0 to maxIterations
+    private final int[] table;
+    // The colors a smooth palette blends between, which are the table with the top of the gradient in
+    // place of the black of the iteration limit; null for the other modes
+    private final int[] ramp;
+    private final Color color;
+    private final ColoringMode mode;
+
+    /**
+     * Creates a linear palette.
+     *
+     * @param color         The color of the color scheme.
+     * @param maxIterations The iteration limit of the view, whose points are colored black.
+     */
+    public Palette(Color color, int maxIterations) {
+        this(color, maxIterations, ColoringMode.LINEAR);
+    }
+
+    /**
+     * Creates a palette that does not depend on the counts of a frame.
+     *
+     * @param color         The color of the color scheme.
+     * @param maxIterations The iteration limit of the view, whose points are colored black.
+     * @param mode          The coloring mode, linear, logarithmic or smooth.
+     * @throws IllegalArgumentException If the mode is histogram, see {@link #equalized}.
+     */
+    public Palette(Color color, int maxIterations, ColoringMode mode) {
+        if (mode == ColoringMode.HISTOGRAM) {
+            throw new IllegalArgumentException("A histogram palette is built from the counts of a frame");
+        }
+        this.color = color;
+        this.mode = mode;
+        this.table = new int[maxIterations + 1];
+        if (mode == ColoringMode.LOGARITHMIC || mode == ColoringMode.SMOOTH) {
+            double scale = 1 / Math.log1p(maxIterations);
+            for (int iter = 0; iter < maxIterations; iter++) {
+                table[iter] = gradient(color, Math.log1p(iter) * scale);
+            }
+        } else {
+            for (int iter = 0; iter < maxIterations; iter++) {
+                // Use the selected color scheme for points outside the set
+                int colorValue = (int) (255.0 * iter / maxIterations);
+                int r = color.getRed() * colorValue / 255;
+                int g = color.getGreen() * colorValue / 255;
+                int b = color.getBlue() * colorValue / 255;
+                table[iter] = (r << 16) | (g << 8) | b;
+            }
+        }
+        if (mode == ColoringMode.SMOOTH) {
+            // The last escaped count blends towards the end of the gradient, not towards black
+            ramp = table.clone();
+            ramp[maxIterations] = gradient(color, 1);
+        } else {
+            ramp = null;
+        }
+        // Set the pixel to black for points inside the set
+        table[maxIterations] = 0;
+    }
+
+    private Palette(Color color, int[] table) {
+        this.color = color;
+        this.mode = ColoringMode.HISTOGRAM;
+        this.table = table;
+        this.ramp = null;
+    }
+
+    /**
+     * Creates a histogram-equalized palette: a count is colored by the share of the escaped pixels with
+     * a lower count, so the colors are spread evenly over the pixels of the frame.
+     *
+     * @param color     The color of the color scheme.
+     * @param histogram The number of pixels with each count, up to the iteration limit in the last bin.
+     * @return The palette.
+     * @see IterationHistogram
+     */
+    public static Palette equalized(Color color, int[] histogram) {
+        int maxIterations = histogram.length - 1;
+        long escaped = 0;
+        for (int iter = 0; iter < maxIterations; iter++) {
+            escaped += histogram[iter];
+        }
+        int[] table = new int[maxIterations + 1];
+        long below = 0;
+        for (int iter = 0; iter < maxIterations; iter++) {
+            // The middle of the range of the pixels with this count, so that a lone count is not black
+            double share = escaped == 0 ? 0 : (below + histogram[iter] / 2.0) / escaped;
+            table[iter] = gradient(color, share);
+            below += histogram[iter];
+        }
+        table[maxIterations] = 0;
+        return new Palette(color, table);
+    }
+
+    /**
+     * Interpolates from black to the scheme color and on towards white.
+     *
+     * @param color The color of the color scheme.
+     * @param t     The position in the gradient, from 0 to 1.
+     * @return The RGB value.
+     */
+    private static int gradient(Color color, double t) {
+        int r;
+        int g;
+        int b;
+        if (t < 0.5) {
+            double f = 2 * t;
+            r = (int) (color.getRed() * f);
+            g = (int) (color.getGreen() * f);
+            b = (int) (color.getBlue() * f);
+        } else {
+            double f = (2 * t - 1) * WHITE_LIMIT;
+            r = (int) (color.getRed() + (255 - color.getRed()) * f);
+            g = (int) (color.getGreen() + (255 - color.getGreen()) * f);
+            b = (int) (color.getBlue() + (255 - color.getBlue()) * f);
+        }
+        return (r << 16) | (g << 8) | b;
+    }
+
+    /**
+     * Checks whether this palette is the one of a color scheme, iteration limit and coloring mode, so
+     * that it can be reused instead of building the table again.
+     *
+     * @param color         The color of the color scheme.
+     * @param maxIterations The iteration limit.
+     * @param mode          The coloring mode.
+     * @return True if the palette colors the same way.
+     */
+    public boolean matches(Color color, int maxIterations, ColoringMode mode) {
+        return this.color.equals(color) && table.length == maxIterations + 1 && this.mode == mode;
+    }
+
+    public ColoringMode getMode() {
+        return mode;
+    }
+
+    /**
+     * Gets the color of one iteration count.
+     *
+     * @param iter The iteration count.
+     * @return The RGB value of the pixel.
+     */
+    public int rgb(int iter) {
+        return table[iter];
+    }
+
+    /**
+     * Gets the color of a continuous iteration count. Only a smooth palette tells fractions apart;
+     * the others color the whole count.
+     *
+     * @param iter     The whole iteration count.
+     * @param fraction The fractional part of the count, which may reach into the neighbouring counts.
+     * @return The RGB value of the pixel.
+     */
+    public int rgb(int iter, float fraction) {
+        final int maxIterations = table.length - 1;
+        if (ramp == null || iter == maxIterations) {
+            return table[iter];
+        }
+        // The continuous count, kept on the ramp
+        float smooth = Math.min(Math.max(iter + fraction, 0), maxIterations);
+        int whole = (int) smooth;
+        if (whole == maxIterations) {
+            return ramp[maxIterations];
+        }
+        float t = smooth - whole;
+        int from = ramp[whole];
+        int to = ramp[whole + 1];
+        int r = blend(from >> 16 & 0xff, to >> 16 & 0xff, t);
+        int g = blend(from >> 8 & 0xff, to >> 8 & 0xff, t);
+        int b = blend(from & 0xff, to & 0xff, t);
+        return (r << 16) | (g << 8) | b;
+    }
+
+    private static int blend(int from, int to, float t) {
+        return from + (int) ((to - from) * t);
+    }
+
+    /**
+     * Colors the pixels of a rectangle from their iteration counts.
+     *
+     * @param iterations The iteration counts of the frame.
+     * @param pixels     The pixels of the frame.
+     * @param stride     The width of a row in the arrays.
+     * @param x0         The first column.
+     * @param y0         The first row.
+     * @param x1         The column after the last one.
+     * @param y1         The row after the last one.
+     */
+    public void color(int[] iterations, int[] pixels, int stride, int x0, int y0, int x1, int y1) {
+        for (int y = y0; y < y1; y++) {
+            int row = y * stride;
+            for (int x = x0; x < x1; x++) {
+                pixels[x + row] = table[iterations[x + row]];
+            }
+        }
+    }
+
+    /**
+     * Colors the pixels of a rectangle from their continuous iteration counts.
+     *
+     * @param iterations The iteration counts of the frame.
+     * @param fractions  The fractional parts of the counts, or null to color the whole counts.
+     * @param pixels     The pixels of the frame.
+     * @param stride     The width of a row in the arrays.
+     * @param x0         The first column.
+     * @param y0         The first row.
+     * @param x1         The column after the last one.
+     * @param y1         The row after the last one.
+     */
+    public void color(int[] iterations, float[] fractions, int[] pixels, int stride, int x0, int y0, int x1,
+                      int y1) {
+        if (fractions == null || ramp == null) {
+            color(iterations, pixels, stride, x0, y0, x1, y1);
+            return;
+        }
+        for (int y = y0; y < y1; y++) {
+            int row = y * stride;
+            for (int x = x0; x < x1; x++) {
+                pixels[x + row] = rgb(iterations[x + row], fractions[x + row]);
+            }
+        }
+    }
+}
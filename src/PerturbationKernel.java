@@ -0,0 +1,199 @@
+/**
+ * Iterates pixels as double-precision perturbations of a high-precision reference orbit.
+ * <p>
+ * A pixel at offset dc from the center of the view has the orbit z = Z + dz, where Z is the
+ * reference orbit and dz follows dz' = 2 Z dz + dz^2 + dc. The offsets are tiny but well within the
+ * range of a double, so every pixel costs about as much as a plain double iteration no matter how
+ * deep the zoom is.
+ * <p>
+ * A pixel glitches when its orbit gets closer to the start of the reference orbit than to the
+ * reference itself, because the difference then carries more magnitude than the reference and loses
+ * the precision the reference was supposed to provide. The same happens when the reference orbit
+ * escapes before the pixel does. In both cases the pixel is rebased: its full value becomes the new
+ * difference and it continues from the start of the reference orbit.
+ * <p>
+ * With a series approximation, pixels do not start at iteration zero but at the last iteration the
+ * series was validated for, with the difference the series predicts for them.
+ * <p>
+ * The escape points recorded for smooth coloring are the full orbit points Z + dz, with c rounded to a
+ * double, which is exact enough for the fraction at any zoom.
+ */
+public final class PerturbationKernel implements PixelKernel, OffsetKernel {
+
+    private final FractalView view;
+    private final ReferenceOrbit orbit;
+    private final SeriesApproximation series;
+    private final boolean julia;
+    private final DeepZoomStats stats;
+    // Records the escape points of the pixels for smooth coloring, or null
+    private final EscapeFractions fractions;
+
+    public PerturbationKernel(FractalView view, ReferenceOrbit orbit, SeriesApproximation series, DeepZoomStats stats) {
+        this(view, orbit, series, stats, null);
+    }
+
+    public PerturbationKernel(FractalView view, ReferenceOrbit orbit, SeriesApproximation series, DeepZoomStats stats,
+                              EscapeFractions fractions) {
+        this.view = view;
+        this.orbit = orbit;
+        this.series = series;
+        this.julia = view.getFractalType() == FractalType.JULIA;
+        this.stats = stats;
+        this.fractions = fractions;
+    }
+
+    /**
+     * Computes the reference orbit for a view and creates a kernel for it.
+     *
+     * @param view                The view to render.
+     * @param seriesApproximation Whether to skip the first iterations with a series approximation.
+     * @return The kernel, with fresh statistics.
+     */
+    public static PerturbationKernel create(FractalView view, boolean seriesApproximation) {
+        return create(view, seriesApproximation, null);
+    }
+
+    /**
+     * Computes the reference orbit for a view and creates a kernel for it that records the fractional
+     * escape counts of the pixels that escape.
+     *
+     * @param view                The view to render.
+     * @param seriesApproximation Whether to skip the first iterations with a series approximation.
+     * @param fractions           The fractions to record the escapes in, or null to record none.
+     * @return The kernel, with fresh statistics.
+     */
+    public static PerturbationKernel create(FractalView view, boolean seriesApproximation, EscapeFractions fractions) {
+        ReferenceOrbit orbit = ReferenceOrbit.compute(view);
+        SeriesApproximation series = seriesApproximation ? SeriesApproximation.compute(view, orbit) : null;
+        return new PerturbationKernel(view, orbit, series, new DeepZoomStats(orbit, series), fractions);
+    }
+
+    /**
+     * Gets the statistics of the pixels iterated by this kernel.
+     *
+     * @return The deep zoom statistics.
+     */
+    public DeepZoomStats getStats() {
+        return stats;
+    }
+
+    FractalView getView() {
+        return view;
+    }
+
+    ReferenceOrbit getOrbit() {
+        return orbit;
+    }
+
+    SeriesApproximation getSeries() {
+        return series;
+    }
+
+    @Override
+    public PrecisionTier getPrecision() {
+        return PrecisionTier.PERTURBATION;
+    }
+
+    @Override
+    public int iterate(int x, int y) {
+        final double zoom = view.getZoom();
+        return iterateOffset((x - view.getWidth() / 2.0) / zoom, (y - view.getHeight() / 2.0) / zoom, x, y);
+    }
+
+    @Override
+    public int iterateOffset(double dx, double dy) {
+        return iterateOffset(dx, dy, -1, -1);
+    }
+
+    /**
+     * Iterates a point at any offset from the center of the view. The series approximation was only
+     * validated over the view, so points outside of it are iterated from the start.
+     *
+     * @param x The pixel column of the point, or -1 if it is not a pixel.
+     * @param y The pixel row of the point, or -1 if it is not a pixel.
+     */
+    private int iterateOffset(double dx, double dy, int x, int y) {
+        final double zoom = view.getZoom();
+        boolean inView = Math.abs(dx) <= view.getWidth() / 2.0 / zoom && Math.abs(dy) <= view.getHeight() / 2.0 / zoom;
+
+        // For a Julia set the pixel offset is the starting difference and c is shared with the reference.
+        double dcr = julia ? 0 : dx;
+        double dci = julia ? 0 : dy;
+        double dzr = julia ? dx : 0;
+        double dzi = julia ? dy : 0;
+
+        if (series != null && series.getSkip() > 0 && inView) {
+            stats.recordSkippedPixel();
+            return iterate(series.real(dx, dy), series.imag(dx, dy), dcr, dci, series.getSkip(), series.getSkip(),
+                    x, y);
+        }
+        return iterate(dzr, dzi, dcr, dci, 0, 0, x, y);
+    }
+
+    /**
+     * Continues the perturbed iteration of a pixel from a known state.
+     *
+     * @param dzr  The real part of the difference from the reference orbit.
+     * @param dzi  The imaginary part of the difference from the reference orbit.
+     * @param dcr  The real part of the difference in the parameter c.
+     * @param dci  The imaginary part of the difference in the parameter c.
+     * @param iter The iteration the state belongs to.
+     * @param ref  The index in the reference orbit the difference is relative to.
+     * @param x    The pixel column, or -1 if the point is not a pixel.
+     * @param y    The pixel row, or -1 if the point is not a pixel.
+     * @return The number of iterations before the orbit escaped, or maxIterations if it did not.
+     */
+    int iterate(double dzr, double dzi, double dcr, double dci, int iter, int ref, int x, int y) {
+        final int maxIterations = view.getMaxIterations();
+        final int last = orbit.getLength() - 1;
+        final double startReal = orbit.getReal(0);
+        final double startImag = orbit.getImag(0);
+        int rebases = 0;
+
+        while (iter < maxIterations) {
+            double refReal = orbit.getReal(ref);
+            double refImag = orbit.getImag(ref);
+            double zr = refReal + dzr;
+            double zi = refImag + dzi;
+            double magnitude = zr * zr + zi * zi;
+            if (magnitude >= 4) {
+                if (fractions != null && x >= 0) {
+                    recordEscape(x, y, zr, zi, dcr, dci);
+                }
+                break;
+            }
+
+            // Rebase when the difference dominates the orbit, or when the reference has run out.
+            double fromStartReal = zr - startReal;
+            double fromStartImag = zi - startImag;
+            if (fromStartReal * fromStartReal + fromStartImag * fromStartImag < dzr * dzr + dzi * dzi || ref == last) {
+                dzr = fromStartReal;
+                dzi = fromStartImag;
+                ref = 0;
+                refReal = startReal;
+                refImag = startImag;
+                rebases++;
+            }
+
+            // dz' = 2 Z dz + dz^2 + dc
+            double tmp = 2.0 * (refReal * dzr - refImag * dzi) + dzr * dzr - dzi * dzi + dcr;
+            dzi = 2.0 * (refReal * dzi + refImag * dzr) + 2.0 * dzr * dzi + dci;
+            dzr = tmp;
+            ref++;
+            iter++;
+        }
+
+        if (rebases > 0) {
+            stats.recordRebases(rebases);
+        }
+        return iter;
+    }
+
+    private void recordEscape(int x, int y, double zr, double zi, double dcr, double dci) {
+        if (julia) {
+            fractions.record(x, y, zr, zi, view.getJuliaCReal(), view.getJuliaCImag());
+        } else {
+            fractions.record(x, y, zr, zi, view.getOffsetX() + dcr, view.getOffsetY() + dci);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/**
+ * Computes the escape-time iteration count of individual pixels of a frame.
+ */
+@FunctionalInterface
+public interface PixelKernel {
+
+    /**
+     * Runs the escape-time iteration for a single pixel.
+     *
+     * @param x The pixel column.
+     * @param y The pixel row.
+     * @return The number of iterations before the orbit escaped, or maxIterations if it did not.
+     */
+    int iterate(int x, int y);
+
+    /**
+     * Gets the number format the kernel iterates in. Kernels in other formats than double precision
+     * override this.
+     *
+     * @return The precision tier.
+     */
+    default PrecisionTier getPrecision() {
+        return PrecisionTier.DOUBLE;
+    }
+
+    /**
+     * Runs the escape-time iteration for a run of pixels in one row. Kernels that can iterate several
+     * pixels at once override this; the default iterates them one by one.
+     *
+     * @param y          The pixel row.
+     * @param x0         The first column.
+     * @param x1         The column after the last one.
+     * @param iterations The array to store the iteration counts in.
+     * @param offset     The index in the array of the first column.
+     * @return The sum of the iteration counts.
+     */
+    default long iterateRow(int y, int x0, int x1, int[] iterations, int offset) {
+        return iterateRow(y, x0, x1, 1, iterations, offset);
+    }
+
+    /**
+     * Runs the escape-time iteration for every step-th pixel of a run in one row. The count of column x
+     * is stored at the same distance from the offset as in a full row, so the counts land in place in
+     * an iteration array that has the layout of the frame.
+     *
+     * @param y          The pixel row.
+     * @param x0         The first column.
+     * @param x1         The column after the last one.
+     * @param step       The distance between the columns to iterate.
+     * @param iterations The array to store the iteration counts in.
+     * @param offset     The index in the array of the first column.
+     * @return The sum of the iteration counts.
+     */
+    default long iterateRow(int y, int x0, int x1, int step, int[] iterations, int offset) {
+        long cost = 0;
+        for (int x = x0; x < x1; x += step) {
+            int iter = iterate(x, y);
+            iterations[offset + x - x0] = iter;
+            cost += iter;
+        }
+        return cost;
+    }
+}
@@ -0,0 +1,217 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a PNG image strip by strip, so that the image never has to be in memory as a whole.
+ * <p>
+ * The pixel data of a PNG is a single zlib stream. Every strip is compressed on its own, possibly on
+ * another thread, into deflate blocks that end with a sync flush, so the compressed strips can simply
+ * be concatenated. Only the last strip finishes the deflate stream. The Adler-32 checksum of the whole
+ * stream is combined from the checksums of the strips as they are written, in order.
+ */
+public class PngStripEncoder {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    // zlib header: deflate with a 32K window and default compression, checked by FCHECK
+    private static final byte[] ZLIB_HEADER = {0x78, (byte) 0x9C};
+    // The PNG filter type of every row; Sub only depends on the row itself
+    private static final int FILTER_SUB = 1;
+    private static final int ADLER_BASE = 65521;
+
+    private final DataOutputStream out;
+    private final int height;
+    private int rowsWritten;
+    private long adler = 1;
+
+    /**
+     * A strip that has been filtered and compressed, ready to be written.
+     */
+    public static final class Strip {
+
+        private final byte[] data;
+        private final int rows;
+        private final long adler;
+        private final long rawLength;
+
+        Strip(byte[] data, int rows, long adler, long rawLength) {
+            this.data = data;
+            this.rows = rows;
+            this.adler = adler;
+            this.rawLength = rawLength;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        public int getCompressedLength() {
+            return data.length;
+        }
+    }
+
+    /**
+     * Starts a PNG by writing its signature and header.
+     *
+     * @param out    The stream to write the PNG to.
+     * @param width  The width of the image.
+     * @param height The height of the image.
+     * @throws IOException If the stream cannot be written.
+     */
+    public PngStripEncoder(OutputStream out, int width, int height) throws IOException {
+        this.out = new DataOutputStream(out);
+        this.height = height;
+
+        this.out.write(SIGNATURE);
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream ihdr = new DataOutputStream(header);
+        ihdr.writeInt(width);
+        ihdr.writeInt(height);
+        ihdr.writeByte(8); // bit depth
+        ihdr.writeByte(2); // color type: RGB
+        ihdr.writeByte(0); // compression: deflate
+        ihdr.writeByte(0); // filter method: adaptive
+        ihdr.writeByte(0); // interlace: none
+        writeChunk("IHDR", header.toByteArray(), header.size());
+        writeChunk("IDAT", ZLIB_HEADER, ZLIB_HEADER.length);
+    }
+
+    /**
+     * Filters and compresses a strip of RGB pixels. This does not touch the encoder and can run on any
+     * thread, for several strips at once.
+     *
+     * @param pixels The pixels of the strip, row by row, as 0xRRGGBB.
+     * @param width  The width of the image.
+     * @param rows   The number of rows in the strip.
+     * @param last   Whether this is the last strip of the image.
+     * @return The compressed strip.
+     */
+    public static Strip compress(int[] pixels, int width, int rows, boolean last) {
+        return compress(pixels, 0, width, rows, last);
+    }
+
+    /**
+     * Filters and compresses a strip of RGB pixels that starts within a larger array.
+     *
+     * @param pixels The pixels, row by row, as 0xRRGGBB.
+     * @param offset The index of the first pixel of the strip.
+     * @param width  The width of the image.
+     * @param rows   The number of rows in the strip.
+     * @param last   Whether this is the last strip of the image.
+     * @return The compressed strip.
+     */
+    public static Strip compress(int[] pixels, int offset, int width, int rows, boolean last) {
+        int rowLength = 1 + 3 * width;
+        byte[] raw = new byte[rowLength * rows];
+        for (int y = 0; y < rows; y++) {
+            int at = y * rowLength;
+            raw[at++] = FILTER_SUB;
+            int left = 0;
+            for (int x = 0; x < width; x++) {
+                int rgb = pixels[offset + x + y * width];
+                raw[at++] = (byte) ((rgb >> 16) - (left >> 16));
+                raw[at++] = (byte) ((rgb >> 8) - (left >> 8));
+                raw[at++] = (byte) (rgb - left);
+                left = rgb;
+            }
+        }
+
+        Adler32 checksum = new Adler32();
+        checksum.update(raw, 0, raw.length);
+
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflater.setInput(raw);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 4 + 64);
+        byte[] buffer = new byte[64 * 1024];
+        if (last) {
+            deflater.finish();
+            while (!deflater.finished()) {
+                compressed.write(buffer, 0, deflater.deflate(buffer));
+            }
+        } else {
+            // A sync flush ends the strip on a byte boundary without ending the deflate stream.
+            int length;
+            do {
+                length = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                compressed.write(buffer, 0, length);
+            } while (length == buffer.length);
+        }
+        deflater.end();
+        return new Strip(compressed.toByteArray(), rows, checksum.getValue(), raw.length);
+    }
+
+    /**
+     * Writes the next strip of the image. Strips must be written in order from top to bottom.
+     *
+     * @param strip The compressed strip.
+     * @throws IOException If the stream cannot be written.
+     */
+    public void write(Strip strip) throws IOException {
+        if (rowsWritten + strip.rows > height) {
+            throw new IllegalStateException("More rows than the image height");
+        }
+        writeChunk("IDAT", strip.data, strip.data.length);
+        adler = combineAdler(adler, strip.adler, strip.rawLength);
+        rowsWritten += strip.rows;
+    }
+
+    /**
+     * Ends the image after its last strip by writing the checksum of the pixel data and the end chunk.
+     *
+     * @throws IOException If the stream cannot be written, or not all rows were written.
+     */
+    public void finish() throws IOException {
+        if (rowsWritten != height) {
+            throw new IOException("Only " + rowsWritten + " of " + height + " rows were written");
+        }
+        byte[] trailer = {(byte) (adler >>> 24), (byte) (adler >>> 16), (byte) (adler >>> 8), (byte) adler};
+        writeChunk("IDAT", trailer, trailer.length);
+        writeChunk("IEND", new byte[0], 0);
+        out.flush();
+    }
+
+    private void writeChunk(String type, byte[] data, int length) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        out.writeInt(length);
+        out.write(typeBytes);
+        out.write(data, 0, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    /**
+     * Combines the Adler-32 checksums of two consecutive pieces of data, like zlib's adler32_combine.
+     *
+     * @param adler1  The checksum of the first piece.
+     * @param adler2  The checksum of the second piece.
+     * @param length2 The length of the second piece.
+     * @return The checksum of both pieces together.
+     */
+    static long combineAdler(long adler1, long adler2, long length2) {
+        long remainder = length2 % ADLER_BASE;
+        long sum1 = adler1 & 0xFFFF;
+        long sum2 = (remainder * sum1) % ADLER_BASE;
+        sum1 += (adler2 & 0xFFFF) + ADLER_BASE - 1;
+        sum2 += ((adler1 >>> 16) & 0xFFFF) + ((adler2 >>> 16) & 0xFFFF) + ADLER_BASE - remainder;
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum2 >= 2L * ADLER_BASE) {
+            sum2 -= 2L * ADLER_BASE;
+        }
+        if (sum2 >= ADLER_BASE) {
+            sum2 -= ADLER_BASE;
+        }
+        return sum1 | (sum2 << 16);
+    }
+}
@@ -0,0 +1,150 @@
+/**
+ * The number formats pixels can be iterated in, from the cheapest to the most precise. Each tier has
+ * its own kernel, and a view is rendered in the cheapest tier that still resolves the distance between
+ * its neighbouring pixels.
+ * <p>
+ * A tier is good for a zoom as long as neighbouring pixels are at least a few thousand units in the
+ * last place of the coordinates apart, so that the rounding of every iteration stays far below the
+ * pixel spacing. PrecisionTierTest compares neighbouring tiers on views that both of them can render.
+ */
+public enum PrecisionTier {
+    /**
+     * Single precision, vectorized with twice the lanes of a double vector. Only used with the Vector
+     * API, since scalar float code is no faster than double code, and only when the render options
+     * allow it: about one boundary pixel in a hundred differs from the double image, which the viewer
+     * accepts for frames that the next pan replaces, but exports and served tiles do not.
+     */
+    FLOAT,
+    /**
+     * Double precision, vectorized when the Vector API is available.
+     */
+    DOUBLE,
+    /**
+     * Double-double arithmetic, which carries every coordinate as an unevaluated sum of two doubles.
+     * It needs no reference orbit, but costs about ten times as much as a double, so it is only used
+     * for deep zooms when perturbation is turned off.
+     */
+    DOUBLE_DOUBLE,
+    /**
+     * Double-precision differences from a high-precision reference orbit.
+     */
+    PERTURBATION,
+    /**
+     * Differences from a reference orbit with a separate binary exponent, for zooms where the
+     * differences would otherwise leave the range of normal doubles.
+     */
+    EXTENDED;
+
+    /**
+     * The largest zoom rendered in single precision. Coordinates up to 2 have an ulp of 2^-22, so
+     * neighbouring pixels are still 2^13 ulps apart; about one pixel in a hundred then differs from
+     * the double image, and twice as many at twice the zoom.
+     */
+    public static final double FLOAT_MAX_ZOOM = 512;
+    /**
+     * The largest iteration limit of the float tier, whose vector lanes count iterations in floats.
+     */
+    public static final int FLOAT_MAX_ITERATIONS = 1 << 24;
+    /**
+     * The zoom from which differences are kept with a separate exponent. The pixel spacing is then
+     * less than 2^53 times the smallest normal double, so the terms of an iteration that are a unit in
+     * the last place of a difference would be subnormal.
+     */
+    public static final double EXTENDED_ZOOM_THRESHOLD = 0x1p969;
+
+    /**
+     * Chooses the cheapest tier for a view.
+     *
+     * @param view    The view to render.
+     * @param options The render options.
+     * @return The tier.
+     */
+    public static PrecisionTier select(FractalView view, RenderOptions options) {
+        double zoom = view.getZoom();
+        if (options.allowsSinglePrecision() && zoom <= FLOAT_MAX_ZOOM
+                && view.getMaxIterations() <= FLOAT_MAX_ITERATIONS && VectorSupport.isAvailable()) {
+            return FLOAT;
+        }
+        if (zoom < RenderEngine.DEEP_ZOOM_THRESHOLD) {
+            return DOUBLE;
+        }
+        if (!options.isDeepZoom()) {
+            return DOUBLE_DOUBLE;
+        }
+        return zoom < EXTENDED_ZOOM_THRESHOLD ? PERTURBATION : EXTENDED;
+    }
+
+    /**
+     * Creates the kernel of this tier for a view. The float tier falls back to double precision when
+     * the Vector API is missing.
+     *
+     * @param view          The view to render.
+     * @param options       The render options.
+     * @param interiorStats The statistics to record short-circuited points in.
+     * @return The kernel, which is also an {@link OffsetKernel}.
+     */
+    public PixelKernel createKernel(FractalView view, RenderOptions options, InteriorStats interiorStats) {
+        return createKernel(view, options, interiorStats, null);
+    }
+
+    /**
+     * Creates the kernel of this tier for a view, recording the orbits of the pixels that reach the
+     * iteration limit. Only the float and double tiers record orbits; their kernels are
+     * {@link ResumableKernel}s.
+     *
+     * @param view          The view to render.
+     * @param options       The render options.
+     * @param interiorStats The statistics to record short-circuited points in.
+     * @param checkpoint    The checkpoint to record the orbits in, or null to record none.
+     * @return The kernel, which is also an {@link OffsetKernel}.
+     */
+    public PixelKernel createKernel(FractalView view, RenderOptions options, InteriorStats interiorStats,
+                                    OrbitCheckpoint checkpoint) {
+        return createKernel(view, options, interiorStats, checkpoint, null);
+    }
+
+    /**
+     * Creates the kernel of this tier for a view, recording the orbits of the pixels that reach the
+     * iteration limit and the fractional escape counts of the pixels that escape. Every tier records
+     * the fractions.
+     *
+     * @param view          The view to render.
+     * @param options       The render options.
+     * @param interiorStats The statistics to record short-circuited points in.
+     * @param checkpoint    The checkpoint to record the orbits in, or null to record none.
+     * @param fractions     The fractions to record the escapes in, or null to record none.
+     * @return The kernel, which is also an {@link OffsetKernel}.
+     */
+    public PixelKernel createKernel(FractalView view, RenderOptions options, InteriorStats interiorStats,
+                                    OrbitCheckpoint checkpoint, EscapeFractions fractions) {
+        boolean shortcuts = options.hasInteriorShortcuts();
+        switch (this) {
+            case FLOAT:
+                return VectorSupport.vectorizeFloat(
+                        new EscapeTimeKernel(view, shortcuts, shortcuts, interiorStats, checkpoint, fractions));
+            case DOUBLE_DOUBLE:
+                return new DoubleDoubleKernel(view, shortcuts, shortcuts, interiorStats, fractions);
+            case PERTURBATION:
+                return PerturbationKernel.create(view, true, fractions);
+            case EXTENDED:
+                return ExtendedPerturbationKernel.create(view, true, fractions);
+            default:
+                return VectorSupport.vectorize(
+                        new EscapeTimeKernel(view, shortcuts, shortcuts, interiorStats, checkpoint, fractions));
+        }
+    }
+
+    /**
+     * Checks whether the tier iterates differences from a reference orbit.
+     *
+     * @return True for the perturbation tiers.
+     */
+    public boolean usesPerturbation() {
+        return this == PERTURBATION || this == EXTENDED;
+    }
+
+    @Override
+    public String toString() {
+        return name().toLowerCase().replace('_', '-');
+    }
+}
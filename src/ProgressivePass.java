@@ -0,0 +1,129 @@
+/**
+ * Renders one pass of a progressive frame. A pass iterates every step-th pixel in both directions and
+ * paints each sample as a step x step block, so a coarse pass gives a complete preview of the frame for
+ * a fraction of the work. The tiles of a pass are in pass coordinates: tile column i and row j are the
+ * sample at pixel (i * step, j * step).
+ * <p>
+ * A refining pass follows a pass with twice its step, whose samples are the pixels at even columns of
+ * even rows of this pass. Those counts are already in the iteration array and are not computed again,
+ * so a whole sequence of passes iterates every pixel of the frame exactly once.
+ */
+public class ProgressivePass implements TileScheduler.TileRenderer {
+
+    private final PixelKernel kernel;
+    private final Palette palette;
+    private final int[] iterations;
+    // The fractional parts of the counts, or null
+    private final float[] fractions;
+    private final int[] pixels;
+    private final int width;
+    private final int height;
+    private final int step;
+    private final boolean refine;
+
+    /**
+     * Creates a pass.
+     *
+     * @param kernel     The kernel that iterates the pixels.
+     * @param palette    The palette that colors the iteration counts.
+     * @param iterations The iteration counts of the frame.
+     * @param pixels     The pixels of the frame.
+     * @param width      The width of the frame.
+     * @param height     The height of the frame.
+     * @param step       The distance between the samples of this pass, in pixels.
+     * @param refine     Whether the samples of a pass with twice the step are already computed.
+     */
+    public ProgressivePass(PixelKernel kernel, Palette palette, int[] iterations, int[] pixels, int width, int height,
+                           int step, boolean refine) {
+        this(kernel, palette, iterations, null, pixels, width, height, step, refine);
+    }
+
+    /**
+     * Creates a pass of a smoothly colored frame.
+     *
+     * @param kernel     The kernel that iterates the pixels, which records the fractions.
+     * @param palette    The palette that colors the iteration counts.
+     * @param iterations The iteration counts of the frame.
+     * @param fractions  The fractional parts of the counts, or null to color whole counts.
+     * @param pixels     The pixels of the frame.
+     * @param width      The width of the frame.
+     * @param height     The height of the frame.
+     * @param step       The distance between the samples of this pass, in pixels.
+     * @param refine     Whether the samples of a pass with twice the step are already computed.
+     */
+    public ProgressivePass(PixelKernel kernel, Palette palette, int[] iterations, float[] fractions, int[] pixels,
+                           int width, int height, int step, boolean refine) {
+        this.kernel = kernel;
+        this.palette = palette;
+        this.iterations = iterations;
+        this.fractions = fractions;
+        this.pixels = pixels;
+        this.width = width;
+        this.height = height;
+        this.step = step;
+        this.refine = refine;
+    }
+
+    /**
+     * Gets the width of the pass in samples.
+     *
+     * @return The number of sample columns.
+     */
+    public int getColumns() {
+        return (width + step - 1) / step;
+    }
+
+    /**
+     * Gets the height of the pass in samples.
+     *
+     * @return The number of sample rows.
+     */
+    public int getRows() {
+        return (height + step - 1) / step;
+    }
+
+    @Override
+    public long render(int i0, int j0, int i1, int j1) {
+        long cost = 0;
+        int x1 = Math.min(i1 * step, width);
+        for (int j = j0; j < j1; j++) {
+            int y = j * step;
+            int row = y * width;
+            if (refine && j % 2 == 0) {
+                // Even columns of even rows were samples of the previous pass.
+                int first = (i0 % 2 == 0 ? i0 + 1 : i0) * step;
+                if (first < x1) {
+                    cost += kernel.iterateRow(y, first, x1, 2 * step, iterations, first + row);
+                }
+            } else {
+                cost += kernel.iterateRow(y, i0 * step, x1, step, iterations, i0 * step + row);
+            }
+
+            if (step == 1) {
+                palette.color(iterations, fractions, pixels, width, i0, y, x1, y + 1);
+            } else {
+                paintBlocks(i0, i1, y);
+            }
+        }
+        return cost;
+    }
+
+    /**
+     * Paints the samples of a row of the pass as blocks of pixels.
+     */
+    private void paintBlocks(int i0, int i1, int y) {
+        int yEnd = Math.min(y + step, height);
+        for (int i = i0; i < i1; i++) {
+            int x = i * step;
+            int xEnd = Math.min(x + step, width);
+            int rgb = fractions == null ? palette.rgb(iterations[x + y * width])
+                    : palette.rgb(iterations[x + y * width], fractions[x + y * width]);
+            for (int by = y; by < yEnd; by++) {
+                int row = by * width;
+                for (int bx = x; bx < xEnd; bx++) {
+                    pixels[bx + row] = rgb;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+/**
+ * The orbit of a single reference point, iterated with arbitrary precision and stored as doubles.
+ * <p>
+ * For the Mandelbrot set the reference point is the parameter c at the center of the view and the
+ * orbit starts at zero. For a Julia set the parameter is fixed and the orbit starts at the center of
+ * the view. Every other pixel is then iterated as a small double-precision difference from this
+ * orbit, which is what makes perturbation rendering work past the precision of a double.
+ */
+public final class ReferenceOrbit {
+
+    // Digits of precision added on top of the digits needed to address a pixel
+    private static final int GUARD_DIGITS = 20;
+    // The reference orbit stops once it leaves this radius, like the pixels do
+    private static final double ESCAPE_RADIUS_SQUARED = 4.0;
+
+    private final double[] real;
+    private final double[] imag;
+    private final int length;
+    private final int precision;
+    private final long nanos;
+
+    private ReferenceOrbit(double[] real, double[] imag, int length, int precision, long nanos) {
+        this.real = real;
+        this.imag = imag;
+        this.length = length;
+        this.precision = precision;
+        this.nanos = nanos;
+    }
+
+    /**
+     * Computes the reference orbit for the center of a view.
+     *
+     * @param view The view to compute the orbit for.
+     * @return The reference orbit.
+     */
+    public static ReferenceOrbit compute(FractalView view) {
+        long start = System.nanoTime();
+        int precision = precisionFor(view.getZoomMantissa(), view.getZoomExponent());
+        MathContext mc = new MathContext(precision, RoundingMode.HALF_EVEN);
+
+        BigDecimal zr, zi, cr, ci;
+        if (view.getFractalType() == FractalType.MANDELBROT) {
+            zr = BigDecimal.ZERO;
+            zi = BigDecimal.ZERO;
+            cr = view.getCenterReal().round(mc);
+            ci = view.getCenterImag().round(mc);
+        } else { // Julia
+            zr = view.getCenterReal().round(mc);
+            zi = view.getCenterImag().round(mc);
+            cr = new BigDecimal(view.getJuliaCReal());
+            ci = new BigDecimal(view.getJuliaCImag());
+        }
+
+        int maxIterations = view.getMaxIterations();
+        double[] real = new double[maxIterations + 1];
+        double[] imag = new double[maxIterations + 1];
+        int length = 0;
+        BigDecimal two = BigDecimal.valueOf(2);
+
+        while (length <= maxIterations) {
+            double r = zr.doubleValue();
+            double i = zi.doubleValue();
+            real[length] = r;
+            imag[length] = i;
+            length++;
+
+            if (r * r + i * i >= ESCAPE_RADIUS_SQUARED) {
+                break;
+            }
+
+            BigDecimal tmp = zr.multiply(zr, mc).subtract(zi.multiply(zi, mc), mc).add(cr, mc);
+            zi = two.multiply(zr, mc).multiply(zi, mc).add(ci, mc);
+            zr = tmp;
+        }
+
+        return new ReferenceOrbit(real, imag, length, precision, System.nanoTime() - start);
+    }
+
+    /**
+     * Gets the number of decimal digits needed to iterate a view at the given zoom.
+     *
+     * @param zoom The zoom, in pixels per unit of the complex plane.
+     * @return The number of significant digits.
+     */
+    public static int precisionFor(double zoom) {
+        return precisionFor(zoom, 0);
+    }
+
+    /**
+     * Gets the number of decimal digits needed to iterate a view at a zoom that may be beyond the range
+     * of a double.
+     *
+     * @param zoom         The zoom divided by 2^zoomExponent.
+     * @param zoomExponent The power of two the zoom is multiplied by.
+     * @return The number of significant digits.
+     */
+    public static int precisionFor(double zoom, int zoomExponent) {
+        double digits = Math.log10(zoom) + zoomExponent * Math.log10(2);
+        return (int) Math.ceil(Math.max(digits, 0)) + GUARD_DIGITS;
+    }
+
+    /**
+     * Gets the real part of the orbit point at an iteration.
+     *
+     * @param n The iteration, less than the length of the orbit.
+     * @return The real part.
+     */
+    public double getReal(int n) {
+        return real[n];
+    }
+
+    /**
+     * Gets the imaginary part of the orbit point at an iteration.
+     *
+     * @param n The iteration, less than the length of the orbit.
+     * @return The imaginary part.
+     */
+    public double getImag(int n) {
+        return imag[n];
+    }
+
+    /**
+     * Gets the number of stored orbit points. If it is smaller than maxIterations + 1 the reference
+     * escaped, and pixels that outlive it have to be rebased.
+     *
+     * @return The length of the orbit.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Gets the number of significant digits the orbit was computed with.
+     *
+     * @return The precision in decimal digits.
+     */
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Gets the time it took to compute the orbit.
+     *
+     * @return The time in nanoseconds.
+     */
+    public long getNanos() {
+        return nanos;
+    }
+}
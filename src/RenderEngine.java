@@ -0,0 +1,258 @@
+import java.awt.Color;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
+
+/**
+ * Renders views of the fractals into iteration counts, pixels or PNG files. The engine does not use
+ * Swing or a display, so it runs in headless JVMs such as batch jobs and servers; the viewer and the
+ * command line both render through it.
+ * <p>
+ * An engine owns a tile scheduler with a fixed number of worker threads. It can render any number of
+ * views, also at the same time, and must be shut down when it is no longer needed.
+ */
+public class RenderEngine {
+
+    /**
+     * The zoom beyond which neighbouring pixels are too close for doubles, and deep zoom kernels are used.
+     */
+    public static final double DEEP_ZOOM_THRESHOLD = 1e11;
+
+    // The longer side of the preview whose counts stand in for a whole view in a histogram palette
+    private static final int HISTOGRAM_PREVIEW_SIZE = 256;
+
+    private final TileScheduler scheduler;
+
+    /**
+     * Creates an engine with its own worker threads.
+     *
+     * @param threads The number of worker threads.
+     */
+    public RenderEngine(int threads) {
+        this(new TileScheduler(threads));
+    }
+
+    /**
+     * Creates an engine on a scheduler, for example one with low-priority workers for background jobs.
+     *
+     * @param scheduler The scheduler to render on. The engine shuts it down when it is shut down.
+     */
+    public RenderEngine(TileScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Creates the kernel that iterates the pixels of a view, in the cheapest precision tier that
+     * resolves its pixels: single precision at low zooms, double precision up to the threshold of deep
+     * zooms, and beyond it perturbation against a high-precision reference orbit, or double-double
+     * arithmetic if perturbation is turned off. The float and double kernels are vectorized when the
+     * Vector API is available.
+     *
+     * @param view          The view to render.
+     * @param options       The render options.
+     * @param interiorStats The statistics to record short-circuited points in.
+     * @return The kernel.
+     */
+    public static PixelKernel createKernel(FractalView view, RenderOptions options, InteriorStats interiorStats) {
+        return PrecisionTier.select(view, options).createKernel(view, options, interiorStats);
+    }
+
+    /**
+     * Renders a view into buffers and waits for it. A smooth palette gets the fractions of the counts
+     * in a buffer of its own, which is dropped afterwards.
+     *
+     * @param view       The view to render.
+     * @param options    The render options.
+     * @param palette    The palette that colors the iteration counts.
+     * @param iterations The array to store the iteration counts in, row by row.
+     * @param pixels     The array to store the RGB values in, row by row.
+     * @param cancelled  Checked between bands; when it returns true the remaining tiles are skipped.
+     * @return The statistics of the tiles that were rendered.
+     */
+    public TileStats render(FractalView view, RenderOptions options, Palette palette, int[] iterations,
+                            int[] pixels, BooleanSupplier cancelled) {
+        float[] fractions = palette.getMode() == ColoringMode.SMOOTH ? new float[iterations.length] : null;
+        return render(view, options, palette, iterations, fractions, pixels, cancelled);
+    }
+
+    /**
+     * Renders a view into buffers, with the fractional parts of the counts for smooth coloring, and
+     * waits for it.
+     *
+     * @param view       The view to render.
+     * @param options    The render options.
+     * @param palette    The palette that colors the iteration counts.
+     * @param iterations The array to store the iteration counts in, row by row.
+     * @param fractions  The array to store the fractional parts of the counts in, or null to color the
+     *                   whole counts.
+     * @param pixels     The array to store the RGB values in, row by row.
+     * @param cancelled  Checked between bands; when it returns true the remaining tiles are skipped.
+     * @return The statistics of the tiles that were rendered.
+     */
+    public TileStats render(FractalView view, RenderOptions options, Palette palette, int[] iterations,
+                            float[] fractions, int[] pixels, BooleanSupplier cancelled) {
+        int width = view.getWidth();
+        int height = view.getHeight();
+        RenderEvents.FrameEvent event = RenderEvents.beginFrame();
+        PixelKernel kernel = PrecisionTier.select(view, options).createKernel(view, options, new InteriorStats(),
+                null, fractions == null ? null : new EscapeFractions(fractions, width, height));
+        TileStats stats = new TileStats(width, height, scheduler.getParallelism());
+        FrameRenderer renderer = new FrameRenderer(kernel, palette, iterations, fractions, pixels, width,
+                options.hasRectangleFill(), stats);
+        scheduler.render(width, height, renderer.getBandHeight(), renderer, cancelled, stats);
+        stats.finish();
+        RenderEvents.endFrame(event, view, kernel, stats);
+        return stats;
+    }
+
+    /**
+     * Computes the iteration counts of a view.
+     *
+     * @param view    The view to render.
+     * @param options The render options.
+     * @return The iteration counts, row by row.
+     */
+    public int[] iterate(FractalView view, RenderOptions options) {
+        int[] iterations = new int[view.getWidth() * view.getHeight()];
+        int[] pixels = new int[iterations.length];
+        render(view, options, new Palette(ColorScheme.RED.getColor(), view.getMaxIterations()), iterations, pixels,
+                () -> false);
+        return iterations;
+    }
+
+    /**
+     * Computes the pixels of a view.
+     *
+     * @param view    The view to render.
+     * @param options The render options.
+     * @param palette The palette that colors the iteration counts.
+     * @return The pixels as 0xRRGGBB, row by row.
+     */
+    public int[] renderPixels(FractalView view, RenderOptions options, Palette palette) {
+        int[] pixels = new int[view.getWidth() * view.getHeight()];
+        render(view, options, palette, new int[pixels.length], pixels, () -> false);
+        return pixels;
+    }
+
+    /**
+     * Builds a histogram-equalized palette from the iteration counts of a frame.
+     *
+     * @param color         The color of the color scheme.
+     * @param iterations    The iteration counts of the frame.
+     * @param width         The width of the frame.
+     * @param height        The height of the frame.
+     * @param maxIterations The iteration limit of the frame.
+     * @return The palette.
+     */
+    public Palette equalize(Color color, int[] iterations, int width, int height, int maxIterations) {
+        return Palette.equalized(color, IterationHistogram.build(scheduler, iterations, width, height, maxIterations));
+    }
+
+    /**
+     * Builds a histogram-equalized palette for a view whose counts are never all in memory, such as a
+     * streamed export. The histogram is taken from a small preview of the view, whose distribution of
+     * counts is close to that of the full image.
+     *
+     * @param view    The view.
+     * @param options The render options.
+     * @param color   The color of the color scheme.
+     * @return The palette.
+     */
+    public Palette equalize(FractalView view, RenderOptions options, Color color) {
+        double scale = Math.min(1.0, (double) HISTOGRAM_PREVIEW_SIZE / Math.max(view.getWidth(), view.getHeight()));
+        int width = Math.max(1, (int) Math.round(view.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(view.getHeight() * scale));
+        FractalView preview = view.resize((double) width / view.getWidth(), width, height);
+        return equalize(color, iterate(preview, options), width, height, view.getMaxIterations());
+    }
+
+    /**
+     * Builds the palette of an image that is written strip by strip. In histogram mode the palette is
+     * equalized on a preview of the view, which is rendered on the workers of this engine.
+     *
+     * @param view    The view of the image.
+     * @param options The render options.
+     * @param color   The color of the color scheme.
+     * @param mode    The coloring mode.
+     * @return The palette.
+     */
+    public Palette exportPalette(FractalView view, RenderOptions options, Color color, ColoringMode mode) {
+        return mode == ColoringMode.HISTOGRAM ? equalize(view, options, color)
+                : new Palette(color, view.getMaxIterations(), mode);
+    }
+
+    /**
+     * Colors the iteration counts of a frame in parallel.
+     *
+     * @param palette    The palette that colors the iteration counts.
+     * @param iterations The iteration counts of the frame.
+     * @param pixels     The pixels of the frame.
+     * @param width      The width of the frame.
+     * @param height     The height of the frame.
+     */
+    public void color(Palette palette, int[] iterations, int[] pixels, int width, int height) {
+        color(palette, iterations, null, pixels, width, height);
+    }
+
+    /**
+     * Colors the continuous iteration counts of a frame in parallel.
+     *
+     * @param palette    The palette that colors the iteration counts.
+     * @param iterations The iteration counts of the frame.
+     * @param fractions  The fractional parts of the counts, or null to color the whole counts.
+     * @param pixels     The pixels of the frame.
+     * @param width      The width of the frame.
+     * @param height     The height of the frame.
+     */
+    public void color(Palette palette, int[] iterations, float[] fractions, int[] pixels, int width, int height) {
+        TileStats stats = new TileStats(width, height, scheduler.getParallelism());
+        scheduler.render(width, height, TileScheduler.WHOLE_TILE, (x0, y0, x1, y1) -> {
+            palette.color(iterations, fractions, pixels, width, x0, y0, x1, y1);
+            return 0;
+        }, () -> false, stats);
+    }
+
+    /**
+     * Renders a view and writes it as a PNG, strip by strip, so the image is never in memory as a whole.
+     *
+     * @param view          The view to render.
+     * @param options       The render options.
+     * @param palette       The palette that colors the iteration counts.
+     * @param supersampling The anti-aliasing of the image, or null to take one sample per pixel.
+     * @param out           The stream to write the PNG to. It is not closed.
+     * @param cancelled     Checked while rendering; when it returns true the export stops.
+     * @param progress      Receives the number of rows written so far, after every strip.
+     * @return The exporter, which reports what the export did.
+     * @throws IOException If the stream cannot be written.
+     */
+    public StripExporter export(FractalView view, RenderOptions options, Palette palette,
+                                Supersampling supersampling, OutputStream out, BooleanSupplier cancelled,
+                                IntConsumer progress) throws IOException {
+        PixelKernel sampleKernel = supersampling == null ? null
+                : createKernel(supersampling.scale(view), options, new InteriorStats());
+        EscapeFractions fractions = palette.getMode() == ColoringMode.SMOOTH
+                ? new EscapeFractions(view.getWidth(), view.getHeight()) : null;
+        PixelKernel kernel = PrecisionTier.select(view, options).createKernel(view, options, new InteriorStats(),
+                null, fractions);
+        StripExporter exporter = new StripExporter(scheduler, kernel, palette, view.getWidth(), view.getHeight(),
+                options.hasRectangleFill(), supersampling, sampleKernel, fractions);
+        exporter.export(out, cancelled, progress);
+        return exporter;
+    }
+
+    public TileScheduler getScheduler() {
+        return scheduler;
+    }
+
+    public int getParallelism() {
+        return scheduler.getParallelism();
+    }
+
+    /**
+     * Stops the worker threads.
+     */
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+}
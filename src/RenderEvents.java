@@ -0,0 +1,280 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Frequency;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The Java Flight Recorder events of the renderer, so that slow frames can be diagnosed in a running
+ * viewer or server with {@code jcmd <pid> JFR.start} and JDK Mission Control.
+ * <p>
+ * Every frame emits a {@link FrameEvent} and one {@link WorkerEvent} per worker thread, which share a
+ * frame id, and the viewer emits a {@link PrecisionSwitchEvent} whenever zooming moves it to another
+ * {@link PrecisionTier}. The per-tile {@link TileEvent} is disabled by default, since a frame has
+ * thousands of tiles; enable {@code mandelbrot.Tile} in a recording's settings to see where the time of
+ * a frame went.
+ * Events cost next to nothing while no recording is running.
+ */
+public final class RenderEvents {
+
+    private static final AtomicLong FRAME_IDS = new AtomicLong();
+
+    private RenderEvents() {
+    }
+
+    /**
+     * Starts timing a frame.
+     *
+     * @return The event of the frame, to pass to {@link #endFrame}.
+     */
+    public static FrameEvent beginFrame() {
+        FrameEvent event = new FrameEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends the event of a frame and commits it with the statistics of the frame, together with an event
+     * for every worker thread.
+     *
+     * @param event  The event from {@link #beginFrame()}.
+     * @param view   The view that was rendered.
+     * @param kernel The kernel that iterated the pixels.
+     * @param stats  The statistics of the frame.
+     */
+    public static void endFrame(FrameEvent event, FractalView view, PixelKernel kernel, TileStats stats) {
+        event.end();
+        if (!event.shouldCommit()) {
+            return;
+        }
+        long frameId = FRAME_IDS.incrementAndGet();
+        event.frameId = frameId;
+        event.fractal = view.getFractalType().toString();
+        event.zoom = view.getZoom();
+        event.zoomExponent = view.getZoomExponent();
+        event.width = view.getWidth();
+        event.height = view.getHeight();
+        event.maxIterations = view.getMaxIterations();
+        event.kernel = kernel.getClass().getSimpleName();
+        event.precision = kernel.getPrecision().toString();
+        event.tiles = stats.getTiles().size();
+        event.splits = stats.getSplitCount();
+        event.iterations = stats.getTotalIterations();
+        event.iterationsPerSecond = stats.getIterationsPerSecond();
+        event.medianTileTime = stats.getTileNanosPercentile(50);
+        event.p90TileTime = stats.getTileNanosPercentile(90);
+        event.maxTileTime = stats.getTileNanosPercentile(100);
+        event.meanQueueWait = stats.getMeanQueueWaitNanos();
+        event.maxQueueWait = stats.getMaxQueueWaitNanos();
+        event.imbalance = stats.getImbalance();
+        event.reusedPixels = stats.getReusedPixels();
+        event.filledPixels = stats.getFilledPixels();
+        event.commit();
+
+        Map<String, long[]> workers = new HashMap<>();
+        for (TileStats.Tile tile : stats.getTiles()) {
+            long[] totals = workers.computeIfAbsent(tile.getWorker(), w -> new long[3]);
+            totals[0]++;
+            totals[1] += tile.getNanos();
+            totals[2] += tile.getIterations();
+        }
+        for (Map.Entry<String, long[]> worker : workers.entrySet()) {
+            WorkerEvent workerEvent = new WorkerEvent();
+            workerEvent.frameId = frameId;
+            workerEvent.worker = worker.getKey();
+            workerEvent.tiles = (int) worker.getValue()[0];
+            workerEvent.busyTime = worker.getValue()[1];
+            workerEvent.iterations = worker.getValue()[2];
+            workerEvent.commit();
+        }
+    }
+
+    /**
+     * Commits the event of a frame that was rendered in another precision tier than the frame before it.
+     *
+     * @param from The tier of the frame before.
+     * @param to   The tier of the new frame.
+     * @param view The view of the new frame.
+     */
+    public static void switchPrecision(PrecisionTier from, PrecisionTier to, FractalView view) {
+        PrecisionSwitchEvent event = new PrecisionSwitchEvent();
+        if (!event.shouldCommit()) {
+            return;
+        }
+        event.from = from.toString();
+        event.to = to.toString();
+        event.zoom = view.getZoom();
+        event.zoomExponent = view.getZoomExponent();
+        event.commit();
+    }
+
+    /**
+     * A rendered frame.
+     */
+    @Name("mandelbrot.Frame")
+    @Label("Fractal Frame")
+    @Category({"Mandelbrot Viewer", "Rendering"})
+    @Description("A frame rendered by the viewer or the render engine")
+    public static final class FrameEvent extends Event {
+
+        @Label("Frame Id")
+        long frameId;
+
+        @Label("Fractal")
+        String fractal;
+
+        @Label("Zoom")
+        @Description("Pixels per unit of the complex plane, or infinity beyond the range of a double")
+        double zoom;
+
+        @Label("Zoom Exponent")
+        @Description("The binary exponent of the zoom, which is mantissa * 2^exponent")
+        int zoomExponent;
+
+        @Label("Width")
+        int width;
+
+        @Label("Height")
+        int height;
+
+        @Label("Iteration Limit")
+        int maxIterations;
+
+        @Label("Kernel")
+        String kernel;
+
+        @Label("Precision")
+        String precision;
+
+        @Label("Tiles")
+        int tiles;
+
+        @Label("Splits")
+        @Description("Tiles that handed off part of their rows to an idle worker")
+        long splits;
+
+        @Label("Iterations")
+        long iterations;
+
+        @Label("Iterations per Second")
+        @Frequency
+        double iterationsPerSecond;
+
+        @Label("Median Tile Time")
+        @Timespan
+        long medianTileTime;
+
+        @Label("90th Percentile Tile Time")
+        @Timespan
+        long p90TileTime;
+
+        @Label("Max Tile Time")
+        @Timespan
+        long maxTileTime;
+
+        @Label("Mean Queue Wait")
+        @Description("The average time a tile waited before a worker started it")
+        @Timespan
+        long meanQueueWait;
+
+        @Label("Max Queue Wait")
+        @Timespan
+        long maxQueueWait;
+
+        @Label("Worker Imbalance")
+        @Description("The busy time of the busiest worker divided by the average")
+        double imbalance;
+
+        @Label("Reused Pixels")
+        long reusedPixels;
+
+        @Label("Filled Pixels")
+        long filledPixels;
+    }
+
+    /**
+     * The share of a frame that one worker thread rendered.
+     */
+    @Name("mandelbrot.Worker")
+    @Label("Fractal Frame Worker")
+    @Category({"Mandelbrot Viewer", "Rendering"})
+    @Description("The tiles one worker thread rendered for a frame")
+    public static final class WorkerEvent extends Event {
+
+        @Label("Frame Id")
+        long frameId;
+
+        @Label("Worker")
+        String worker;
+
+        @Label("Tiles")
+        int tiles;
+
+        @Label("Busy Time")
+        @Timespan
+        long busyTime;
+
+        @Label("Iterations")
+        long iterations;
+    }
+
+    /**
+     * A frame of the viewer that was rendered in another precision tier than the frame before it.
+     */
+    @Name("mandelbrot.PrecisionSwitch")
+    @Label("Precision Switch")
+    @Category({"Mandelbrot Viewer", "Rendering"})
+    @Description("The viewer changed the number format it iterates pixels in")
+    public static final class PrecisionSwitchEvent extends Event {
+
+        @Label("From")
+        String from;
+
+        @Label("To")
+        String to;
+
+        @Label("Zoom")
+        @Description("The zoom of the first frame in the new tier")
+        double zoom;
+
+        @Label("Zoom Exponent")
+        int zoomExponent;
+    }
+
+    /**
+     * A rendered tile. Its duration is the time the tile took.
+     */
+    @Name("mandelbrot.Tile")
+    @Label("Fractal Tile")
+    @Category({"Mandelbrot Viewer", "Rendering"})
+    @Description("A tile rendered by the tile scheduler")
+    @Enabled(false)
+    public static final class TileEvent extends Event {
+
+        @Label("X")
+        int x;
+
+        @Label("Y")
+        int y;
+
+        @Label("Width")
+        int width;
+
+        @Label("Height")
+        int height;
+
+        @Label("Iterations")
+        long iterations;
+
+        @Label("Queue Wait")
+        @Timespan
+        long queueWait;
+    }
+}
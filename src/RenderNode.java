@@ -0,0 +1,232 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A worker process of a distributed render. It listens on a port, and every coordinator that connects
+ * sends it a view and then asks for strips of rows of that view, one at a time; the worker answers with
+ * the iteration counts of each strip, computed on all of its cores.
+ * <p>
+ * The protocol is plain binary over TCP. The coordinator opens with {@link #MAGIC}, {@link #VERSION}
+ * and the view and render options as written by {@link #writeJob}. It then sends the first row and the
+ * number of rows of each strip it wants, and a negative first row when it is done. For every strip the
+ * worker replies with the first row, the number of rows and the counts of the strip, row by row.
+ *
+ * @see DistributedRenderer
+ */
+public class RenderNode {
+
+    /**
+     * Opens every connection, to reject peers that speak another protocol.
+     */
+    static final int MAGIC = 0x4D414E44;
+    static final int VERSION = 2;
+
+    private final ServerSocket serverSocket;
+    private final RenderEngine engine;
+    private final AtomicInteger connections = new AtomicInteger();
+
+    /**
+     * Creates a worker that listens on a port.
+     *
+     * @param port    The port to listen on, or 0 for any free port.
+     * @param threads The number of threads that render strips.
+     * @throws IOException If the port cannot be bound.
+     */
+    public RenderNode(int port, int threads) throws IOException {
+        this.serverSocket = new ServerSocket(port);
+        this.engine = new RenderEngine(threads);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accepts coordinators until the socket is closed, each on a thread of its own.
+     */
+    public void serve() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                Thread thread = new Thread(() -> handle(socket), "render-node-" + connections.incrementAndGet());
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops accepting coordinators and stops the render threads.
+     */
+    public void close() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        engine.shutdown();
+    }
+
+    private void handle(Socket socket) {
+        try (Socket s = socket) {
+            s.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a render coordinator of protocol version " + VERSION);
+            }
+            FractalView view = readView(in);
+            RenderOptions options = readOptions(in);
+            // The kernel, with its reference orbit on deep zooms, is prepared once for all strips.
+            PixelKernel kernel = RenderEngine.createKernel(view, options, new InteriorStats());
+            int width = view.getWidth();
+
+            while (true) {
+                int y0 = in.readInt();
+                if (y0 < 0) {
+                    return;
+                }
+                int rows = in.readInt();
+                if (rows <= 0 || y0 + rows > view.getHeight()) {
+                    throw new IOException("Rows " + y0 + " to " + (y0 + rows) + " are outside the view");
+                }
+                int[] iterations = new int[width * rows];
+                PixelKernel strip = new RowOffsetKernel(kernel, y0);
+                TileScheduler scheduler = engine.getScheduler();
+                TileStats stats = new TileStats(width, rows, scheduler.getParallelism());
+                boolean fill = options.hasRectangleFill();
+                scheduler.render(width, rows, fill ? TileScheduler.WHOLE_TILE : 1, (x0, ty0, x1, ty1) -> {
+                    if (fill) {
+                        return MarianiSilver.fill(strip, iterations, width, x0, ty0, x1, ty1, stats);
+                    }
+                    long cost = 0;
+                    for (int y = ty0; y < ty1; y++) {
+                        cost += strip.iterateRow(y, x0, x1, iterations, x0 + y * width);
+                    }
+                    return cost;
+                }, () -> false, stats);
+
+                out.writeInt(y0);
+                out.writeInt(rows);
+                writeInts(out, iterations, 0, iterations.length);
+                out.flush();
+            }
+        } catch (EOFException e) {
+            // The coordinator went away, for example because another worker finished the render.
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes the view and render options of a job.
+     *
+     * @param out     The stream to the worker.
+     * @param view    The view to render.
+     * @param options The render options.
+     * @throws IOException If the stream cannot be written.
+     */
+    static void writeJob(DataOutputStream out, FractalView view, RenderOptions options) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeUTF(view.getFractalType().name());
+        // The zoom as a mantissa and a binary exponent, since it may exceed the range of a double
+        out.writeDouble(view.getZoomMantissa());
+        out.writeInt(view.getZoomExponent());
+        // The center keeps all of its digits, which deep zooms need.
+        out.writeUTF(view.getCenterReal().toString());
+        out.writeUTF(view.getCenterImag().toString());
+        out.writeDouble(view.getJuliaCReal());
+        out.writeDouble(view.getJuliaCImag());
+        out.writeInt(view.getMaxIterations());
+        out.writeInt(view.getWidth());
+        out.writeInt(view.getHeight());
+        out.writeBoolean(options.isDeepZoom());
+        out.writeBoolean(options.hasInteriorShortcuts());
+        out.writeBoolean(options.hasRectangleFill());
+    }
+
+    private static FractalView readView(DataInputStream in) throws IOException {
+        FractalType type = FractalType.valueOf(in.readUTF());
+        double zoom = in.readDouble();
+        int zoomExponent = in.readInt();
+        BigDecimal centerReal = new BigDecimal(in.readUTF());
+        BigDecimal centerImag = new BigDecimal(in.readUTF());
+        double juliaCReal = in.readDouble();
+        double juliaCImag = in.readDouble();
+        int maxIterations = in.readInt();
+        int width = in.readInt();
+        int height = in.readInt();
+        return new FractalView(type, zoom, zoomExponent, centerReal, centerImag, juliaCReal, juliaCImag,
+                maxIterations, width, height);
+    }
+
+    private static RenderOptions readOptions(DataInputStream in) throws IOException {
+        boolean deepZoom = in.readBoolean();
+        boolean interiorShortcuts = in.readBoolean();
+        boolean rectangleFill = in.readBoolean();
+        return new RenderOptions(deepZoom, interiorShortcuts, rectangleFill);
+    }
+
+    /**
+     * Writes ints in big-endian order, converting them in blocks rather than one call per int.
+     */
+    static void writeInts(DataOutputStream out, int[] values, int offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Math.min(length, 8192) * Integer.BYTES);
+        for (int i = offset; i < offset + length; ) {
+            int n = Math.min(buffer.capacity() / Integer.BYTES, offset + length - i);
+            buffer.clear();
+            buffer.asIntBuffer().put(values, i, n);
+            out.write(buffer.array(), 0, n * Integer.BYTES);
+            i += n;
+        }
+    }
+
+    /**
+     * Reads ints written by {@link #writeInts}.
+     */
+    static void readInts(DataInputStream in, int[] values, int offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Math.min(length, 8192) * Integer.BYTES);
+        for (int i = offset; i < offset + length; ) {
+            int n = Math.min(buffer.capacity() / Integer.BYTES, offset + length - i);
+            in.readFully(buffer.array(), 0, n * Integer.BYTES);
+            buffer.clear();
+            buffer.asIntBuffer().get(values, i, n);
+            i += n;
+        }
+    }
+
+    /**
+     * Runs a worker until the JVM is stopped.
+     * <p>
+     * Arguments: the port to listen on and, optionally, the number of render threads (default one per
+     * core).
+     *
+     * @param args The arguments.
+     * @throws IOException If the port cannot be bound.
+     */
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        if (args.length < 1) {
+            System.err.println("Usage: RenderNode <port> [threads]");
+            System.exit(2);
+        }
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        RenderNode node = new RenderNode(Integer.parseInt(args[0]), threads);
+        System.out.println("Render node listening on port " + node.getPort() + " with " + threads + " threads");
+        node.serve();
+    }
+}
@@ -0,0 +1,90 @@
+import java.util.Objects;
+
+/**
+ * An immutable set of the choices that affect how a view is rendered but not what it shows: which
+ * kernel iterates the pixels, and which work it may skip. The one exception is single precision,
+ * which lets a few boundary pixels differ and is therefore only meant for interactive frames.
+ */
+public final class RenderOptions {
+
+    /**
+     * The options the viewer starts with.
+     */
+    public static final RenderOptions DEFAULT = new RenderOptions(true, true, false);
+
+    private final boolean deepZoom;
+    private final boolean interiorShortcuts;
+    private final boolean rectangleFill;
+    private final boolean singlePrecision;
+
+    /**
+     * Creates options that iterate in double precision or better.
+     *
+     * @param deepZoom          Whether views beyond the precision of a double use perturbation.
+     * @param interiorShortcuts Whether interior points are recognized without iterating them to the limit.
+     * @param rectangleFill     Whether uniform rectangles are filled with Mariani-Silver instead of iterated.
+     */
+    public RenderOptions(boolean deepZoom, boolean interiorShortcuts, boolean rectangleFill) {
+        this(deepZoom, interiorShortcuts, rectangleFill, false);
+    }
+
+    /**
+     * Creates options.
+     *
+     * @param deepZoom          Whether views beyond the precision of a double use perturbation.
+     * @param interiorShortcuts Whether interior points are recognized without iterating them to the limit.
+     * @param rectangleFill     Whether uniform rectangles are filled with Mariani-Silver instead of iterated.
+     * @param singlePrecision   Whether views at low zoom may be iterated in floats, where about one pixel in
+     *                          a hundred differs from the double image.
+     */
+    public RenderOptions(boolean deepZoom, boolean interiorShortcuts, boolean rectangleFill,
+                         boolean singlePrecision) {
+        this.deepZoom = deepZoom;
+        this.interiorShortcuts = interiorShortcuts;
+        this.rectangleFill = rectangleFill;
+        this.singlePrecision = singlePrecision;
+    }
+
+    public boolean isDeepZoom() {
+        return deepZoom;
+    }
+
+    public boolean hasInteriorShortcuts() {
+        return interiorShortcuts;
+    }
+
+    public boolean hasRectangleFill() {
+        return rectangleFill;
+    }
+
+    public boolean allowsSinglePrecision() {
+        return singlePrecision;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RenderOptions)) {
+            return false;
+        }
+        RenderOptions other = (RenderOptions) o;
+        return deepZoom == other.deepZoom
+                && interiorShortcuts == other.interiorShortcuts
+                && rectangleFill == other.rectangleFill
+                && singlePrecision == other.singlePrecision;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(deepZoom, interiorShortcuts, rectangleFill, singlePrecision);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("deep zoom %s, interior shortcuts %s, rectangle fill %s, single precision %s",
+                deepZoom ? "on" : "off", interiorShortcuts ? "on" : "off", rectangleFill ? "on" : "off",
+                singlePrecision ? "on" : "off");
+    }
+}
@@ -0,0 +1,20 @@
+/**
+ * A kernel that records the orbits of pixels that reach the iteration limit in an
+ * {@link OrbitCheckpoint}, and can continue such orbits with a higher limit.
+ */
+public interface ResumableKernel extends PixelKernel {
+
+    /**
+     * Continues the orbit of a pixel from the state it had after a number of iterations. The cycle
+     * detection starts over from that state, so a periodic orbit is recognized again after a few
+     * iterations.
+     *
+     * @param x    The pixel column.
+     * @param y    The pixel row.
+     * @param zx   The real part of the orbit point after iter iterations.
+     * @param zy   The imaginary part of the orbit point after iter iterations.
+     * @param iter The number of iterations the orbit has done.
+     * @return The number of iterations before the orbit escaped, or maxIterations if it did not.
+     */
+    int resume(int x, int y, double zx, double zy, int iter);
+}
@@ -0,0 +1,110 @@
+/**
+ * Renders the tiles of a frame whose iteration limit was raised, from the counts and the orbit
+ * checkpoint of the frame at the lower limit. Pixels that escaped before the lower limit keep their
+ * counts, periodic pixels stay interior, recorded orbits are continued where they stopped, and only the
+ * remaining pixels at the lower limit are iterated again from the start.
+ * <p>
+ * The counts are those of a render from scratch at the higher limit, with one exception: the cycle
+ * detection starts over where an orbit is continued, so it compares other pairs of orbit points. An
+ * orbit that comes within the tolerance of an earlier point without being periodic can then be taken
+ * for interior in one render and escape in the other. This only happens to boundary pixels whose orbits
+ * nearly repeat, and ResumeRendererTest, which compares the resumed counts with a render from scratch,
+ * finds none on its views.
+ * <p>
+ * For smooth coloring, the pixels that keep their counts also keep their fractions, and the kernel
+ * records those of the pixels it iterates.
+ */
+public class ResumeRenderer implements TileScheduler.TileRenderer {
+
+    private final PixelKernel kernel;
+    private final OrbitCheckpoint checkpoint;
+    private final int[] counts;
+    private final OrbitCheckpoint target;
+    private final Palette palette;
+    private final int[] iterations;
+    // The fractions at the lower limit and those of the frame, or null
+    private final float[] countFractions;
+    private final float[] fractions;
+    private final int[] pixels;
+    private final int stride;
+    // Whether the kernel can continue the orbits of the checkpoint
+    private final boolean resumes;
+
+    /**
+     * Creates a renderer for a frame.
+     *
+     * @param kernel     The kernel of the higher limit.
+     * @param checkpoint The orbits of the pixels that reached the lower limit.
+     * @param counts     The iteration counts at the lower limit, in the layout of the frame.
+     * @param target     The checkpoint the kernel records in, at the higher limit.
+     * @param palette    The palette that colors the iteration counts.
+     * @param iterations The iteration counts of the frame.
+     * @param pixels     The pixels of the frame.
+     * @param stride     The width of a row in the arrays.
+     */
+    public ResumeRenderer(PixelKernel kernel, OrbitCheckpoint checkpoint, int[] counts, OrbitCheckpoint target,
+                          Palette palette, int[] iterations, int[] pixels, int stride) {
+        this(kernel, checkpoint, counts, null, target, palette, iterations, null, pixels, stride);
+    }
+
+    /**
+     * Creates a renderer for a smoothly colored frame.
+     *
+     * @param kernel         The kernel of the higher limit, which records the fractions.
+     * @param checkpoint     The orbits of the pixels that reached the lower limit.
+     * @param counts         The iteration counts at the lower limit, in the layout of the frame.
+     * @param countFractions The fractional parts of the counts at the lower limit, or null.
+     * @param target         The checkpoint the kernel records in, at the higher limit.
+     * @param palette        The palette that colors the iteration counts.
+     * @param iterations     The iteration counts of the frame.
+     * @param fractions      The fractional parts of the counts of the frame, or null to color whole counts.
+     * @param pixels         The pixels of the frame.
+     * @param stride         The width of a row in the arrays.
+     */
+    public ResumeRenderer(PixelKernel kernel, OrbitCheckpoint checkpoint, int[] counts, float[] countFractions,
+                          OrbitCheckpoint target, Palette palette, int[] iterations, float[] fractions, int[] pixels,
+                          int stride) {
+        this.kernel = kernel;
+        this.checkpoint = checkpoint;
+        this.counts = counts;
+        this.target = target;
+        this.palette = palette;
+        this.iterations = iterations;
+        this.countFractions = countFractions;
+        this.fractions = fractions;
+        this.pixels = pixels;
+        this.stride = stride;
+        this.resumes = kernel instanceof ResumableKernel && kernel.getPrecision() == checkpoint.getPrecision()
+                && target.getPrecision() == checkpoint.getPrecision();
+    }
+
+    @Override
+    public long render(int x0, int y0, int x1, int y1) {
+        final int limit = checkpoint.getMaxIterations();
+        long cost = 0;
+        for (int y = y0; y < y1; y++) {
+            int row = y * stride;
+            for (int x = x0; x < x1; x++) {
+                int count = counts[row + x];
+                // Pixels at the lower limit are marked with -1 until they are continued or iterated.
+                iterations[row + x] = count < limit ? count : -1;
+                if (fractions != null && count < limit) {
+                    fractions[row + x] = countFractions[row + x];
+                }
+            }
+            if (resumes) {
+                cost += checkpoint.resumeRow((ResumableKernel) kernel, target, y, x0, x1, iterations, row + x0);
+            }
+            for (int x = x0; x < x1; x++) {
+                if (iterations[row + x] < 0) {
+                    int iter = kernel.iterate(x, y);
+                    iterations[row + x] = iter;
+                    cost += iter;
+                }
+            }
+        }
+
+        palette.color(iterations, fractions, pixels, stride, x0, y0, x1, y1);
+        return cost;
+    }
+}
@@ -0,0 +1,29 @@
+/**
+ * Shifts the rows of a kernel, so that row 0 of a strip is the first row of the strip in the frame.
+ */
+final class RowOffsetKernel implements PixelKernel {
+
+    private final PixelKernel kernel;
+    private final int offset;
+
+    /**
+     * Creates a shifted kernel.
+     *
+     * @param kernel The kernel of the whole frame.
+     * @param offset The row of the frame that is row 0 of the strip.
+     */
+    RowOffsetKernel(PixelKernel kernel, int offset) {
+        this.kernel = kernel;
+        this.offset = offset;
+    }
+
+    @Override
+    public int iterate(int x, int y) {
+        return kernel.iterate(x, y + offset);
+    }
+
+    @Override
+    public long iterateRow(int y, int x0, int x1, int step, int[] iterations, int offset) {
+        return kernel.iterateRow(y + this.offset, x0, x1, step, iterations, offset);
+    }
+}
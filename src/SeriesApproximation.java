@@ -0,0 +1,210 @@
+/**
+ * Skips the first iterations of every pixel of a deep zoom at once with a series approximation.
+ * <p>
+ * Near the reference orbit, the difference dz of a pixel after n iterations is well described by a
+ * polynomial in the pixel offset u: dz = A u + B u^2 + C u^3. The complex coefficients follow simple
+ * recurrences from the reference orbit, so they are advanced once per frame instead of once per
+ * pixel. The coefficients are scaled by the largest offset in the frame so that |u| never exceeds 1
+ * and they stay within the range of a double at any zoom.
+ * <p>
+ * The approximation is advanced for as long as it still agrees with a set of probe pixels spread over
+ * the frame, which are iterated exactly alongside it. The error must stay a small fraction of the
+ * distance between neighbouring pixels, since that is the distance the orbit has to resolve.
+ */
+public final class SeriesApproximation {
+
+    // The largest allowed error at the probes, as a fraction of the orbit distance of one pixel
+    private static final double TOLERANCE = 1e-3;
+    // The probes form a grid of this many points per side over the frame
+    private static final int PROBE_GRID = 5;
+
+    private final int skip;
+    private final double scale;
+    private final double ar;
+    private final double ai;
+    private final double br;
+    private final double bi;
+    private final double cr;
+    private final double ci;
+    private final long nanos;
+
+    private SeriesApproximation(int skip, double scale, double ar, double ai, double br, double bi,
+                                double cr, double ci, long nanos) {
+        this.skip = skip;
+        this.scale = scale;
+        this.ar = ar;
+        this.ai = ai;
+        this.br = br;
+        this.bi = bi;
+        this.cr = cr;
+        this.ci = ci;
+        this.nanos = nanos;
+    }
+
+    /**
+     * Advances the series for a view as far as the probe pixels allow.
+     *
+     * @param view  The view to render.
+     * @param orbit The reference orbit of the view.
+     * @return The series approximation, which may skip zero iterations.
+     */
+    public static SeriesApproximation compute(FractalView view, ReferenceOrbit orbit) {
+        long start = System.nanoTime();
+        boolean julia = view.getFractalType() == FractalType.JULIA;
+        double zoom = view.getZoom();
+        double halfWidth = view.getWidth() / 2.0;
+        double halfHeight = view.getHeight() / 2.0;
+        double scale = Math.hypot(halfWidth, halfHeight) / zoom;
+        // The orbit distance of one pixel is |A| / zoom, which is |A'| / (scale * zoom) for the scaled A'.
+        double pixelTolerance = TOLERANCE / (scale * zoom);
+
+        // Probe offsets, normalized so that the corners of the frame have |u| = 1
+        int probes = PROBE_GRID * PROBE_GRID;
+        double[] ur = new double[probes];
+        double[] ui = new double[probes];
+        double[] dzr = new double[probes];
+        double[] dzi = new double[probes];
+        for (int j = 0; j < PROBE_GRID; j++) {
+            for (int i = 0; i < PROBE_GRID; i++) {
+                int p = i + j * PROBE_GRID;
+                ur[p] = (2.0 * i / (PROBE_GRID - 1) - 1) * halfWidth / zoom / scale;
+                ui[p] = (2.0 * j / (PROBE_GRID - 1) - 1) * halfHeight / zoom / scale;
+                dzr[p] = julia ? ur[p] * scale : 0;
+                dzi[p] = julia ? ui[p] * scale : 0;
+            }
+        }
+
+        // A Julia orbit starts at the pixel itself, a Mandelbrot orbit gains the offset every step.
+        double ar = julia ? scale : 0, ai = 0;
+        double br = 0, bi = 0;
+        double cr = 0, ci = 0;
+        double dc = julia ? 0 : scale;
+        double startReal = orbit.getReal(0);
+        double startImag = orbit.getImag(0);
+        int limit = Math.min(orbit.getLength() - 1, view.getMaxIterations() - 1);
+        int skip = 0;
+
+        double[] nextDzr = new double[probes];
+        double[] nextDzi = new double[probes];
+        for (int n = 0; n < limit; n++) {
+            double zr = orbit.getReal(n);
+            double zi = orbit.getImag(n);
+
+            // A' = 2 Z A' + dc, B' = 2 Z B' + A'^2, C' = 2 Z C' + 2 A' B'
+            double nar = 2 * (zr * ar - zi * ai) + dc;
+            double nai = 2 * (zr * ai + zi * ar);
+            double nbr = 2 * (zr * br - zi * bi) + ar * ar - ai * ai;
+            double nbi = 2 * (zr * bi + zi * br) + 2 * ar * ai;
+            double ncr = 2 * (zr * cr - zi * ci) + 2 * (ar * br - ai * bi);
+            double nci = 2 * (zr * ci + zi * cr) + 2 * (ar * bi + ai * br);
+
+            double nextReal = orbit.getReal(n + 1);
+            double nextImag = orbit.getImag(n + 1);
+            double tolerance = pixelTolerance * Math.hypot(nar, nai);
+            boolean valid = Double.isFinite(ncr) && Double.isFinite(nci);
+
+            for (int p = 0; p < probes && valid; p++) {
+                // Iterate the probe exactly: dz' = 2 Z dz + dz^2 + dc
+                double pr = dzr[p];
+                double pi = dzi[p];
+                double npr = 2 * (zr * pr - zi * pi) + pr * pr - pi * pi + (julia ? 0 : ur[p] * scale);
+                double npi = 2 * (zr * pi + zi * pr) + 2 * pr * pi + (julia ? 0 : ui[p] * scale);
+                nextDzr[p] = npr;
+                nextDzi[p] = npi;
+
+                // The skipped iterations must not contain an escape or a point where the pixel would rebase.
+                double fullReal = nextReal + npr;
+                double fullImag = nextImag + npi;
+                double fromStartReal = fullReal - startReal;
+                double fromStartImag = fullImag - startImag;
+                if (fullReal * fullReal + fullImag * fullImag >= 4
+                        || fromStartReal * fromStartReal + fromStartImag * fromStartImag < npr * npr + npi * npi) {
+                    valid = false;
+                    break;
+                }
+
+                // Evaluate A' u + B' u^2 + C' u^3 with Horner's rule and compare.
+                double u = ur[p];
+                double v = ui[p];
+                double sr = ncr * u - nci * v + nbr;
+                double si = ncr * v + nci * u + nbi;
+                double tr = sr * u - si * v + nar;
+                double ti = sr * v + si * u + nai;
+                double approxReal = tr * u - ti * v;
+                double approxImag = tr * v + ti * u;
+                if (Math.hypot(approxReal - npr, approxImag - npi) > tolerance) {
+                    valid = false;
+                }
+            }
+
+            if (!valid) {
+                break;
+            }
+
+            ar = nar;
+            ai = nai;
+            br = nbr;
+            bi = nbi;
+            cr = ncr;
+            ci = nci;
+            System.arraycopy(nextDzr, 0, dzr, 0, probes);
+            System.arraycopy(nextDzi, 0, dzi, 0, probes);
+            skip = n + 1;
+        }
+
+        return new SeriesApproximation(skip, scale, ar, ai, br, bi, cr, ci, System.nanoTime() - start);
+    }
+
+    /**
+     * Gets the number of iterations every pixel skips.
+     *
+     * @return The number of skipped iterations.
+     */
+    public int getSkip() {
+        return skip;
+    }
+
+    /**
+     * Gets the time it took to advance and validate the series.
+     *
+     * @return The time in nanoseconds.
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * Evaluates the real part of the difference from the reference orbit after the skipped iterations.
+     *
+     * @param dx The real offset of the pixel from the center of the view.
+     * @param dy The imaginary offset of the pixel from the center of the view.
+     * @return The real part of dz.
+     */
+    public double real(double dx, double dy) {
+        double u = dx / scale;
+        double v = dy / scale;
+        double sr = cr * u - ci * v + br;
+        double si = cr * v + ci * u + bi;
+        double tr = sr * u - si * v + ar;
+        double ti = sr * v + si * u + ai;
+        return tr * u - ti * v;
+    }
+
+    /**
+     * Evaluates the imaginary part of the difference from the reference orbit after the skipped
+     * iterations.
+     *
+     * @param dx The real offset of the pixel from the center of the view.
+     * @param dy The imaginary offset of the pixel from the center of the view.
+     * @return The imaginary part of dz.
+     */
+    public double imag(double dx, double dy) {
+        double u = dx / scale;
+        double v = dy / scale;
+        double sr = cr * u - ci * v + br;
+        double si = cr * v + ci * u + bi;
+        double tr = sr * u - si * v + ar;
+        double ti = sr * v + si * u + ai;
+        return tr * v + ti * u;
+    }
+}
@@ -0,0 +1,234 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
+
+/**
+ * Exports a frame of any size as a PNG without holding the whole image in memory.
+ * <p>
+ * The frame is cut into horizontal strips of about a million pixels. Strips are rendered and compressed
+ * in parallel on the tile scheduler, and written to the PNG in order as soon as every strip above them
+ * has been written. At most a fixed number of strips is in flight at once, so the memory used is
+ * proportional to the strip height rather than to the area of the image.
+ * <p>
+ * For smooth coloring, every strip attaches a buffer for the fractions of its rows to the
+ * {@link EscapeFractions} the kernel records in, for as long as it renders. Supersampled pixels are
+ * colored from the whole counts of their samples.
+ */
+public class StripExporter {
+
+    // The number of pixels a strip aims for
+    private static final int STRIP_PIXELS = 1 << 20;
+
+    private final TileScheduler scheduler;
+    private final PixelKernel kernel;
+    private final Palette palette;
+    private final int width;
+    private final int height;
+    private final boolean rectangleFill;
+    private final int stripHeight;
+    private final int maxInFlight;
+    // The optional anti-aliasing, and the kernel of its samples
+    private final Supersampling supersampling;
+    private final PixelKernel sampleKernel;
+    // The fractions the kernel records in, or null
+    private final EscapeFractions fractions;
+    private final LongAdder refinedPixels = new LongAdder();
+
+    /**
+     * Creates an exporter.
+     *
+     * @param scheduler     The scheduler to render and compress the strips on.
+     * @param kernel        The kernel that iterates the pixels of the whole frame.
+     * @param palette       The palette that colors the iteration counts.
+     * @param width         The width of the frame.
+     * @param height        The height of the frame.
+     * @param rectangleFill Whether to fill uniform rectangles with Mariani-Silver instead of iterating every pixel.
+     */
+    public StripExporter(TileScheduler scheduler, PixelKernel kernel, Palette palette, int width, int height,
+                         boolean rectangleFill) {
+        this(scheduler, kernel, palette, width, height, rectangleFill, null, null);
+    }
+
+    /**
+     * Creates an exporter that anti-aliases the image with adaptive supersampling.
+     *
+     * @param scheduler     The scheduler to render and compress the strips on.
+     * @param kernel        The kernel that iterates the pixels of the whole frame.
+     * @param palette       The palette that colors the iteration counts.
+     * @param width         The width of the frame.
+     * @param height        The height of the frame.
+     * @param rectangleFill Whether to fill uniform rectangles with Mariani-Silver instead of iterating every pixel.
+     * @param supersampling The supersampling settings, or null to take one sample per pixel.
+     * @param sampleKernel  The kernel of the view scaled by {@link Supersampling#scale(FractalView)}, or null
+     *                      without supersampling.
+     */
+    public StripExporter(TileScheduler scheduler, PixelKernel kernel, Palette palette, int width, int height,
+                         boolean rectangleFill, Supersampling supersampling, PixelKernel sampleKernel) {
+        this(scheduler, kernel, palette, width, height, rectangleFill, supersampling, sampleKernel, null);
+    }
+
+    /**
+     * Creates an exporter that colors the image smoothly, optionally with supersampling.
+     *
+     * @param scheduler     The scheduler to render and compress the strips on.
+     * @param kernel        The kernel that iterates the pixels of the whole frame.
+     * @param palette       The palette that colors the iteration counts.
+     * @param width         The width of the frame.
+     * @param height        The height of the frame.
+     * @param rectangleFill Whether to fill uniform rectangles with Mariani-Silver instead of iterating every pixel.
+     * @param supersampling The supersampling settings, or null to take one sample per pixel.
+     * @param sampleKernel  The kernel of the view scaled by {@link Supersampling#scale(FractalView)}, or null
+     *                      without supersampling.
+     * @param fractions     The fractions the kernel records in, without buffers attached, or null to color
+     *                      whole counts.
+     */
+    public StripExporter(TileScheduler scheduler, PixelKernel kernel, Palette palette, int width, int height,
+                         boolean rectangleFill, Supersampling supersampling, PixelKernel sampleKernel,
+                         EscapeFractions fractions) {
+        this.scheduler = scheduler;
+        this.kernel = kernel;
+        this.palette = palette;
+        this.width = width;
+        this.height = height;
+        this.rectangleFill = rectangleFill;
+        this.stripHeight = Math.max(1, Math.min(height, STRIP_PIXELS / width));
+        // Enough strips to keep every worker busy while the next strip in order is being written
+        this.maxInFlight = 2 * scheduler.getParallelism() + 1;
+        this.supersampling = supersampling;
+        this.sampleKernel = sampleKernel;
+        this.fractions = fractions;
+    }
+
+    /**
+     * Renders the frame and writes it as a PNG.
+     *
+     * @param out The stream to write the PNG to. It is not closed.
+     * @throws IOException If the stream cannot be written, or a strip fails to render.
+     */
+    public void export(OutputStream out) throws IOException {
+        export(out, () -> false, rows -> {
+        });
+    }
+
+    /**
+     * Renders the frame and writes it as a PNG, reporting the progress after every strip.
+     *
+     * @param out       The stream to write the PNG to. It is not closed.
+     * @param cancelled Checked while rendering; when it returns true the export stops. What was written to
+     *                  the stream by then is not a valid PNG.
+     * @param progress  Receives the number of rows written so far, after every strip.
+     * @throws IOException           If the stream cannot be written, or a strip fails to render.
+     * @throws CancellationException If the export was cancelled.
+     */
+    public void export(OutputStream out, BooleanSupplier cancelled, IntConsumer progress) throws IOException {
+        PngStripEncoder encoder = new PngStripEncoder(out, width, height);
+        Deque<ForkJoinTask<PngStripEncoder.Strip>> inFlight = new ArrayDeque<>();
+        int next = 0;
+        int written = 0;
+        try {
+            while (next < height || !inFlight.isEmpty()) {
+                while (next < height && inFlight.size() < maxInFlight) {
+                    final int y0 = next;
+                    final int rows = Math.min(stripHeight, height - y0);
+                    inFlight.add(scheduler.submit(() -> renderStrip(y0, rows, cancelled)));
+                    next += rows;
+                }
+                PngStripEncoder.Strip strip = inFlight.removeFirst().get();
+                // A strip that was cut short by the cancellation must not be written.
+                if (cancelled.getAsBoolean()) {
+                    throw new CancellationException("Export cancelled");
+                }
+                encoder.write(strip);
+                written += strip.getRows();
+                progress.accept(written);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Export interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Rendering a strip failed", e.getCause());
+        } finally {
+            for (ForkJoinTask<PngStripEncoder.Strip> strip : inFlight) {
+                strip.cancel(true);
+            }
+        }
+        encoder.finish();
+    }
+
+    /**
+     * Renders and compresses one strip.
+     *
+     * @param y0        The first row of the strip in the frame.
+     * @param rows      The number of rows of the strip.
+     * @param cancelled Checked between bands; when it returns true the rest of the strip is skipped.
+     * @return The compressed strip, or null if the export was cancelled.
+     */
+    private PngStripEncoder.Strip renderStrip(int y0, int rows, BooleanSupplier cancelled) {
+        // Supersampling compares every pixel with its neighbours, so it also renders the row above and
+        // the row below the strip.
+        int top = supersampling == null ? y0 : Math.max(0, y0 - 1);
+        int bottom = supersampling == null ? y0 + rows : Math.min(height, y0 + rows + 1);
+        int rendered = bottom - top;
+        int first = y0 - top;
+
+        int[] iterations = new int[width * rendered];
+        int[] pixels = new int[width * rendered];
+        // Only the rows of the strip itself are recorded; the rows it shares belong to the neighbours.
+        float[] stripFractions = null;
+        if (fractions != null) {
+            stripFractions = new float[width * rendered];
+            fractions.attach(stripFractions, top, y0, rows);
+        }
+        TileStats stats = new TileStats(width, rendered, scheduler.getParallelism());
+        FrameRenderer renderer = new FrameRenderer(new RowOffsetKernel(kernel, top), palette, iterations,
+                stripFractions, pixels, width, rectangleFill, stats);
+        try {
+            scheduler.render(width, rendered, renderer.getBandHeight(), renderer, cancelled, stats);
+        } finally {
+            if (fractions != null) {
+                fractions.detach(y0, rows);
+            }
+        }
+
+        if (supersampling != null && !cancelled.getAsBoolean()) {
+            TileStats refineStats = new TileStats(width, rows, scheduler.getParallelism());
+            scheduler.render(width, rows, TileScheduler.WHOLE_TILE, (x0, ry0, x1, ry1) -> {
+                int refined = supersampling.refine(sampleKernel, palette, iterations, pixels, width, rendered, top,
+                        x0, ry0 + first, x1, ry1 + first);
+                refinedPixels.add(refined);
+                return (long) refined * supersampling.getPattern().getSamples();
+            }, cancelled, refineStats);
+        }
+        if (cancelled.getAsBoolean()) {
+            return null;
+        }
+        return PngStripEncoder.compress(pixels, first * width, width, rows, y0 + rows == height);
+    }
+
+    /**
+     * Gets the number of pixels that were supersampled so far.
+     *
+     * @return The refined pixels.
+     */
+    public long getRefinedPixels() {
+        return refinedPixels.sum();
+    }
+
+    @Override
+    public String toString() {
+        String summary = String.format("%dx%d PNG in strips of %d rows", width, height, stripHeight);
+        if (supersampling != null) {
+            long refined = refinedPixels.sum();
+            summary += String.format(", %d pixels (%.2f%%) refined with %s", refined,
+                    100.0 * refined / ((long) width * height), supersampling);
+        }
+        return summary;
+    }
+}
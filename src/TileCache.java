@@ -0,0 +1,277 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A memory-bounded cache of the iteration counts of square tiles, so that regions that were rendered
+ * recently do not have to be computed again.
+ * <p>
+ * The tiles form a pyramid: every zoom level has its own grid of tiles, laid out on the global pixel
+ * grid of that level, where pixel (gx, gy) is the point (gx / zoom, gy / zoom) of the complex plane.
+ * A tile is identified by the fractal, the zoom level, its position on that grid, the iteration
+ * limit and the precision tier, since tiers may differ on a few boundary pixels. When the tiles exceed the memory budget, the least recently used ones are evicted.
+ * <p>
+ * A {@link DiskTileStore} can be attached as a second level: tiles that miss in memory are looked up
+ * on disk, and every new tile is also written to disk.
+ */
+public class TileCache {
+
+    /**
+     * The width and height of a tile in pixels.
+     */
+    public static final int TILE_SIZE = 64;
+
+    // The memory of one tile, ignoring the small overhead of its key
+    private static final long TILE_BYTES = (long) TILE_SIZE * TILE_SIZE * Integer.BYTES;
+
+    // Iterates in access order, so the first entry is the least recently used tile
+    private final LinkedHashMap<Key, int[]> tiles = new LinkedHashMap<>(16, 0.75f, true);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private long budgetBytes;
+    // The optional second level on disk
+    private volatile DiskTileStore diskStore;
+
+    /**
+     * Creates a cache.
+     *
+     * @param budgetBytes The memory the cached tiles may use.
+     */
+    public TileCache(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * Looks up a tile.
+     *
+     * @param key The tile.
+     * @return The iteration counts of the tile, row by row, or null if it is not cached. The array
+     * must not be modified.
+     */
+    public int[] get(Key key) {
+        synchronized (this) {
+            int[] tile = tiles.get(key);
+            if (tile != null) {
+                hits.increment();
+                return tile;
+            }
+        }
+
+        DiskTileStore store = diskStore;
+        int[] tile = store == null ? null : store.read(key);
+        if (tile == null) {
+            misses.increment();
+            return null;
+        }
+        diskHits.increment();
+        synchronized (this) {
+            tiles.put(key, tile);
+            evict();
+        }
+        return tile;
+    }
+
+    /**
+     * Checks whether a tile is in memory, without counting a hit or a miss or changing its recency.
+     *
+     * @param key The tile.
+     * @return True if the tile is cached in memory.
+     */
+    public synchronized boolean contains(Key key) {
+        return tiles.containsKey(key);
+    }
+
+    /**
+     * Stores a tile, evicting the least recently used tiles if the cache is over its budget. Tiles that
+     * were not cached before are also written to the disk store.
+     *
+     * @param key   The tile.
+     * @param tile  The iteration counts of the tile, row by row. The cache keeps the array.
+     */
+    public void put(Key key, int[] tile) {
+        boolean known;
+        synchronized (this) {
+            known = tiles.put(key, tile) != null;
+            evict();
+        }
+        DiskTileStore store = diskStore;
+        if (store != null && !known) {
+            store.write(key, tile);
+        }
+    }
+
+    /**
+     * Attaches a disk store as the second level of the cache, or detaches it.
+     *
+     * @param diskStore The disk store, or null for a memory-only cache.
+     */
+    public void setDiskStore(DiskTileStore diskStore) {
+        this.diskStore = diskStore;
+    }
+
+    public DiskTileStore getDiskStore() {
+        return diskStore;
+    }
+
+    /**
+     * Changes the memory budget, evicting tiles right away if the cache is over the new budget.
+     *
+     * @param budgetBytes The memory the cached tiles may use.
+     */
+    public synchronized void setBudget(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+        evict();
+    }
+
+    /**
+     * Removes all tiles.
+     */
+    public synchronized void clear() {
+        tiles.clear();
+    }
+
+    public synchronized int size() {
+        return tiles.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getDiskHits() {
+        return diskHits.sum();
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<Key, int[]>> lru = tiles.entrySet().iterator();
+        while (tiles.size() * TILE_BYTES > budgetBytes && lru.hasNext()) {
+            lru.next();
+            lru.remove();
+            evictions.increment();
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        String summary = String.format("tile cache: %d tiles (%.1f of %.1f MB), %d hits, %d misses, %d evictions",
+                tiles.size(), tiles.size() * TILE_BYTES / 1048576.0, budgetBytes / 1048576.0,
+                hits.sum(), misses.sum(), evictions.sum());
+        DiskTileStore store = diskStore;
+        if (store != null) {
+            summary += String.format(", %d disk hits; %s", diskHits.sum(), store);
+        }
+        return summary;
+    }
+
+    /**
+     * Identifies a tile of the pyramid.
+     */
+    public static final class Key {
+
+        private final FractalType fractalType;
+        private final double juliaCReal;
+        private final double juliaCImag;
+        private final int zoomLevel;
+        private final long tileX;
+        private final long tileY;
+        private final int maxIterations;
+        private final PrecisionTier precision;
+
+        /**
+         * Creates the key of a tile.
+         *
+         * @param view      The view the tile belongs to.
+         * @param zoomLevel The zoom level of the view.
+         * @param tileX     The column of the tile on the grid of the zoom level.
+         * @param tileY     The row of the tile on the grid of the zoom level.
+         * @param precision The precision tier the tile is iterated in.
+         */
+        public Key(FractalView view, int zoomLevel, long tileX, long tileY, PrecisionTier precision) {
+            boolean julia = view.getFractalType() == FractalType.JULIA;
+            this.fractalType = view.getFractalType();
+            // The Julia parameter does not affect Mandelbrot tiles.
+            this.juliaCReal = julia ? view.getJuliaCReal() : 0;
+            this.juliaCImag = julia ? view.getJuliaCImag() : 0;
+            this.zoomLevel = zoomLevel;
+            this.tileX = tileX;
+            this.tileY = tileY;
+            this.maxIterations = view.getMaxIterations();
+            this.precision = precision;
+        }
+
+        public FractalType getFractalType() {
+            return fractalType;
+        }
+
+        public double getJuliaCReal() {
+            return juliaCReal;
+        }
+
+        public double getJuliaCImag() {
+            return juliaCImag;
+        }
+
+        public int getZoomLevel() {
+            return zoomLevel;
+        }
+
+        public long getTileX() {
+            return tileX;
+        }
+
+        public long getTileY() {
+            return tileY;
+        }
+
+        public int getMaxIterations() {
+            return maxIterations;
+        }
+
+        public PrecisionTier getPrecision() {
+            return precision;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return fractalType == other.fractalType
+                    && Double.compare(juliaCReal, other.juliaCReal) == 0
+                    && Double.compare(juliaCImag, other.juliaCImag) == 0
+                    && zoomLevel == other.zoomLevel
+                    && tileX == other.tileX
+                    && tileY == other.tileY
+                    && maxIterations == other.maxIterations
+                    && precision == other.precision;
+        }
+
+        @Override
+        public int hashCode() {
+            // Computed by hand rather than with Objects.hash, which boxes every field on every cache lookup.
+            int hash = fractalType.hashCode();
+            hash = 31 * hash + Double.hashCode(juliaCReal);
+            hash = 31 * hash + Double.hashCode(juliaCImag);
+            hash = 31 * hash + zoomLevel;
+            hash = 31 * hash + Long.hashCode(tileX);
+            hash = 31 * hash + Long.hashCode(tileY);
+            hash = 31 * hash + maxIterations;
+            return 31 * hash + precision.hashCode();
+        }
+    }
+}
@@ -0,0 +1,295 @@
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Schedules the pixels of a frame as rectangular tiles on a work-stealing fork/join pool.
+ * <p>
+ * The image is split in half along its longer side until the pieces are small enough to be tiles.
+ * A tile renders its rows one at a time; if it turns out to be expensive while other workers are
+ * starving for work, it forks the lower half of its remaining rows as a new tile that an idle worker
+ * can steal. Cheap tiles near the escape region finish without ever splitting, while tiles through
+ * the interior of the set keep dividing until every core is busy until the end of the frame.
+ */
+public class TileScheduler {
+
+    // Tiles are not split up-front below this many pixels.
+    private static final int TILE_AREA = 64 * 64;
+    // A tile only splits after it has spent this long rendering.
+    private static final long SPLIT_AFTER_NANOS = 200_000L;
+    // A tile never splits into pieces with fewer rows than this.
+    private static final int MIN_SPLIT_ROWS = 2;
+
+    /**
+     * A band height that hands every tile to the renderer in one piece.
+     */
+    public static final int WHOLE_TILE = Integer.MAX_VALUE;
+
+    /**
+     * Renders a rectangle of pixels.
+     */
+    @FunctionalInterface
+    public interface TileRenderer {
+
+        /**
+         * Renders the pixels in the given half-open rectangle.
+         *
+         * @param x0 The first column.
+         * @param y0 The first row.
+         * @param x1 The column after the last one.
+         * @param y1 The row after the last one.
+         * @return The cost of the rectangle, as the number of iterations performed.
+         */
+        long render(int x0, int y0, int x1, int y1);
+    }
+
+    private final ForkJoinPool pool;
+
+    public TileScheduler(int parallelism) {
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Creates a scheduler whose workers are named daemon threads with the given priority, for work in
+     * the background that must not hold the application open or crowd out the interactive view.
+     *
+     * @param parallelism The number of worker threads.
+     * @param threadName  The prefix of the names of the worker threads.
+     * @param priority    The priority of the worker threads.
+     */
+    public TileScheduler(int parallelism, String threadName, int priority) {
+        this.pool = new ForkJoinPool(parallelism, p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName(threadName + "-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            thread.setPriority(priority);
+            return thread;
+        }, null, false);
+    }
+
+    /**
+     * Renders a full frame and waits for it to finish.
+     *
+     * @param width     The width of the frame.
+     * @param height    The height of the frame.
+     * @param renderer  The renderer for individual tiles.
+     * @param cancelled Checked between rows; when it returns true the remaining tiles are skipped.
+     * @return The statistics of the tiles that were rendered.
+     */
+    public TileStats render(int width, int height, TileRenderer renderer, BooleanSupplier cancelled) {
+        TileStats stats = new TileStats(width, height, pool.getParallelism());
+        render(width, height, 1, renderer, cancelled, stats);
+        return stats;
+    }
+
+    /**
+     * Renders a full frame and waits for it to finish.
+     *
+     * @param width      The width of the frame.
+     * @param height     The height of the frame.
+     * @param bandHeight The number of rows handed to the renderer at once, or WHOLE_TILE.
+     * @param renderer   The renderer for individual tiles.
+     * @param cancelled  Checked between bands; when it returns true the remaining tiles are skipped.
+     * @param stats      The statistics to record the rendered tiles in.
+     */
+    public void render(int width, int height, int bandHeight, TileRenderer renderer, BooleanSupplier cancelled,
+                       TileStats stats) {
+        pool.invoke(new TileTask(0, 0, width, height, bandHeight, renderer, cancelled, stats));
+    }
+
+    /**
+     * Starts rendering a frame without waiting for it.
+     *
+     * @param width      The width of the frame.
+     * @param height     The height of the frame.
+     * @param bandHeight The number of rows handed to the renderer at once, or WHOLE_TILE.
+     * @param renderer   The renderer for individual tiles.
+     * @param cancelled  Checked between bands; when it returns true the remaining tiles are skipped.
+     * @param stats      The statistics to record the rendered tiles in.
+     * @return The task of the frame, which completes when all tiles are done.
+     */
+    public ForkJoinTask<Void> submit(int width, int height, int bandHeight, TileRenderer renderer,
+                                     BooleanSupplier cancelled, TileStats stats) {
+        return pool.submit(new TileTask(0, 0, width, height, bandHeight, renderer, cancelled, stats));
+    }
+
+    /**
+     * Starts rendering some regions of a frame without waiting for them. This is used when only parts of
+     * a frame need to be computed, such as the strips exposed by panning.
+     *
+     * @param regions    The rectangles of the frame to render.
+     * @param bandHeight The number of rows handed to the renderer at once, or WHOLE_TILE.
+     * @param renderer   The renderer for individual tiles.
+     * @param cancelled  Checked between bands; when it returns true the remaining tiles are skipped.
+     * @param stats      The statistics to record the rendered tiles in.
+     * @return The task of the regions, which completes when all their tiles are done.
+     */
+    public ForkJoinTask<Void> submit(List<Rectangle> regions, int bandHeight, TileRenderer renderer,
+                                     BooleanSupplier cancelled, TileStats stats) {
+        List<TileTask> tasks = new ArrayList<>();
+        for (Rectangle region : regions) {
+            tasks.add(new TileTask(region.x, region.y, region.x + region.width, region.y + region.height,
+                    bandHeight, renderer, cancelled, stats));
+        }
+        return pool.submit(new RegionsTask(tasks));
+    }
+
+    /**
+     * Runs a job on the worker threads. The job may render frames itself, whose tiles then share the
+     * workers with everything else in flight.
+     *
+     * @param job The job.
+     * @param <T> The type of the result of the job.
+     * @return The task of the job.
+     */
+    public <T> ForkJoinTask<T> submit(Callable<T> job) {
+        return pool.submit(job);
+    }
+
+    /**
+     * Gets the number of worker threads.
+     *
+     * @return The parallelism of the pool.
+     */
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Shuts down the worker threads.
+     */
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private static class RegionsTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<TileTask> regions;
+
+        RegionsTask(List<TileTask> regions) {
+            this.regions = regions;
+        }
+
+        @Override
+        protected void compute() {
+            invokeAll(regions);
+        }
+    }
+
+    private static class TileTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int x0;
+        private final int y0;
+        private final int x1;
+        private final int y1;
+        private final int bandHeight;
+        private final TileRenderer renderer;
+        private final BooleanSupplier cancelled;
+        private final TileStats stats;
+        // When the task was queued, to measure how long it waited for a worker
+        private final long queuedNanos = System.nanoTime();
+
+        TileTask(int x0, int y0, int x1, int y1, int bandHeight, TileRenderer renderer, BooleanSupplier cancelled,
+                 TileStats stats) {
+            this.x0 = x0;
+            this.y0 = y0;
+            this.x1 = x1;
+            this.y1 = y1;
+            this.bandHeight = bandHeight;
+            this.renderer = renderer;
+            this.cancelled = cancelled;
+            this.stats = stats;
+        }
+
+        @Override
+        protected void compute() {
+            int w = x1 - x0;
+            int h = y1 - y0;
+            if (w <= 0 || h <= 0 || cancelled.getAsBoolean()) {
+                return;
+            }
+
+            // Split the rectangle along its longer side until it is tile-sized.
+            if ((long) w * h > TILE_AREA) {
+                if (w >= h) {
+                    int mid = x0 + w / 2;
+                    invokeAll(new TileTask(x0, y0, mid, y1, bandHeight, renderer, cancelled, stats),
+                            new TileTask(mid, y0, x1, y1, bandHeight, renderer, cancelled, stats));
+                } else {
+                    int mid = y0 + h / 2;
+                    invokeAll(new TileTask(x0, y0, x1, mid, bandHeight, renderer, cancelled, stats),
+                            new TileTask(x0, mid, x1, y1, bandHeight, renderer, cancelled, stats));
+                }
+                return;
+            }
+
+            renderTile();
+        }
+
+        /**
+         * Renders the tile band by band, handing off the lower half of the remaining rows whenever the
+         * tile has become expensive and the pool has run out of queued work.
+         */
+        private void renderTile() {
+            RenderEvents.TileEvent event = new RenderEvents.TileEvent();
+            event.begin();
+            long start = System.nanoTime();
+            long cost = 0;
+            int end = y1;
+            List<TileTask> splits = null;
+
+            for (int y = y0; y < end; ) {
+                if (cancelled.getAsBoolean()) {
+                    break;
+                }
+                int bandEnd = (int) Math.min((long) y + bandHeight, end);
+                cost += renderer.render(x0, y, x1, bandEnd);
+                stats.recordPixels((long) (x1 - x0) * (bandEnd - y));
+                y = bandEnd;
+
+                int remaining = end - y;
+                if (remaining >= 2 * MIN_SPLIT_ROWS
+                        && System.nanoTime() - start > SPLIT_AFTER_NANOS
+                        && getSurplusQueuedTaskCount() <= 0) {
+                    int mid = y + remaining / 2;
+                    TileTask split = new TileTask(x0, mid, x1, end, bandHeight, renderer, cancelled, stats);
+                    split.fork();
+                    if (splits == null) {
+                        splits = new ArrayList<>();
+                    }
+                    splits.add(split);
+                    stats.recordSplit();
+                    end = mid;
+                }
+            }
+
+            stats.recordTile(x0, y0, x1 - x0, end - y0, cost, System.nanoTime() - start, start - queuedNanos);
+            event.end();
+            if (event.shouldCommit()) {
+                event.x = x0;
+                event.y = y0;
+                event.width = x1 - x0;
+                event.height = end - y0;
+                event.iterations = cost;
+                event.queueWait = start - queuedNanos;
+                event.commit();
+            }
+
+            if (splits != null) {
+                for (TileTask split : splits) {
+                    split.join();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,445 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.awt.Color;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Serves the fractals as PNG map tiles over HTTP, for embedding in web pages with any slippy map
+ * library. Only the JDK's built-in HTTP server is used.
+ * <p>
+ * Tiles are requested as {@code /{fractal}/{z}/{x}/{y}.png}, where the fractal is mandelbrot or julia,
+ * z is the zoom level and x and y are the column and row of the tile on the grid of that level. Level 0
+ * is a single tile that covers the square from -2.5 - 2i to 1.5 + 2i, and every level doubles the number
+ * of tiles in each direction. Optional query parameters choose the iteration limit
+ * ({@code iterations}), the color scheme ({@code color}) and the constant of a Julia set
+ * ({@code c=real,imag}).
+ * <p>
+ * Requests are handled on virtual threads where the JVM has them, and on a cached thread pool
+ * otherwise; they only wait, while the pixels are computed on the bounded worker pool of a
+ * {@link RenderEngine} with the same kernels as the viewer. Concurrent requests for the same tile share
+ * one computation, and the encoded tiles are kept in a memory-bounded LRU response cache. HEAD requests
+ * are answered from that cache and never render a tile.
+ */
+public class TileServer {
+
+    /**
+     * The width and height of a tile in pixels.
+     */
+    public static final int TILE_SIZE = 256;
+
+    // The deepest zoom level, about 1e50 pixels per unit; it bounds the precision, and so the cost, of
+    // the reference orbits of deep tiles.
+    private static final int MAX_LEVEL = 160;
+    // The largest iteration limit a request may ask for
+    private static final int MAX_ITERATIONS = 100_000;
+    private static final int DEFAULT_ITERATIONS = 1000;
+    // The square of the complex plane that tile 0/0/0 covers
+    private static final BigDecimal ORIGIN_REAL = new BigDecimal("-2.5");
+    private static final BigDecimal ORIGIN_IMAG = new BigDecimal("-2");
+    private static final BigDecimal EXTENT = new BigDecimal(4);
+    private static final double DEFAULT_JULIA_REAL = -0.7;
+    private static final double DEFAULT_JULIA_IMAG = 0.27015;
+    // Tiles never change, so clients and proxies may keep them for a day.
+    private static final String CACHE_CONTROL = "public, max-age=86400";
+
+    private final HttpServer server;
+    private final RenderEngine engine;
+    private final ExecutorService requestExecutor = newRequestExecutor();
+    private final ResponseCache cache;
+    // The tiles being computed, by their cache key; requests for them wait for the same future
+    private final ConcurrentHashMap<String, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder rendered = new LongAdder();
+    private final LongAdder shared = new LongAdder();
+    // The palette of the latest tile; the tiles of a map nearly always share it
+    private volatile Palette palette;
+
+    /**
+     * Creates a server. It does not accept requests until it is started.
+     *
+     * @param address     The address and port to listen on.
+     * @param threads     The number of worker threads that compute tiles.
+     * @param cacheBytes  The memory the cached PNG tiles may use.
+     * @throws IOException If the address cannot be bound.
+     */
+    public TileServer(InetSocketAddress address, int threads, long cacheBytes) throws IOException {
+        this.engine = new RenderEngine(new TileScheduler(threads, "tile-worker", Thread.NORM_PRIORITY));
+        this.cache = new ResponseCache(cacheBytes);
+        this.server = HttpServer.create(address, 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(requestExecutor);
+    }
+
+    /**
+     * Starts accepting requests in the background.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests, waits up to a second for the ones in progress and stops the workers.
+     */
+    public void stop() {
+        server.stop(1);
+        requestExecutor.shutdownNow();
+        engine.shutdown();
+    }
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod()) && !"HEAD".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                sendError(exchange, 405, "Only GET and HEAD are supported");
+                return;
+            }
+            TileRequest request;
+            try {
+                request = TileRequest.parse(exchange.getRequestURI());
+            } catch (IllegalArgumentException e) {
+                sendError(exchange, 404, e.getMessage());
+                return;
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", "image/png");
+            exchange.getResponseHeaders().set("Cache-Control", CACHE_CONTROL);
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                // Probes never render: the length is only known for tiles that are already cached.
+                byte[] cached = cache.peek(request.getKey());
+                if (cached != null) {
+                    exchange.getResponseHeaders().set("Content-Length", Integer.toString(cached.length));
+                }
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            byte[] png = getTile(request);
+            exchange.sendResponseHeaders(200, png.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(png);
+            }
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            sendError(exchange, 500, "The tile could not be rendered");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Gets the PNG of a tile from the cache, from a computation already in progress or by rendering it.
+     *
+     * @param request The tile.
+     * @return The encoded tile.
+     */
+    private byte[] getTile(TileRequest request) {
+        String key = request.getKey();
+        byte[] png = cache.get(key);
+        if (png != null) {
+            return png;
+        }
+
+        CompletableFuture<byte[]> future = new CompletableFuture<>();
+        CompletableFuture<byte[]> running = inFlight.putIfAbsent(key, future);
+        if (running != null) {
+            shared.increment();
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                throw new IllegalStateException("Rendering " + key + " failed", e.getCause());
+            }
+        }
+
+        try {
+            // Another request may have finished the tile between the cache lookup and claiming it.
+            png = cache.peek(key);
+            if (png == null) {
+                png = render(request);
+                cache.put(key, png);
+            }
+            future.complete(png);
+            return png;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    private byte[] render(TileRequest request) {
+        FractalView view = request.getView();
+        int[] pixels = engine.renderPixels(view, RenderOptions.DEFAULT,
+                palette(request.colorScheme.getColor(), view.getMaxIterations()));
+        rendered.increment();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(TILE_SIZE * TILE_SIZE);
+        try {
+            PngStripEncoder encoder = new PngStripEncoder(out, TILE_SIZE, TILE_SIZE);
+            encoder.write(PngStripEncoder.compress(pixels, TILE_SIZE, TILE_SIZE, true));
+            encoder.finish();
+        } catch (IOException e) {
+            // A byte array stream does not throw.
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private Palette palette(Color color, int maxIterations) {
+        Palette latest = palette;
+        if (latest == null || !latest.matches(color, maxIterations, ColoringMode.LINEAR)) {
+            latest = new Palette(color, maxIterations);
+            palette = latest;
+        }
+        return latest;
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Creates the executor that handles the requests: one virtual thread per request on JVMs that have
+     * virtual threads, and a cached pool of daemon threads on older ones. The server is compiled for
+     * Java 17, so the virtual thread executor is looked up by reflection.
+     */
+    private static ExecutorService newRequestExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "tile-request-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("tile server on %s: %d tiles rendered, %d requests shared a rendering; %s",
+                getAddress(), rendered.sum(), shared.sum(), cache);
+    }
+
+    /**
+     * A parsed tile request.
+     */
+    private static final class TileRequest {
+
+        private final FractalType fractalType;
+        private final int level;
+        private final long tileX;
+        private final long tileY;
+        private final int maxIterations;
+        private final ColorScheme colorScheme;
+        private final double juliaCReal;
+        private final double juliaCImag;
+
+        private TileRequest(FractalType fractalType, int level, long tileX, long tileY, int maxIterations,
+                            ColorScheme colorScheme, double juliaCReal, double juliaCImag) {
+            this.fractalType = fractalType;
+            this.level = level;
+            this.tileX = tileX;
+            this.tileY = tileY;
+            this.maxIterations = maxIterations;
+            this.colorScheme = colorScheme;
+            this.juliaCReal = juliaCReal;
+            this.juliaCImag = juliaCImag;
+        }
+
+        /**
+         * Parses the path and query of a request.
+         *
+         * @param uri The requested URI.
+         * @return The tile.
+         * @throws IllegalArgumentException If the URI is not a valid tile.
+         */
+        static TileRequest parse(URI uri) {
+            String[] parts = uri.getPath().split("/");
+            if (parts.length != 5 || !parts[0].isEmpty() || !parts[4].endsWith(".png")) {
+                throw new IllegalArgumentException("Expected /{fractal}/{z}/{x}/{y}.png");
+            }
+            FractalType type;
+            try {
+                type = FractalType.valueOf(parts[1].toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown fractal " + parts[1]);
+            }
+            int level = Integer.parseInt(parts[2]);
+            long x = Long.parseLong(parts[3]);
+            long y = Long.parseLong(parts[4].substring(0, parts[4].length() - ".png".length()));
+            if (level < 0 || level > MAX_LEVEL) {
+                throw new IllegalArgumentException("The zoom level must be from 0 to " + MAX_LEVEL);
+            }
+            // Levels beyond 62 have more tiles than a long can count, so only their first tiles exist.
+            if (x < 0 || y < 0 || (level < 63 && (x >> level != 0 || y >> level != 0))) {
+                throw new IllegalArgumentException("No tile " + x + "/" + y + " on level " + level);
+            }
+
+            int iterations = DEFAULT_ITERATIONS;
+            ColorScheme color = ColorScheme.RED;
+            double cReal = DEFAULT_JULIA_REAL;
+            double cImag = DEFAULT_JULIA_IMAG;
+            String query = uri.getQuery();
+            if (query != null) {
+                for (String parameter : query.split("&")) {
+                    int equals = parameter.indexOf('=');
+                    String name = equals < 0 ? parameter : parameter.substring(0, equals);
+                    String value = equals < 0 ? "" : parameter.substring(equals + 1);
+                    switch (name) {
+                        case "iterations":
+                            iterations = Integer.parseInt(value);
+                            if (iterations < 1 || iterations > MAX_ITERATIONS) {
+                                throw new IllegalArgumentException("The iterations must be from 1 to "
+                                        + MAX_ITERATIONS);
+                            }
+                            break;
+                        case "color":
+                            color = ColorScheme.valueOf(value.toUpperCase(Locale.ROOT));
+                            break;
+                        case "c":
+                            String[] c = value.split(",");
+                            if (c.length != 2) {
+                                throw new IllegalArgumentException("Expected c=real,imag");
+                            }
+                            cReal = Double.parseDouble(c[0]);
+                            cImag = Double.parseDouble(c[1]);
+                            break;
+                        default:
+                            // Unknown parameters, such as cache busters, are ignored.
+                            break;
+                    }
+                }
+            }
+            if (type != FractalType.JULIA) {
+                cReal = 0;
+                cImag = 0;
+            }
+            return new TileRequest(type, level, x, y, iterations, color, cReal, cImag);
+        }
+
+        /**
+         * Gets the view of the tile. The center is exact, since the tile size is a power of two, so deep
+         * levels render with perturbation like deep views of the viewer.
+         *
+         * @return The view of the tile.
+         */
+        FractalView getView() {
+            BigDecimal tiles = BigDecimal.valueOf(2).pow(level);
+            BigDecimal tileExtent = EXTENT.divide(tiles);
+            BigDecimal half = new BigDecimal("0.5");
+            BigDecimal centerReal = ORIGIN_REAL.add(tileExtent.multiply(BigDecimal.valueOf(tileX).add(half)));
+            BigDecimal centerImag = ORIGIN_IMAG.add(tileExtent.multiply(BigDecimal.valueOf(tileY).add(half)));
+            double zoom = TILE_SIZE / EXTENT.doubleValue() * Math.pow(2, level);
+            return new FractalView(fractalType, zoom, centerReal, centerImag, juliaCReal, juliaCImag, maxIterations,
+                    TILE_SIZE, TILE_SIZE);
+        }
+
+        String getKey() {
+            return fractalType + "/" + level + "/" + tileX + "/" + tileY + "/" + maxIterations + "/" + colorScheme
+                    + (fractalType == FractalType.JULIA ? "/" + juliaCReal + "," + juliaCImag : "");
+        }
+    }
+
+    /**
+     * A memory-bounded LRU cache of encoded tiles.
+     */
+    private static final class ResponseCache {
+
+        // Iterates in access order, so the first entry is the least recently used tile
+        private final LinkedHashMap<String, byte[]> tiles = new LinkedHashMap<>(16, 0.75f, true);
+        private final long budgetBytes;
+        private long bytes;
+        private long hits;
+        private long misses;
+
+        ResponseCache(long budgetBytes) {
+            this.budgetBytes = budgetBytes;
+        }
+
+        synchronized byte[] get(String key) {
+            byte[] png = tiles.get(key);
+            if (png != null) {
+                hits++;
+            } else {
+                misses++;
+            }
+            return png;
+        }
+
+        /**
+         * Looks up a tile without counting a hit or a miss.
+         */
+        synchronized byte[] peek(String key) {
+            return tiles.get(key);
+        }
+
+        synchronized void put(String key, byte[] png) {
+            byte[] old = tiles.put(key, png);
+            bytes += png.length - (old == null ? 0 : old.length);
+            Iterator<Map.Entry<String, byte[]>> lru = tiles.entrySet().iterator();
+            while (bytes > budgetBytes && lru.hasNext()) {
+                bytes -= lru.next().getValue().length;
+                lru.remove();
+            }
+        }
+
+        @Override
+        public synchronized String toString() {
+            return String.format("response cache: %d tiles (%.1f of %.1f MB), %d hits, %d misses",
+                    tiles.size(), bytes / 1048576.0, budgetBytes / 1048576.0, hits, misses);
+        }
+    }
+
+    /**
+     * Runs a tile server until the JVM is stopped.
+     * <p>
+     * Arguments, all optional: the port (default 8080), the number of worker threads (default one per
+     * core) and the size of the response cache in MB (default 256).
+     *
+     * @param args The arguments.
+     * @throws IOException If the port cannot be bound.
+     */
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        long cacheBytes = (args.length > 2 ? Long.parseLong(args[2]) : 256) << 20;
+
+        TileServer server = new TileServer(new InetSocketAddress(port), threads, cacheBytes);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            System.out.println(server);
+        }));
+        server.start();
+        System.out.println("Serving tiles on http://localhost:" + server.getAddress().getPort()
+                + "/mandelbrot/{z}/{x}/{y}.png with " + threads + " worker threads");
+    }
+}
@@ -0,0 +1,354 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records the cost of every tile of a frame, so that the load balance of a render can be inspected.
+ * The cost of a tile is measured both as the number of iterations it performed and as the time it
+ * took; the busy time of each worker thread shows how evenly the work ended up being spread, and the
+ * time tiles waited in the queue before a worker picked them up shows how long the pool was saturated.
+ * The wall time runs from the creation of the statistics until {@link #finish()}.
+ */
+public class TileStats {
+
+    private final long totalPixels;
+    private final int parallelism;
+    private final List<Tile> tiles = new ArrayList<>();
+    private final Map<String, Long> workerBusyNanos = new HashMap<>();
+    private final AtomicLong pixelsDone = new AtomicLong();
+    private final AtomicLong splits = new AtomicLong();
+    private final AtomicLong filledPixels = new AtomicLong();
+    private final AtomicLong reusedPixels = new AtomicLong();
+    private final long startNanos = System.nanoTime();
+    private volatile long finishNanos;
+
+    public TileStats(int width, int height, int parallelism) {
+        this((long) width * height, parallelism);
+    }
+
+    /**
+     * Creates statistics for a render that covers the given number of pixels, which may be more than
+     * one frame when the frame is rendered in several passes.
+     *
+     * @param totalPixels The number of pixels to render.
+     * @param parallelism The number of worker threads.
+     */
+    public TileStats(long totalPixels, int parallelism) {
+        this.totalPixels = totalPixels;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Records a finished tile.
+     *
+     * @param x          The first column of the tile.
+     * @param y          The first row of the tile.
+     * @param w          The width of the tile.
+     * @param h          The height of the tile.
+     * @param iterations The number of iterations the tile performed.
+     * @param nanos      The time the tile took.
+     * @param waitNanos  The time the tile waited between being queued and being started.
+     */
+    public void recordTile(int x, int y, int w, int h, long iterations, long nanos, long waitNanos) {
+        String worker = Thread.currentThread().getName();
+        synchronized (this) {
+            tiles.add(new Tile(x, y, w, h, iterations, nanos, waitNanos, worker));
+            workerBusyNanos.merge(worker, nanos, Long::sum);
+        }
+    }
+
+    /**
+     * Records pixels that have been rendered, for progress reporting.
+     *
+     * @param count The number of pixels.
+     */
+    public void recordPixels(long count) {
+        pixelsDone.addAndGet(count);
+    }
+
+    /**
+     * Records that a tile handed off part of its rows to an idle worker.
+     */
+    public void recordSplit() {
+        splits.incrementAndGet();
+    }
+
+    /**
+     * Records pixels whose iteration count was filled in without computing them.
+     *
+     * @param count The number of pixels.
+     */
+    public void recordFilledPixels(long count) {
+        filledPixels.addAndGet(count);
+    }
+
+    /**
+     * Records pixels that were copied from the previous frame instead of being rendered. They count as
+     * done for progress reporting.
+     *
+     * @param count The number of pixels.
+     */
+    public void recordReusedPixels(long count) {
+        reusedPixels.addAndGet(count);
+        pixelsDone.addAndGet(count);
+    }
+
+    /**
+     * Gets the number of pixels that were copied from the previous frame.
+     *
+     * @return The number of reused pixels.
+     */
+    public long getReusedPixels() {
+        return reusedPixels.get();
+    }
+
+    /**
+     * Gets the number of pixels that were filled in without computing them.
+     *
+     * @return The number of filled pixels.
+     */
+    public long getFilledPixels() {
+        return filledPixels.get();
+    }
+
+    /**
+     * Gets the fraction of the frame that has been rendered so far.
+     *
+     * @return The progress, between 0 and 1.
+     */
+    public double getProgress() {
+        return totalPixels == 0 ? 1.0 : Math.min(1.0, pixelsDone.get() / (double) totalPixels);
+    }
+
+    /**
+     * Marks the render as finished, which stops its wall time. Later calls have no effect.
+     */
+    public void finish() {
+        if (finishNanos == 0) {
+            finishNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Gets the time from the creation of the statistics until the render finished, or until now if it
+     * is still running.
+     *
+     * @return The wall time in nanoseconds.
+     */
+    public long getWallNanos() {
+        long finish = finishNanos;
+        return (finish == 0 ? System.nanoTime() : finish) - startNanos;
+    }
+
+    /**
+     * Gets the rate of the render over its wall time.
+     *
+     * @return The iterations per second.
+     */
+    public double getIterationsPerSecond() {
+        long wall = getWallNanos();
+        return wall == 0 ? 0 : getTotalIterations() * 1e9 / wall;
+    }
+
+    /**
+     * Gets a percentile of the time the tiles took, such as the median or the 99th percentile.
+     *
+     * @param percentile The percentile, between 0 and 100.
+     * @return The tile time in nanoseconds, or 0 if there are no tiles.
+     */
+    public synchronized long getTileNanosPercentile(double percentile) {
+        long[] costs = new long[tiles.size()];
+        for (int i = 0; i < costs.length; i++) {
+            costs[i] = tiles.get(i).getNanos();
+        }
+        return percentile(costs, percentile);
+    }
+
+    /**
+     * Gets the average time the tiles waited in the queue before a worker started them.
+     *
+     * @return The mean queue wait in nanoseconds.
+     */
+    public synchronized long getMeanQueueWaitNanos() {
+        long total = 0;
+        for (Tile tile : tiles) {
+            total += tile.getWaitNanos();
+        }
+        return tiles.isEmpty() ? 0 : total / tiles.size();
+    }
+
+    /**
+     * Gets the longest time a tile waited in the queue before a worker started it.
+     *
+     * @return The longest queue wait in nanoseconds.
+     */
+    public synchronized long getMaxQueueWaitNanos() {
+        long max = 0;
+        for (Tile tile : tiles) {
+            max = Math.max(max, tile.getWaitNanos());
+        }
+        return max;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Gets the number of adaptive splits performed while rendering.
+     *
+     * @return The number of splits.
+     */
+    public long getSplitCount() {
+        return splits.get();
+    }
+
+    /**
+     * Gets the tiles recorded so far.
+     *
+     * @return A copy of the tiles.
+     */
+    public synchronized List<Tile> getTiles() {
+        return Collections.unmodifiableList(new ArrayList<>(tiles));
+    }
+
+    /**
+     * Gets the total time each worker thread spent rendering tiles.
+     *
+     * @return The busy time in nanoseconds, keyed by thread name.
+     */
+    public synchronized Map<String, Long> getWorkerBusyNanos() {
+        return new HashMap<>(workerBusyNanos);
+    }
+
+    /**
+     * Gets the total number of iterations of all tiles.
+     *
+     * @return The number of iterations.
+     */
+    public synchronized long getTotalIterations() {
+        long total = 0;
+        for (Tile tile : tiles) {
+            total += tile.getIterations();
+        }
+        return total;
+    }
+
+    /**
+     * Gets the ratio between the busiest worker and the average worker. A value of 1 means all
+     * workers were busy for the same time; with one worker per row it is typically far higher.
+     *
+     * @return The load imbalance.
+     */
+    public synchronized double getImbalance() {
+        if (workerBusyNanos.isEmpty()) {
+            return 1.0;
+        }
+        long max = 0;
+        long sum = 0;
+        for (long nanos : workerBusyNanos.values()) {
+            max = Math.max(max, nanos);
+            sum += nanos;
+        }
+        // Workers that did nothing count towards the average as well.
+        double mean = sum / (double) Math.max(parallelism, workerBusyNanos.size());
+        return mean == 0 ? 1.0 : max / mean;
+    }
+
+    @Override
+    public synchronized String toString() {
+        if (tiles.isEmpty()) {
+            return reusedPixels.get() > 0 ? String.format("no tiles, %d pixels reused", reusedPixels.get())
+                    : "no tiles";
+        }
+        long[] costs = new long[tiles.size()];
+        for (int i = 0; i < costs.length; i++) {
+            costs[i] = tiles.get(i).getNanos();
+        }
+        String summary = String.format("%.1f ms, %d tiles (%d splits), %d iterations (%.1f M/s), "
+                        + "tile time min/median/p90/max %.2f/%.2f/%.2f/%.2f ms, queue wait mean/max %.2f/%.2f ms, "
+                        + "worker imbalance %.2f",
+                getWallNanos() / 1e6, tiles.size(), splits.get(), getTotalIterations(), getIterationsPerSecond() / 1e6,
+                percentile(costs, 0) / 1e6, percentile(costs, 50) / 1e6, percentile(costs, 90) / 1e6,
+                percentile(costs, 100) / 1e6, getMeanQueueWaitNanos() / 1e6, getMaxQueueWaitNanos() / 1e6,
+                getImbalance());
+        if (filledPixels.get() > 0) {
+            summary += String.format(", %d pixels filled without iterating", filledPixels.get());
+        }
+        if (reusedPixels.get() > 0) {
+            summary += String.format(", %d pixels reused from the previous frame", reusedPixels.get());
+        }
+        return summary;
+    }
+
+    private static long percentile(long[] values, double percentile) {
+        if (values.length == 0) {
+            return 0;
+        }
+        Arrays.sort(values);
+        int index = (int) Math.ceil(percentile / 100 * values.length) - 1;
+        return values[Math.max(0, Math.min(values.length - 1, index))];
+    }
+
+    /**
+     * The cost of a single rendered tile.
+     */
+    public static final class Tile {
+
+        private final int x;
+        private final int y;
+        private final int width;
+        private final int height;
+        private final long iterations;
+        private final long nanos;
+        private final long waitNanos;
+        private final String worker;
+
+        Tile(int x, int y, int width, int height, long iterations, long nanos, long waitNanos, String worker) {
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+            this.iterations = iterations;
+            this.nanos = nanos;
+            this.waitNanos = waitNanos;
+            this.worker = worker;
+        }
+
+        public int getX() {
+            return x;
+        }
+
+        public int getY() {
+            return y;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public long getIterations() {
+            return iterations;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public long getWaitNanos() {
+            return waitNanos;
+        }
+
+        public String getWorker() {
+            return worker;
+        }
+    }
+}
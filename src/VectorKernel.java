@@ -0,0 +1,297 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The escape-time kernel vectorized with the Java Vector API. Every lane of a vector holds the orbit
+ * of one pixel of a row, and all lanes are iterated together. Lanes whose pixel escapes, reaches the
+ * iteration limit or is found to be periodic are masked off, and as soon as any lane is done it is
+ * refilled with the next pixel of the row. Pixels with very different escape times therefore do not
+ * keep the other lanes waiting, which is what usually limits vectorized escape-time loops.
+ * <p>
+ * Every lane performs exactly the same floating-point operations in the same order as
+ * {@link EscapeTimeKernel}, including the closed-form bulb tests and Brent's cycle detection, so the
+ * iteration counts are bit-identical to the scalar kernel, which VectorKernelTest checks on a set of
+ * views. Pixels that reach the iteration limit, periodic or not, are recorded in the checkpoint of the
+ * scalar kernel when their lane is refilled, and continued by the scalar kernel. So are the escape
+ * points of the pixels that escape, in the fractions of the scalar kernel.
+ * <p>
+ * This class must only be loaded when {@link VectorSupport#isAvailable()} is true.
+ */
+public final class VectorKernel implements ResumableKernel, OffsetKernel {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    // The lane state of the row each render thread is working on, kept so that rows do not allocate it
+    private static final ThreadLocal<Lanes> LANES = ThreadLocal.withInitial(Lanes::new);
+
+    private final EscapeTimeKernel scalar;
+    private final FractalView view;
+    private final boolean julia;
+    private final boolean bulbCheck;
+    private final boolean periodicityCheck;
+    private final double epsilon;
+    private final InteriorStats stats;
+    private final OrbitCheckpoint checkpoint;
+    private final EscapeFractions fractions;
+
+    public VectorKernel(EscapeTimeKernel scalar) {
+        this.scalar = scalar;
+        this.view = scalar.getView();
+        this.julia = view.getFractalType() == FractalType.JULIA;
+        this.bulbCheck = scalar.hasBulbCheck();
+        this.periodicityCheck = scalar.hasPeriodicityCheck();
+        this.epsilon = scalar.getEpsilon();
+        this.stats = scalar.getStats();
+        this.checkpoint = scalar.getCheckpoint();
+        this.fractions = scalar.getFractions();
+    }
+
+    /**
+     * Gets the number of pixels iterated at once.
+     *
+     * @return The number of vector lanes.
+     */
+    public static int lanes() {
+        return SPECIES.length();
+    }
+
+    /**
+     * Gets the statistics of the pixels this kernel short-circuited.
+     *
+     * @return The interior statistics.
+     */
+    public InteriorStats getStats() {
+        return stats;
+    }
+
+    @Override
+    public int iterate(int x, int y) {
+        return scalar.iterate(x, y);
+    }
+
+    @Override
+    public int iterateOffset(double dx, double dy) {
+        return scalar.iterateOffset(dx, dy);
+    }
+
+    @Override
+    public int resume(int x, int y, double zx, double zy, int iter) {
+        return scalar.resume(x, y, zx, zy, iter);
+    }
+
+    @Override
+    public long iterateRow(int y, int x0, int x1, int step, int[] iterations, int offset) {
+        final int lanes = SPECIES.length();
+        if ((x1 - x0 + step - 1) / step < lanes) {
+            return ResumableKernel.super.iterateRow(y, x0, x1, step, iterations, offset);
+        }
+
+        final double maxIterations = view.getMaxIterations();
+        final double imag = view.toImag(y);
+        final DoubleVector one = DoubleVector.broadcast(SPECIES, 1.0);
+
+        // The state of every lane, spilled to arrays whenever lanes are refilled
+        Lanes state = LANES.get();
+        double[] zx = state.zx;
+        double[] zy = state.zy;
+        double[] cx = state.cx;
+        double[] cy = state.cy;
+        double[] count = state.count;
+        double[] savedX = state.savedX;
+        double[] savedY = state.savedY;
+        double[] nextSave = state.nextSave;
+        double[] live = state.live;
+
+        state.next = x0;
+        long cost = 0;
+        for (int i = 0; i < lanes; i++) {
+            cost += load(state, i, x1, step, imag, iterations, offset - x0);
+        }
+
+        while (state.liveLanes > 0) {
+            // The vectors only live inside this block. C2 keeps vectors in registers, but boxes them on the
+            // heap if they live across the scalar refill below, or are converted to and from boolean arrays.
+            VectorMask<Double> liveMask = DoubleVector.fromArray(SPECIES, live, 0).compare(VectorOperators.NE, 0);
+            int liveLanes = state.liveLanes;
+            DoubleVector vzx = DoubleVector.fromArray(SPECIES, zx, 0);
+            DoubleVector vzy = DoubleVector.fromArray(SPECIES, zy, 0);
+            DoubleVector vcx = DoubleVector.fromArray(SPECIES, cx, 0);
+            DoubleVector vcy = DoubleVector.fromArray(SPECIES, cy, 0);
+            DoubleVector vcount = DoubleVector.fromArray(SPECIES, count, 0);
+            DoubleVector vsavedX = DoubleVector.fromArray(SPECIES, savedX, 0);
+            DoubleVector vsavedY = DoubleVector.fromArray(SPECIES, savedY, 0);
+            DoubleVector vnextSave = DoubleVector.fromArray(SPECIES, nextSave, 0);
+
+            while (true) {
+                DoubleVector zx2 = vzx.mul(vzx);
+                DoubleVector zy2 = vzy.mul(vzy);
+                VectorMask<Double> running = liveMask
+                        .and(zx2.add(zy2).compare(VectorOperators.LT, 4.0))
+                        .and(vcount.compare(VectorOperators.LT, maxIterations));
+
+                // Running lanes are live lanes, so a lane is done when fewer are running. Testing the count
+                // rather than a mask of done lanes keeps the method small enough for C2 to inline every vector op.
+                if (running.trueCount() < liveLanes) {
+                    // Some lanes are done: spill the lanes, whose state tells which ones are done.
+                    vzx.intoArray(zx, 0);
+                    vzy.intoArray(zy, 0);
+                    vcount.intoArray(count, 0);
+                    vsavedX.intoArray(savedX, 0);
+                    vsavedY.intoArray(savedY, 0);
+                    vnextSave.intoArray(nextSave, 0);
+                    break;
+                }
+
+                // The same operations as the scalar loop: tmp = zx^2 - zy^2 + cX, zy = 2 zx zy + cY
+                DoubleVector tmp = zx2.sub(zy2).add(vcx);
+                vzy = vzy.blend(vzx.mul(2.0).mul(vzy).add(vcy), running);
+                vzx = vzx.blend(tmp, running);
+                vcount = vcount.add(one, running);
+
+                if (periodicityCheck) {
+                    // |dx| < eps and |dy| < eps, as a single comparison of the larger of the two
+                    VectorMask<Double> repeat = vzx.sub(vsavedX).abs().max(vzy.sub(vsavedY).abs())
+                            .compare(VectorOperators.LT, epsilon)
+                            .and(running);
+                    int periodic = repeat.trueCount();
+                    if (periodic > 0) {
+                        // A periodic lane counts as interior and is refilled on the next pass.
+                        stats.recordPeriodic(periodic);
+                    }
+                    // The blends are unconditional, so that no vector is defined on two paths.
+                    vcount = vcount.blend(maxIterations, repeat);
+                    // A NaN orbit point tells the checkpoint that the lane stopped as periodic.
+                    vzx = vzx.blend(Double.NaN, repeat);
+                    // Brent's schedule saves the orbit after 1, 3, 7, 15, ... iterations of each lane.
+                    VectorMask<Double> save = vcount.compare(VectorOperators.EQ, vnextSave);
+                    vsavedX = vsavedX.blend(vzx, save);
+                    vsavedY = vsavedY.blend(vzy, save);
+                    vnextSave = vnextSave.add(vnextSave.add(one), save);
+                }
+            }
+
+            cost += refill(state, y, x1, step, imag, iterations, offset - x0);
+        }
+        return cost;
+    }
+
+    /**
+     * Stores the counts of the lanes that are done and refills them with the next pixels of the row. A
+     * lane is done under the same condition as in the vector loop, evaluated on its spilled state; a
+     * periodic lane has a NaN orbit point and fails it too. The refill uses no vectors.
+     *
+     * @return The iterations of the stored pixels and of the pixels the bulb tests resolved.
+     */
+    private long refill(Lanes state, int y, int x1, int step, double imag, int[] iterations, int base) {
+        final int maxIterations = view.getMaxIterations();
+        double[] zx = state.zx;
+        double[] zy = state.zy;
+        double[] count = state.count;
+        long cost = 0;
+        for (int i = 0; i < count.length; i++) {
+            if (state.live[i] == 0 || zx[i] * zx[i] + zy[i] * zy[i] < 4 && count[i] < maxIterations) {
+                continue;
+            }
+            int iter = (int) count[i];
+            int x = state.pixel[i];
+            iterations[base + x] = iter;
+            cost += iter;
+            if (checkpoint != null && iter == maxIterations) {
+                if (Double.isNaN(zx[i])) {
+                    checkpoint.recordInterior(x, y);
+                } else {
+                    checkpoint.record(x, y, zx[i], zy[i]);
+                }
+            } else if (fractions != null && iter < maxIterations) {
+                fractions.record(x, y, zx[i], zy[i], state.cx[i], state.cy[i]);
+            }
+            state.live[i] = 0;
+            state.liveLanes--;
+            cost += load(state, i, x1, step, imag, iterations, base);
+        }
+        return cost;
+    }
+
+    /**
+     * Loads the next pixel of a row that is not resolved by the bulb tests into an empty lane, and
+     * stores the counts of the pixels the bulb tests resolved on the way.
+     *
+     * @return The iterations of the pixels the bulb tests resolved.
+     */
+    private long load(Lanes state, int lane, int x1, int step, double imag, int[] iterations, int base) {
+        final int maxIterations = view.getMaxIterations();
+        long cost = 0;
+        while (state.next < x1) {
+            int x = state.next;
+            state.next += step;
+            double real = view.toReal(x);
+            if (julia) {
+                state.zx[lane] = real;
+                state.zy[lane] = imag;
+                state.cx[lane] = view.getJuliaCReal();
+                state.cy[lane] = view.getJuliaCImag();
+            } else {
+                state.zx[lane] = 0;
+                state.zy[lane] = 0;
+                state.cx[lane] = real;
+                state.cy[lane] = imag;
+
+                if (bulbCheck && isInBulb(real, imag)) {
+                    iterations[base + x] = maxIterations;
+                    cost += maxIterations;
+                    continue;
+                }
+            }
+            state.count[lane] = 0;
+            state.savedX[lane] = state.zx[lane];
+            state.savedY[lane] = state.zy[lane];
+            state.nextSave[lane] = 1;
+            state.pixel[lane] = x;
+            state.live[lane] = 1;
+            state.liveLanes++;
+            return cost;
+        }
+        return cost;
+    }
+
+    /**
+     * Tests for the main cardioid and the period-2 bulb, exactly like the scalar kernel.
+     */
+    private boolean isInBulb(double cX, double cY) {
+        double xq = cX - 0.25;
+        double q = xq * xq + cY * cY;
+        if (q * (q + xq) <= 0.25 * cY * cY) {
+            stats.recordCardioid();
+            return true;
+        }
+        double xb = cX + 1.0;
+        if (xb * xb + cY * cY <= 0.0625) {
+            stats.recordBulb();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * The arrays the lanes are spilled to. Every lane is loaded before it is read, so the arrays need no
+     * clearing between rows.
+     */
+    private static final class Lanes {
+
+        final double[] zx = new double[SPECIES.length()];
+        final double[] zy = new double[SPECIES.length()];
+        final double[] cx = new double[SPECIES.length()];
+        final double[] cy = new double[SPECIES.length()];
+        final double[] count = new double[SPECIES.length()];
+        final double[] savedX = new double[SPECIES.length()];
+        final double[] savedY = new double[SPECIES.length()];
+        final double[] nextSave = new double[SPECIES.length()];
+        final int[] pixel = new int[SPECIES.length()];
+        // 1 for a lane that holds a pixel, 0 for an empty one; a double, so that it loads as a vector
+        final double[] live = new double[SPECIES.length()];
+        int liveLanes;
+        // The column of the next pixel of the row
+        int next;
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ * Detects whether the incubating Java Vector API is available, and creates the vector kernels only if
+ * it is. The vector classes are never touched when the module is missing, so the viewer runs on the
+ * scalar kernel unless it is started with {@code --add-modules jdk.incubator.vector}.
+ */
+public final class VectorSupport {
+
+    private static final boolean AVAILABLE = detect();
+
+    private VectorSupport() {
+    }
+
+    /**
+     * Checks whether the vector kernel can be used.
+     *
+     * @return True if the jdk.incubator.vector module is present.
+     */
+    public static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    /**
+     * Wraps a scalar kernel in a vector kernel if the Vector API is available.
+     *
+     * @param scalar The scalar kernel.
+     * @return The vector kernel, or the scalar kernel itself as a fallback.
+     */
+    public static PixelKernel vectorize(EscapeTimeKernel scalar) {
+        return AVAILABLE ? new VectorKernel(scalar) : scalar;
+    }
+
+    /**
+     * Wraps a scalar kernel in a single-precision vector kernel if the Vector API is available.
+     *
+     * @param scalar The scalar kernel, whose view and shortcuts the float kernel takes over.
+     * @return The float vector kernel, or the scalar kernel itself as a fallback.
+     */
+    public static PixelKernel vectorizeFloat(EscapeTimeKernel scalar) {
+        return AVAILABLE ? new FloatVectorKernel(scalar) : scalar;
+    }
+
+    private static boolean detect() {
+        if (!ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            return false;
+        }
+        try {
+            Class.forName("jdk.incubator.vector.DoubleVector");
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,276 @@
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
+
+/**
+ * Renders a zoom from one view to another as a numbered sequence of PNG images, without a window.
+ * <p>
+ * The zoom factor grows exponentially from frame to frame, so the zoom has a constant speed, while the
+ * center moves from the start center to the end center. Instead of rendering every frame, the plane
+ * around the end center is rendered once as an {@link ExponentialMap}, and each frame is resampled
+ * from it. Only the few pixels around the center itself, which the map does not reach, and the pixels
+ * where the map has less than one sample per pixel, far from the center while the frames are still
+ * moving towards it, are iterated for the frame. The map holds the rows of about one frame at a time,
+ * which is about 130 MB for 1920x1080 frames. Frames are encoded and written
+ * on a separate thread while the next frame renders.
+ */
+public class ZoomAnimation {
+
+    // Pixels closer to the center of the map than this many pixels are iterated directly; the map
+    // would need ever more rows to reach them.
+    private static final double INNER_RADIUS = 16;
+    // The number of frames that may wait for their PNG to be written
+    private static final int MAX_PENDING_FRAMES = 2;
+
+    private final TileScheduler scheduler;
+    private final FractalView start;
+    private final FractalView end;
+    private final int frames;
+    private final OffsetKernel offsetKernel;
+    private final Palette palette;
+    private final ExponentialMap map;
+    // The offset of the start center from the end center
+    private final double startOffsetReal;
+    private final double startOffsetImag;
+    private long mappedPixels;
+    private long directPixels;
+    private long nanos;
+
+    /**
+     * Creates an animation. The frames have the size of the end view.
+     *
+     * @param scheduler The scheduler to render the map and the frames on.
+     * @param start     The view of the first frame.
+     * @param end       The view of the last frame, whose center is the center of the map.
+     * @param frames    The number of frames, at least 2.
+     * @param kernel    The kernel of the end view. It must also be an {@link OffsetKernel}, so that the
+     *                  points of the map and of every frame can be iterated with it.
+     * @param palette   The palette that colors the iteration counts.
+     */
+    public ZoomAnimation(TileScheduler scheduler, FractalView start, FractalView end, int frames, PixelKernel kernel,
+                         Palette palette) {
+        if (frames < 2) {
+            throw new IllegalArgumentException("An animation needs at least 2 frames");
+        }
+        if (!(kernel instanceof OffsetKernel)) {
+            throw new IllegalArgumentException("The kernel cannot iterate arbitrary points");
+        }
+        if (Double.isInfinite(start.getZoom()) || Double.isInfinite(end.getZoom())) {
+            // The offsets of the map are doubles, which cannot address points this close together.
+            throw new IllegalArgumentException("An animation cannot zoom beyond the range of a double");
+        }
+        this.scheduler = scheduler;
+        this.start = start;
+        this.end = end;
+        this.frames = frames;
+        this.offsetKernel = (OffsetKernel) kernel;
+        this.palette = palette;
+        this.startOffsetReal = start.getCenterReal().subtract(end.getCenterReal()).doubleValue();
+        this.startOffsetImag = start.getCenterImag().subtract(end.getCenterImag()).doubleValue();
+
+        // The map resolves every pixel of a frame centered on it, up to the corners.
+        int columns = (int) Math.ceil(Math.PI * Math.hypot(end.getWidth(), end.getHeight()));
+        double resolved = columns / (2 * Math.PI);
+        double minZoom = Math.min(start.getZoom(), end.getZoom());
+        double maxZoom = Math.max(start.getZoom(), end.getZoom());
+        double maxRadius = resolved / minZoom;
+        this.map = new ExponentialMap(offsetKernel, columns, maxRadius, INNER_RADIUS / maxZoom);
+    }
+
+    /**
+     * Renders the frames and writes them as frame00000.png, frame00001.png and so on.
+     *
+     * @param directory The directory to write the frames to. It is created if needed.
+     * @param cancelled Checked while rendering; when it returns true the animation stops after the
+     *                  frames already written.
+     * @param progress  Receives the number of frames written so far, after every frame.
+     * @throws IOException           If a frame cannot be written.
+     * @throws CancellationException If the animation was cancelled.
+     */
+    public void export(Path directory, BooleanSupplier cancelled, IntConsumer progress) throws IOException {
+        Files.createDirectories(directory);
+        long startTime = System.nanoTime();
+        ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "animation-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Deque<Future<?>> pending = new ArrayDeque<>();
+        try {
+            for (int frame = 0; frame < frames; frame++) {
+                int[] pixels = renderFrame(frame, cancelled);
+                if (cancelled.getAsBoolean()) {
+                    throw new CancellationException("Animation cancelled");
+                }
+
+                // Write this frame while the next one renders, but never fall behind by more than a few.
+                while (pending.size() >= MAX_PENDING_FRAMES) {
+                    pending.removeFirst().get();
+                }
+                final Path file = directory.resolve(String.format("frame%05d.png", frame));
+                final int written = frame + 1;
+                pending.add(writer.submit(() -> {
+                    writeFrame(file, pixels);
+                    progress.accept(written);
+                    return null;
+                }));
+            }
+            while (!pending.isEmpty()) {
+                pending.removeFirst().get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Animation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Writing a frame failed", e.getCause());
+        } finally {
+            writer.shutdownNow();
+            nanos = System.nanoTime() - startTime;
+        }
+    }
+
+    /**
+     * Renders one frame, from the map where it resolves the pixels and directly everywhere else.
+     *
+     * @param frame     The number of the frame.
+     * @param cancelled Checked between bands; when it returns true the rest of the frame is skipped.
+     * @return The pixels of the frame.
+     */
+    private int[] renderFrame(int frame, BooleanSupplier cancelled) {
+        final int width = end.getWidth();
+        final int height = end.getHeight();
+        double t = (double) frame / (frames - 1);
+        final double zoom = start.getZoom() * Math.pow(end.getZoom() / start.getZoom(), t);
+        // On screen, the end center moves from where it is in the first frame to the middle at constant speed.
+        double shrink = (1 - t) * start.getZoom() / zoom;
+        final double centerReal = startOffsetReal * shrink;
+        final double centerImag = startOffsetImag * shrink;
+
+        // The map rows from the resolved radius down to the inner radius, or to the nearest pixel of the
+        // frame when the frame does not contain the center of the map
+        double resolved = map.getResolvedRadius();
+        double centerDistance = Math.hypot(centerReal, centerImag);
+        int firstRow = (int) Math.floor(map.row(resolved / zoom));
+        double innerRadius = Math.max(INNER_RADIUS / zoom, centerDistance - Math.hypot(width, height) / 2 / zoom);
+        int lastRow = (int) Math.ceil(map.row(innerRadius)) + 1;
+        map.retain(scheduler, firstRow, lastRow, cancelled);
+
+        final int[] pixels = new int[width * height];
+        final int rows = map.getRows();
+        TileStats stats = new TileStats(width, height, scheduler.getParallelism());
+        long[] counts = new long[2];
+        scheduler.render(width, height, 1, (x0, y0, x1, y1) -> {
+            long cost = 0;
+            long mapped = 0;
+            for (int y = y0; y < y1; y++) {
+                double dy = (y - height / 2.0) / zoom + centerImag;
+                for (int x = x0; x < x1; x++) {
+                    double dx = (x - width / 2.0) / zoom + centerReal;
+                    double radius = Math.sqrt(dx * dx + dy * dy);
+                    double pixelRadius = radius * zoom;
+                    double row = radius > 0 ? map.row(radius) : rows;
+                    if (pixelRadius <= resolved && pixelRadius >= INNER_RADIUS && row >= 0 && row <= rows - 1) {
+                        pixels[x + y * width] = map.sample(palette, row, dx, dy);
+                        mapped++;
+                    } else {
+                        int iter = offsetKernel.iterateOffset(dx, dy);
+                        pixels[x + y * width] = palette.rgb(iter);
+                        cost += iter;
+                    }
+                }
+            }
+            synchronized (counts) {
+                counts[0] += mapped;
+                counts[1] += (long) (x1 - x0) * (y1 - y0) - mapped;
+            }
+            return cost;
+        }, cancelled, stats);
+        mappedPixels += counts[0];
+        directPixels += counts[1];
+        return pixels;
+    }
+
+    private void writeFrame(Path file, int[] pixels) throws IOException {
+        int width = end.getWidth();
+        int height = end.getHeight();
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+            PngStripEncoder encoder = new PngStripEncoder(out, width, height);
+            encoder.write(PngStripEncoder.compress(pixels, width, height, true));
+            encoder.finish();
+        }
+    }
+
+    /**
+     * Gets the number of points iterated for the animation: the samples of the map and the pixels of
+     * the frames that were iterated directly.
+     *
+     * @return The iterated points.
+     */
+    public long getIteratedPoints() {
+        return map.getSamples() + directPixels;
+    }
+
+    @Override
+    public String toString() {
+        long framePixels = (long) frames * end.getWidth() * end.getHeight();
+        return String.format("%d frames of %dx%d in %.1f s: map of %dx%d (%d samples), %d pixels resampled, "
+                        + "%d iterated directly; %.1f%% of the points of rendering every frame",
+                frames, end.getWidth(), end.getHeight(), nanos / 1e9, map.getColumns(), map.getRows(),
+                map.getSamples(), mappedPixels, directPixels, 100.0 * getIteratedPoints() / framePixels);
+    }
+
+    /**
+     * Renders a zoom animation from the command line.
+     * <p>
+     * Arguments: the start center (real, imaginary) and zoom, the end center and zoom, the number of
+     * frames, the width and height of the frames, the iteration limit and the output directory.
+     * The zoom is in pixels per unit of the complex plane, 250 being the initial view of the viewer.
+     *
+     * @param args The arguments.
+     * @throws IOException If a frame cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 11) {
+            System.err.println("Usage: ZoomAnimation <startReal> <startImag> <startZoom> <endReal> <endImag> <endZoom>"
+                    + " <frames> <width> <height> <maxIterations> <directory>");
+            System.exit(1);
+        }
+        int frames = Integer.parseInt(args[6]);
+        int width = Integer.parseInt(args[7]);
+        int height = Integer.parseInt(args[8]);
+        int maxIterations = Integer.parseInt(args[9]);
+        FractalView start = new FractalView(FractalType.MANDELBROT, Double.parseDouble(args[2]),
+                new BigDecimal(args[0], MathContext.UNLIMITED), new BigDecimal(args[1], MathContext.UNLIMITED),
+                0, 0, maxIterations, width, height);
+        FractalView end = new FractalView(FractalType.MANDELBROT, Double.parseDouble(args[5]),
+                new BigDecimal(args[3], MathContext.UNLIMITED), new BigDecimal(args[4], MathContext.UNLIMITED),
+                0, 0, maxIterations, width, height);
+
+        TileScheduler scheduler = new TileScheduler(Runtime.getRuntime().availableProcessors());
+        try {
+            PixelKernel kernel = RenderEngine.createKernel(end, RenderOptions.DEFAULT, new InteriorStats());
+            ZoomAnimation animation = new ZoomAnimation(scheduler, start, end, frames, kernel,
+                    new Palette(ColorScheme.RED.getColor(), maxIterations));
+            animation.export(Paths.get(args[10]), () -> false,
+                    written -> System.out.print("\rFrame " + written + " of " + frames));
+            System.out.println();
+            System.out.println(animation);
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Renders views on render nodes listening on localhost and compares the counts with a local render.
+ * Workers that fail are stand-ins that take a strip and then drop the connection or never answer.
+ */
+class DistributedRendererTest {
+
+    private static final int STRIP_HEIGHT = 16;
+    private static final FractalView VIEW = new FractalView(FractalType.MANDELBROT, 250.0 * 512 / 800, -0.75, 0.0,
+            0, 0, 1000, 512, 384);
+
+    private final List<RenderNode> nodes = new ArrayList<>();
+    private final List<ServerSocket> stubs = new ArrayList<>();
+
+    @AfterEach
+    void stopWorkers() throws IOException {
+        for (RenderNode node : nodes) {
+            node.close();
+        }
+        for (ServerSocket stub : stubs) {
+            stub.close();
+        }
+    }
+
+    @Test
+    void countsMatchLocalRender() throws IOException {
+        List<InetSocketAddress> workers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            workers.add(startNode());
+        }
+        DistributedRenderer renderer = new DistributedRenderer(workers, STRIP_HEIGHT, 10_000);
+        assertArrayEquals(localRender(VIEW, RenderOptions.DEFAULT), renderer.iterate(VIEW, RenderOptions.DEFAULT));
+        assertStripsAccounted(renderer, VIEW);
+        for (DistributedRenderer.WorkerStats worker : renderer.getWorkerStats()) {
+            assertNull(worker.getFailure(), worker.toString());
+        }
+
+        FractalView julia = new FractalView(FractalType.JULIA, 250.0 * 512 / 800, 0.0, 0.0, -0.123, 0.745, 500,
+                512, 384);
+        RenderOptions fill = new RenderOptions(true, true, true);
+        assertArrayEquals(localRender(julia, fill), renderer.iterate(julia, fill));
+        assertStripsAccounted(renderer, julia);
+    }
+
+    @Test
+    void stripsOfDroppedWorkerAreRequeued() throws IOException {
+        AtomicInteger taken = new AtomicInteger(-1);
+        List<InetSocketAddress> workers = List.of(startNode(), startStub(taken, false));
+        DistributedRenderer renderer = new DistributedRenderer(workers, STRIP_HEIGHT, 10_000);
+
+        assertArrayEquals(localRender(VIEW, RenderOptions.DEFAULT), renderer.iterate(VIEW, RenderOptions.DEFAULT));
+        assertTrue(taken.get() >= 0, "the stub took no strip");
+        assertStripsAccounted(renderer, VIEW);
+        DistributedRenderer.WorkerStats stub = renderer.getWorkerStats().get(1);
+        assertNotNull(stub.getFailure());
+        assertEquals(0, stub.getStrips());
+    }
+
+    @Test
+    void stripsOfStalledWorkerAreRequeued() throws IOException {
+        AtomicInteger taken = new AtomicInteger(-1);
+        List<InetSocketAddress> workers = List.of(startStub(taken, true), startNode());
+        // The stalled worker is dropped after the timeout, or its strip is rendered again as a straggler.
+        DistributedRenderer renderer = new DistributedRenderer(workers, STRIP_HEIGHT, 1000);
+
+        assertArrayEquals(localRender(VIEW, RenderOptions.DEFAULT), renderer.iterate(VIEW, RenderOptions.DEFAULT));
+        assertTrue(taken.get() >= 0, "the stub took no strip");
+        assertStripsAccounted(renderer, VIEW);
+        assertEquals(0, renderer.getWorkerStats().get(0).getStrips());
+    }
+
+    private InetSocketAddress startNode() throws IOException {
+        RenderNode node = new RenderNode(0, 2);
+        nodes.add(node);
+        Thread thread = new Thread(node::serve, "test-render-node-" + node.getPort());
+        thread.setDaemon(true);
+        thread.start();
+        return new InetSocketAddress("localhost", node.getPort());
+    }
+
+    /**
+     * Starts a worker that accepts the job and its first strip, remembers the first row of the strip and
+     * then either never answers or closes the connection.
+     */
+    private InetSocketAddress startStub(AtomicInteger taken, boolean stall) throws IOException {
+        ServerSocket server = new ServerSocket(0);
+        stubs.add(server);
+        Thread thread = new Thread(() -> {
+            try (Socket socket = server.accept()) {
+                DataInputStream in = new DataInputStream(socket.getInputStream());
+                // The job and the first strip arrive in one flush; the strip is its last two ints.
+                Thread.sleep(300);
+                byte[] request = new byte[in.available()];
+                in.readFully(request);
+                int at = request.length - 2 * Integer.BYTES;
+                taken.set((request[at] & 0xFF) << 24 | (request[at + 1] & 0xFF) << 16
+                        | (request[at + 2] & 0xFF) << 8 | request[at + 3] & 0xFF);
+                if (stall) {
+                    // Keep the connection open until the test closes the server.
+                    while (in.read() >= 0) {
+                        continue;
+                    }
+                }
+            } catch (IOException | InterruptedException e) {
+                // The test is over.
+            }
+        }, "test-render-stub-" + server.getLocalPort());
+        thread.setDaemon(true);
+        thread.start();
+        return new InetSocketAddress("localhost", server.getLocalPort());
+    }
+
+    private static int[] localRender(FractalView view, RenderOptions options) {
+        RenderEngine engine = new RenderEngine(2);
+        try {
+            return engine.iterate(view, options);
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    private static void assertStripsAccounted(DistributedRenderer renderer, FractalView view) {
+        int strips = 0;
+        long pixels = 0;
+        for (DistributedRenderer.WorkerStats worker : renderer.getWorkerStats()) {
+            strips += worker.getStrips();
+            pixels += worker.getPixels();
+        }
+        assertEquals((view.getHeight() + STRIP_HEIGHT - 1) / STRIP_HEIGHT, strips, renderer.toString());
+        assertEquals((long) view.getWidth() * view.getHeight(), pixels, renderer.toString());
+    }
+}
@@ -0,0 +1,116 @@
+import com.sun.management.ThreadMXBean;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.SwingUtilities;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pans a headless viewer panel back and forth and measures what a frame allocates on all threads, the
+ * render workers included. A panned frame only iterates the exposed strip, in single precision at this
+ * zoom, and copies the rest from the frame before, so it allocates little more than the tiles it adds
+ * to the tile cache. Vectors that the JIT fails to keep in registers are boxed on every iteration and
+ * quickly add up to megabytes per frame.
+ */
+class PanAllocationTest {
+
+    private static final int WIDTH = 1920;
+    private static final int HEIGHT = 1080;
+    private static final int STEP = 16;
+    // Enough frames for the kernels to be compiled before the measurement
+    private static final int WARMUP_FRAMES = 128;
+    private static final int MEASURED_FRAMES = 64;
+    // The counts of a frame alone are 8 MB; a panned frame measures about 60 KB.
+    private static final long MAX_BYTES_PER_FRAME = 256 * 1024;
+
+    private MandelbrotPanel panel;
+    private int frames;
+
+    @BeforeEach
+    void createPanel() {
+        System.setProperty("java.awt.headless", "true");
+        panel = onEventThread(() -> {
+            MandelbrotPanel p = new MandelbrotPanel();
+            p.setProgressiveEnabled(false);
+            p.setSize(WIDTH, HEIGHT);
+            p.setMaxIterations(256);
+            return p;
+        });
+        awaitFrame();
+    }
+
+    @AfterEach
+    void shutdown() {
+        onEventThread(() -> {
+            panel.shutdown();
+            return null;
+        });
+    }
+
+    @Test
+    void panningAllocatesAlmostNothing() {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        pan(WARMUP_FRAMES);
+        long before = allocatedBytes(threads);
+        pan(MEASURED_FRAMES);
+        long perFrame = (allocatedBytes(threads) - before) / MEASURED_FRAMES;
+        assertTrue(perFrame <= MAX_BYTES_PER_FRAME, String.format("a panned %dx%d frame allocated %d KB, %d KB allowed",
+                WIDTH, HEIGHT, perFrame / 1024, MAX_BYTES_PER_FRAME / 1024));
+    }
+
+    /**
+     * Pans the panel by a few pixels per frame, and turns around every 64 frames so that the view stays
+     * over the set.
+     */
+    private void pan(int count) {
+        for (int i = 0; i < count; i++) {
+            int dx = (frames++ / 64) % 2 == 0 ? STEP : -STEP;
+            onEventThread(() -> {
+                panel.panPixels(dx, 0);
+                return null;
+            });
+            awaitFrame();
+        }
+    }
+
+    /**
+     * Sums the bytes allocated by all live threads. Threads that ended during the measurement are
+     * missing, but the render pool and the frame threads are reused from frame to frame.
+     */
+    private static long allocatedBytes(ThreadMXBean threads) {
+        long sum = 0;
+        for (long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (bytes > 0) {
+                sum += bytes;
+            }
+        }
+        return sum;
+    }
+
+    private void awaitFrame() {
+        while (onEventThread(panel::isRendering)) {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static <T> T onEventThread(Supplier<T> action) {
+        List<T> result = new ArrayList<>(1);
+        try {
+            SwingUtilities.invokeAndWait(() -> result.add(action.get()));
+        } catch (InterruptedException | InvocationTargetException e) {
+            throw new IllegalStateException(e);
+        }
+        return result.get(0);
+    }
+}
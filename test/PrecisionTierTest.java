@@ -0,0 +1,89 @@
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Renders views on which two neighbouring precision tiers overlap with both of them and compares the
+ * iteration counts. Pixels on the boundary of the set are chaotic, so a few of them may differ by
+ * rounding alone; every pair allows a small share of differing pixels.
+ */
+class PrecisionTierTest {
+
+    private static final int SIZE = 256;
+    private static final RenderOptions OPTIONS = RenderOptions.DEFAULT;
+
+    @Test
+    void floatAgreesWithDoubleOnTheOverview() {
+        assumeTrue(VectorSupport.isAvailable(), "the Vector API is missing");
+        assertAgree(PrecisionTier.FLOAT, PrecisionTier.DOUBLE, 0.015,
+                new FractalView(FractalType.MANDELBROT, 250.0 * SIZE / 800, -1.0, 0.0, 0, 0, 1000, SIZE, SIZE));
+        assertAgree(PrecisionTier.FLOAT, PrecisionTier.DOUBLE, 0.015,
+                new FractalView(FractalType.JULIA, 250.0 * SIZE / 800, 0.0, 0.0, -0.123, 0.745, 1000, SIZE, SIZE));
+    }
+
+    @Test
+    void floatAgreesWithDoubleAtItsDeepestZoom() {
+        assumeTrue(VectorSupport.isAvailable(), "the Vector API is missing");
+        assertAgree(PrecisionTier.FLOAT, PrecisionTier.DOUBLE, 0.015, new FractalView(FractalType.MANDELBROT,
+                PrecisionTier.FLOAT_MAX_ZOOM, -0.75, 0.1, 0, 0, 1000, SIZE, SIZE));
+    }
+
+    @Test
+    void doubleAgreesWithDoubleDouble() {
+        assertAgree(PrecisionTier.DOUBLE, PrecisionTier.DOUBLE_DOUBLE, 0.01, new FractalView(FractalType.MANDELBROT,
+                1e6, -0.743643887, 0.131825904, 0, 0, 2000, SIZE, SIZE));
+    }
+
+    @Test
+    void doubleDoubleAgreesWithPerturbation() {
+        assertAgree(PrecisionTier.DOUBLE_DOUBLE, PrecisionTier.PERTURBATION, 0.01, new FractalView(
+                FractalType.MANDELBROT, 1e20, new BigDecimal("-0.743643887037158704752191506114774"),
+                new BigDecimal("0.131825904205311970493132056385139"), 0, 0, 3000, SIZE, SIZE));
+    }
+
+    @Test
+    void perturbationAgreesWithExtended() {
+        assertAgree(PrecisionTier.PERTURBATION, PrecisionTier.EXTENDED, 0.01, new FractalView(FractalType.MANDELBROT,
+                1e280, BigDecimal.ZERO, BigDecimal.ONE, 0, 0, 3000, SIZE, SIZE));
+    }
+
+    @Test
+    void floatIsOnlySelectedWhenTheOptionsAllowIt() {
+        FractalView overview = new FractalView(FractalType.MANDELBROT, 250, -1.0, 0.0, 0, 0, 250, SIZE, SIZE);
+        assertEquals(PrecisionTier.DOUBLE, PrecisionTier.select(overview, OPTIONS));
+        RenderOptions frame = new RenderOptions(true, true, false, true);
+        assertEquals(VectorSupport.isAvailable() ? PrecisionTier.FLOAT : PrecisionTier.DOUBLE,
+                PrecisionTier.select(overview, frame));
+    }
+
+    private static void assertAgree(PrecisionTier first, PrecisionTier second, double allowed, FractalView view) {
+        int[] expected = render(first, view);
+        int[] actual = render(second, view);
+        int mismatches = 0;
+        for (int i = 0; i < expected.length; i++) {
+            if (expected[i] != actual[i]) {
+                mismatches++;
+            }
+        }
+        double share = mismatches / (double) expected.length;
+        assertTrue(share <= allowed, String.format("%s and %s, %s at zoom %.3g: %.3f%% of pixels differ, %.3f%% allowed",
+                first, second, view.getFractalType(), view.getZoom(), share * 100, allowed * 100));
+    }
+
+    /**
+     * Iterates every pixel of a view in a tier on the calling thread.
+     */
+    private static int[] render(PrecisionTier tier, FractalView view) {
+        int width = view.getWidth();
+        int[] iterations = new int[width * view.getHeight()];
+        PixelKernel kernel = tier.createKernel(view, OPTIONS, new InteriorStats());
+        for (int y = 0; y < view.getHeight(); y++) {
+            kernel.iterateRow(y, 0, width, iterations, y * width);
+        }
+        return iterations;
+    }
+}
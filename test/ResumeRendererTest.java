@@ -0,0 +1,168 @@
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Renders views at an iteration limit, raises the limit, and compares the resumed counts with the counts
+ * of the same views rendered from scratch at the higher limit.
+ */
+class ResumeRendererTest {
+
+    private static final int SIZE = 256;
+    private static final long BUDGET = 64L << 20;
+    private static final FractalView[] VIEWS = {
+            new FractalView(FractalType.MANDELBROT, 250.0 * SIZE / 800, -1.0, 0.0, 0, 0, 1000, SIZE, SIZE),
+            new FractalView(FractalType.MANDELBROT, 1e6, -0.743643887, 0.131825904, 0, 0, 1000, SIZE, SIZE),
+            new FractalView(FractalType.MANDELBROT, 2000, -0.1011, 0.9563, 0, 0, 200, SIZE, SIZE),
+            new FractalView(FractalType.MANDELBROT, 5000, -1.25066, 0.02012, 0, 0, 300, SIZE, SIZE),
+            new FractalView(FractalType.MANDELBROT, 3e4, 0.2501, 0.0, 0, 0, 500, SIZE, SIZE),
+            new FractalView(FractalType.JULIA, 250.0 * SIZE / 800, 0.0, 0.0, -0.123, 0.745, 1000, SIZE, SIZE),
+            new FractalView(FractalType.JULIA, 250.0 * SIZE / 800, 0.0, 0.0, -0.4, 0.6, 100, SIZE, SIZE),
+            new FractalView(FractalType.JULIA, 1000, 0.1, 0.1, 0.285, 0.01, 150, SIZE, SIZE),
+    };
+    private static final RenderOptions[] OPTIONS = {
+            // The options of the frames on screen, which are the ones that resume
+            new RenderOptions(true, true, false, true),
+            RenderOptions.DEFAULT,
+            // Without cycle detection every pixel at the limit is continued from its orbit point
+            new RenderOptions(true, false, false),
+    };
+
+    @Test
+    void resumedCountsMatchFreshRender() {
+        for (RenderOptions options : OPTIONS) {
+            for (FractalView low : VIEWS) {
+                for (int factor : new int[]{2, 10}) {
+                    int highLimit = low.getMaxIterations() * factor;
+                    FractalView high = new FractalView(low.getFractalType(), low.getZoom(), low.getCenterReal(),
+                            low.getCenterImag(), low.getJuliaCReal(), low.getJuliaCImag(), highLimit, SIZE, SIZE);
+                    PrecisionTier precision = PrecisionTier.select(low, options);
+
+                    int[] counts = new int[SIZE * SIZE];
+                    OrbitCheckpoint checkpoint = new OrbitCheckpoint(precision, low.getMaxIterations(), SIZE, SIZE,
+                            BUDGET);
+                    render(precision.createKernel(low, options, new InteriorStats(), checkpoint), counts);
+
+                    int[] expected = new int[SIZE * SIZE];
+                    render(precision.createKernel(high, options, new InteriorStats()), expected);
+
+                    int[] actual = new int[SIZE * SIZE];
+                    OrbitCheckpoint target = new OrbitCheckpoint(precision, highLimit, SIZE, SIZE, BUDGET);
+                    PixelKernel kernel = precision.createKernel(high, options, new InteriorStats(), target);
+                    new ResumeRenderer(kernel, checkpoint, counts, target,
+                            new Palette(Color.RED, highLimit, ColoringMode.LINEAR), actual, new int[SIZE * SIZE],
+                            SIZE).render(0, 0, SIZE, SIZE);
+
+                    assertArrayEquals(expected, actual, String.format("%s %s at zoom %.3g, %d to %d iterations, %s",
+                            precision, low.getFractalType(), low.getZoom(), low.getMaxIterations(), highLimit,
+                            options));
+                }
+            }
+        }
+    }
+
+    @Test
+    void pannedFramesResumeFromTheCheckpointsTheyReferTo() {
+        RenderOptions options = RenderOptions.DEFAULT;
+        // A zoom and centers that are powers of two keep the pixels of the panned frames exactly on the
+        // points of the first one.
+        FractalView view = new FractalView(FractalType.MANDELBROT, 256, -0.75, 0.125, 0, 0, 500, SIZE, SIZE);
+        PrecisionTier precision = PrecisionTier.select(view, options);
+        int[] counts = new int[SIZE * SIZE];
+        OrbitCheckpoint checkpoint = new OrbitCheckpoint(precision, view.getMaxIterations(), SIZE, SIZE, BUDGET);
+        render(precision.createKernel(view, options, new InteriorStats(), checkpoint), counts);
+
+        int[][] shifts = {{37, -21}, {-90, 5}, {0, 60}};
+        for (int[] shift : shifts) {
+            int shiftX = shift[0];
+            int shiftY = shift[1];
+            FractalView panned = new FractalView(view.getFractalType(), view.getZoom(),
+                    view.getOffsetX() + shiftX / view.getZoom(), view.getOffsetY() + shiftY / view.getZoom(),
+                    0, 0, view.getMaxIterations(), SIZE, SIZE);
+            int xa = Math.max(0, -shiftX);
+            int xb = Math.min(SIZE, SIZE - shiftX);
+            int ya = Math.max(0, -shiftY);
+            int yb = Math.min(SIZE, SIZE - shiftY);
+            int[] pannedCounts = new int[SIZE * SIZE];
+            OrbitCheckpoint pannedCheckpoint = new OrbitCheckpoint(precision, view.getMaxIterations(), SIZE, SIZE,
+                    BUDGET);
+            PixelKernel kernel = precision.createKernel(panned, options, new InteriorStats(), pannedCheckpoint);
+            for (int y = 0; y < SIZE; y++) {
+                if (y < ya || y >= yb) {
+                    kernel.iterateRow(y, 0, SIZE, pannedCounts, y * SIZE);
+                    continue;
+                }
+                System.arraycopy(counts, xa + shiftX + (y + shiftY) * SIZE, pannedCounts, xa + y * SIZE, xb - xa);
+                kernel.iterateRow(y, 0, xa, pannedCounts, y * SIZE);
+                kernel.iterateRow(y, xb, SIZE, pannedCounts, y * SIZE + xb);
+            }
+            pannedCheckpoint.inherit(checkpoint, shiftX, shiftY, xa, ya, xb, yb);
+            view = panned;
+            counts = pannedCounts;
+            checkpoint = pannedCheckpoint;
+        }
+
+        int highLimit = view.getMaxIterations() * 10;
+        FractalView high = new FractalView(view.getFractalType(), view.getZoom(), view.getCenterReal(),
+                view.getCenterImag(), 0, 0, highLimit, SIZE, SIZE);
+        int[] expected = new int[SIZE * SIZE];
+        render(precision.createKernel(high, options, new InteriorStats()), expected);
+        int[] actual = new int[SIZE * SIZE];
+        long cost = resume(high, precision, checkpoint, counts, actual);
+        assertArrayEquals(expected, actual);
+
+        // Every orbit is found through the checkpoints, so resuming costs as much as it does from a
+        // checkpoint of the last frame rendered in one go.
+        int[] direct = new int[SIZE * SIZE];
+        OrbitCheckpoint whole = new OrbitCheckpoint(precision, view.getMaxIterations(), SIZE, SIZE, BUDGET);
+        render(precision.createKernel(view, options, new InteriorStats(), whole), direct);
+        assertEquals(resume(high, precision, whole, direct, new int[SIZE * SIZE]), cost);
+    }
+
+    @Test
+    void checkpointOverItsBudgetDropsItsOrbits() {
+        FractalView view = new FractalView(FractalType.MANDELBROT, 250.0 * SIZE / 800, -1.0, 0.0, 0, 0, 1000, SIZE,
+                SIZE);
+        PrecisionTier precision = PrecisionTier.select(view, RenderOptions.DEFAULT);
+        int[] counts = new int[SIZE * SIZE];
+        OrbitCheckpoint checkpoint = new OrbitCheckpoint(precision, view.getMaxIterations(), SIZE, SIZE, 4096);
+        render(precision.createKernel(view, RenderOptions.DEFAULT, new InteriorStats(), checkpoint), counts);
+        assertTrue(checkpoint.isDropped());
+        assertEquals(0, checkpoint.size());
+
+        // A frame panned from it has nothing to refer to.
+        OrbitCheckpoint panned = new OrbitCheckpoint(precision, view.getMaxIterations(), SIZE, SIZE, BUDGET);
+        panned.inherit(checkpoint, 10, 0, 0, 0, SIZE - 10, SIZE);
+        assertFalse(panned.isDropped());
+        assertEquals(0, panned.getBytes());
+
+        // Resuming leaves every pixel to be iterated from the start.
+        FractalView high = new FractalView(view.getFractalType(), view.getZoom(), view.getCenterReal(),
+                view.getCenterImag(), 0, 0, 2000, SIZE, SIZE);
+        int[] expected = new int[SIZE * SIZE];
+        render(precision.createKernel(high, RenderOptions.DEFAULT, new InteriorStats()), expected);
+        int[] actual = new int[SIZE * SIZE];
+        resume(high, precision, checkpoint, counts, actual);
+        assertArrayEquals(expected, actual);
+    }
+
+    private static long resume(FractalView high, PrecisionTier precision, OrbitCheckpoint checkpoint, int[] counts,
+                               int[] iterations) {
+        int limit = high.getMaxIterations();
+        OrbitCheckpoint target = new OrbitCheckpoint(precision, limit, SIZE, SIZE, BUDGET);
+        PixelKernel kernel = precision.createKernel(high, RenderOptions.DEFAULT, new InteriorStats(), target);
+        return new ResumeRenderer(kernel, checkpoint, counts, target, new Palette(Color.RED, limit,
+                ColoringMode.LINEAR), iterations, new int[SIZE * SIZE], SIZE).render(0, 0, SIZE, SIZE);
+    }
+
+    private static void render(PixelKernel kernel, int[] iterations) {
+        for (int y = 0; y < SIZE; y++) {
+            kernel.iterateRow(y, 0, SIZE, iterations, y * SIZE);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Checks that recording the fractions for smooth coloring leaves the iteration counts of every tier
+ * alone, and that the continuous counts it yields have no steps between the bands of whole counts:
+ * across the edge of a band the continuous count changes like on either side of it, where whole counts
+ * jump by one.
+ */
+class SmoothColoringTest {
+
+    private static final int SIZE = 256;
+    private static final FractalView OVERVIEW = new FractalView(FractalType.MANDELBROT, 250.0 * SIZE / 800, -1.0,
+            0.0, 0, 0, 1000, SIZE, SIZE);
+    private static final FractalView SEAHORSES = new FractalView(FractalType.MANDELBROT, 1e6, -0.743643887,
+            0.131825904, 0, 0, 2000, SIZE, SIZE);
+    private static final FractalView JULIA = new FractalView(FractalType.JULIA, 250.0 * SIZE / 800, 0.0, 0.0,
+            -0.123, 0.745, 1000, SIZE, SIZE);
+    private static final FractalView DEEP = new FractalView(FractalType.MANDELBROT, 1e20,
+            new BigDecimal("-0.743643887037158704752191506114774"),
+            new BigDecimal("0.131825904205311970493132056385139"), 0, 0, 3000, SIZE, SIZE);
+    // How far the step across a band edge may be from the steps beside it, in iterations
+    private static final double MAX_EDGE_DEVIATION = 0.1;
+    // The share of edges that must be smooth; the rest are on chaotic pixels near the set, where the
+    // steps beside an edge say little about the step across it
+    private static final double MIN_SMOOTH_EDGES = 0.9;
+
+    @Test
+    void fractionsLeaveTheCountsAlone() {
+        if (VectorSupport.isAvailable()) {
+            assertCountsUnchanged(PrecisionTier.FLOAT, OVERVIEW);
+            assertCountsUnchanged(PrecisionTier.FLOAT, JULIA);
+        }
+        assertCountsUnchanged(PrecisionTier.DOUBLE, OVERVIEW);
+        assertCountsUnchanged(PrecisionTier.DOUBLE, SEAHORSES);
+        assertCountsUnchanged(PrecisionTier.DOUBLE, JULIA);
+        assertCountsUnchanged(PrecisionTier.DOUBLE_DOUBLE, SEAHORSES);
+        assertCountsUnchanged(PrecisionTier.PERTURBATION, DEEP);
+    }
+
+    @Test
+    void vectorFractionsMatchScalarKernel() {
+        assumeTrue(VectorSupport.isAvailable(), "the Vector API is missing");
+        for (FractalView view : new FractalView[]{OVERVIEW, SEAHORSES, JULIA}) {
+            float[] expected = new float[SIZE * SIZE];
+            float[] actual = new float[SIZE * SIZE];
+            EscapeTimeKernel scalar = new EscapeTimeKernel(view, true, true, new InteriorStats(), null,
+                    new EscapeFractions(expected, SIZE, SIZE));
+            VectorKernel vector = new VectorKernel(new EscapeTimeKernel(view, true, true, new InteriorStats(), null,
+                    new EscapeFractions(actual, SIZE, SIZE)));
+            int[] counts = new int[SIZE];
+            for (int y = 0; y < SIZE; y++) {
+                for (int x = 0; x < SIZE; x++) {
+                    scalar.iterate(x, y);
+                }
+                vector.iterateRow(y, 0, SIZE, counts, 0);
+            }
+            assertArrayEquals(expected, actual, view.getFractalType() + " at zoom " + view.getZoom());
+        }
+    }
+
+    @Test
+    void continuousCountsHaveNoSteps() {
+        for (FractalView view : new FractalView[]{OVERVIEW, JULIA}) {
+            int[] counts = new int[SIZE * SIZE];
+            float[] fractions = new float[SIZE * SIZE];
+            render(PrecisionTier.DOUBLE, view, counts, fractions);
+            int edges = 0;
+            int smooth = 0;
+            for (int y = 0; y < SIZE; y++) {
+                for (int x = 2; x < SIZE - 1; x++) {
+                    int i = x + y * SIZE;
+                    // An edge between two escaped bands that are at least two pixels wide
+                    if (Math.abs(counts[i] - counts[i - 1]) != 1 || counts[i - 2] != counts[i - 1]
+                            || counts[i + 1] != counts[i] || Math.max(counts[i], counts[i - 1]) == 1000) {
+                        continue;
+                    }
+                    double before = smooth(counts, fractions, i - 1) - smooth(counts, fractions, i - 2);
+                    double across = smooth(counts, fractions, i) - smooth(counts, fractions, i - 1);
+                    double after = smooth(counts, fractions, i + 1) - smooth(counts, fractions, i);
+                    edges++;
+                    if (Math.abs(across - (before + after) / 2) <= MAX_EDGE_DEVIATION) {
+                        smooth++;
+                    }
+                }
+            }
+            assertTrue(edges > 0, "the view has no bands to smooth");
+            double share = smooth / (double) edges;
+            assertTrue(share >= MIN_SMOOTH_EDGES, String.format("%s: %.1f%% of %d band edges are smooth",
+                    view.getFractalType(), share * 100, edges));
+        }
+    }
+
+    @Test
+    void smoothPaletteBlendsIntoTheNextCount() {
+        Palette palette = new Palette(Color.RED, 100, ColoringMode.SMOOTH);
+        for (int iter = 0; iter < 99; iter++) {
+            assertTrue(palette.rgb(iter, 0) == palette.rgb(iter) && palette.rgb(iter, 1) == palette.rgb(iter + 1),
+                    "count " + iter);
+        }
+        assertTrue(palette.rgb(100, 0.5f) == 0, "the interior is black");
+    }
+
+    private static void assertCountsUnchanged(PrecisionTier tier, FractalView view) {
+        int[] expected = new int[SIZE * SIZE];
+        int[] actual = new int[SIZE * SIZE];
+        float[] fractions = new float[SIZE * SIZE];
+        render(tier, view, expected, null);
+        render(tier, view, actual, fractions);
+        assertArrayEquals(expected, actual, tier + ", " + view.getFractalType() + " at zoom " + view.getZoom());
+        for (float fraction : fractions) {
+            // Orbits that linger near the escape radius, like those around the tip of the Mandelbrot set,
+            // leave the large radius of the fractions many iterations after the small one.
+            assertTrue(fraction > -1 && fraction < 20, tier + ": fraction " + fraction);
+        }
+    }
+
+    private static double smooth(int[] counts, float[] fractions, int i) {
+        return counts[i] + fractions[i];
+    }
+
+    /**
+     * Iterates every pixel of a view in a tier on the calling thread, recording the fractions if there
+     * is a buffer for them.
+     */
+    private static void render(PrecisionTier tier, FractalView view, int[] counts, float[] fractions) {
+        EscapeFractions escapes = fractions == null ? null : new EscapeFractions(fractions, SIZE, SIZE);
+        PixelKernel kernel = tier.createKernel(view, RenderOptions.DEFAULT, new InteriorStats(), null, escapes);
+        for (int y = 0; y < SIZE; y++) {
+            kernel.iterateRow(y, 0, SIZE, counts, y * SIZE);
+        }
+    }
+}
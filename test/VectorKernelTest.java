@@ -0,0 +1,70 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Checks that the vector kernel computes exactly the counts of the scalar kernel, and reports the
+ * cost of a row the same way.
+ */
+class VectorKernelTest {
+
+    private static final int SIZE = 256;
+    private static final FractalView[] VIEWS = {
+            new FractalView(FractalType.MANDELBROT, 250.0 * SIZE / 800, -1.0, 0.0, -0.4, 0.6, 1000, SIZE, SIZE),
+            new FractalView(FractalType.MANDELBROT, 1e6, -0.743643887, 0.131825904, -0.4, 0.6, 2000, SIZE, SIZE),
+            new FractalView(FractalType.JULIA, 250.0 * SIZE / 800, 0.0, 0.0, -0.4, 0.6, 1000, SIZE, SIZE),
+            new FractalView(FractalType.JULIA, 250.0 * SIZE / 800, 0.0, 0.0, -0.123, 0.745, 1000, SIZE, SIZE),
+    };
+
+    @BeforeEach
+    void requireVectorApi() {
+        assumeTrue(VectorSupport.isAvailable(), "the Vector API is missing");
+    }
+
+    @Test
+    void countsMatchScalarKernel() {
+        for (FractalView view : VIEWS) {
+            for (boolean shortcuts : new boolean[]{false, true}) {
+                EscapeTimeKernel scalar = new EscapeTimeKernel(view, shortcuts, shortcuts, new InteriorStats());
+                VectorKernel vector = new VectorKernel(
+                        new EscapeTimeKernel(view, shortcuts, shortcuts, new InteriorStats()));
+                int[] expected = new int[SIZE * SIZE];
+                int[] actual = new int[SIZE * SIZE];
+                for (int y = 0; y < SIZE; y++) {
+                    for (int x = 0; x < SIZE; x++) {
+                        expected[x + y * SIZE] = scalar.iterate(x, y);
+                    }
+                    vector.iterateRow(y, 0, SIZE, actual, y * SIZE);
+                }
+                assertArrayEquals(expected, actual, view.getFractalType() + " at zoom " + view.getZoom()
+                        + ", shortcuts " + shortcuts);
+            }
+        }
+    }
+
+    @Test
+    void rowCostIsSumOfCounts() {
+        for (FractalView view : VIEWS) {
+            EscapeTimeKernel scalar = new EscapeTimeKernel(view, true, true, new InteriorStats());
+            PixelKernel[] kernels = {new VectorKernel(scalar), new FloatVectorKernel(scalar)};
+            for (PixelKernel kernel : kernels) {
+                for (int step : new int[]{1, 2, 4}) {
+                    // Rows that are not a multiple of the lanes leave lanes empty at the end.
+                    int x0 = 3;
+                    int[] iterations = new int[SIZE];
+                    for (int y = 0; y < SIZE; y += 7) {
+                        long cost = kernel.iterateRow(y, x0, SIZE, step, iterations, 0);
+                        long sum = 0;
+                        for (int x = x0; x < SIZE; x += step) {
+                            sum += iterations[x - x0];
+                        }
+                        assertEquals(sum, cost, kernel.getClass().getSimpleName() + " row " + y + ", step " + step);
+                    }
+                }
+            }
+        }
+    }
+}